@@ -2,8 +2,6 @@ package com.redlab.lyrex;
 
 import android.content.Intent;
 import android.os.Bundle;
-import android.text.Editable;
-import android.text.TextWatcher;
 import android.view.View;
 import android.widget.EditText;
 import android.widget.TextView;
@@ -18,7 +16,7 @@ public class AddEditActivity extends AppCompatActivity {
 	private EditText titleEditText, contentEditText;
 	private TextView previewTextView;
 	private Button previewButton, editButton;
-	private LyricDbHelper dbHelper;
+	private LyricRepository repository;
 	private int lyricId = -1;
 	private boolean isPreviewMode = false;
 	private Lyric currentLyric;
@@ -31,7 +29,7 @@ public class AddEditActivity extends AppCompatActivity {
 		initializeViews();
 		setupListeners();
 		
-		dbHelper = new LyricDbHelper(this);
+		repository = LyricRepository.getInstance(this);
 		
 		// Check if editing existing lyric
 		if (getIntent().hasExtra("lyric_id")) {
@@ -60,22 +58,9 @@ public class AddEditActivity extends AppCompatActivity {
 	}
 	
 	private void setupListeners() {
-		// Auto-highlight as user types
+		// Highlight as user types, rescanning only the edited lines
 		if (contentEditText != null) {
-			contentEditText.addTextChangedListener(new TextWatcher() {
-				@Override
-				public void beforeTextChanged(CharSequence s, int start, int count, int after) {}
-				
-				@Override
-				public void onTextChanged(CharSequence s, int start, int before, int count) {}
-				
-				@Override
-				public void afterTextChanged(Editable s) {
-					// Auto-highlight after a short delay to avoid constant highlighting
-					contentEditText.removeCallbacks(highlightRunnable);
-					contentEditText.postDelayed(highlightRunnable, 500);
-				}
-			});
+			contentEditText.addTextChangedListener(new EditorHighlighter());
 		}
 		
 		// Preview button listener
@@ -89,49 +74,18 @@ public class AddEditActivity extends AppCompatActivity {
 		}
 	}
 	
-	private final Runnable highlightRunnable = new Runnable() {
-		@Override
-		public void run() {
-			applyHighlightingToEditText();
-		}
-	};
-	
-	private void applyHighlightingToEditText() {
-		if (contentEditText == null) return;
-		
-		String content = contentEditText.getText().toString();
-		if (content.trim().isEmpty()) return;
-		
-		// Create a temporary lyric object for highlighting
-		Lyric tempLyric = new Lyric("", content);
-		tempLyric.highlightSections();
-		
-		if (tempLyric.getStyledContent() != null) {
-			// Save cursor position
-			int cursorPos = contentEditText.getSelectionStart();
-			
-			// Apply highlighting
-			contentEditText.setText(tempLyric.getStyledContent());
-			
-			// Restore cursor position
-			if (cursorPos <= contentEditText.getText().length()) {
-				contentEditText.setSelection(cursorPos);
-			}
-		}
-	}
-	
 	private void loadLyricData(int id) {
-		currentLyric = dbHelper.getLyricById(id);
-		if (currentLyric != null) {
-			titleEditText.setText(currentLyric.getTitle());
-			contentEditText.setText(currentLyric.getContent());
-			
-			// Apply highlighting
-			applyHighlightingToEditText();
-			
-			// Set activity title
-			setTitle("Edit Lyric");
-		}
+		repository.read(this, (lyrics, setlists) -> lyrics.getLyricById(id), lyric -> {
+			currentLyric = lyric;
+			if (currentLyric != null) {
+				titleEditText.setText(currentLyric.getTitle());
+				// Highlighted by the text watcher as it is set
+				contentEditText.setText(currentLyric.getContent());
+				
+				// Set activity title
+				setTitle("Edit Lyric");
+			}
+		});
 	}
 	
 	private void togglePreviewMode() {
@@ -180,9 +134,6 @@ public class AddEditActivity extends AppCompatActivity {
 		
 		if (previewButton != null) previewButton.setVisibility(View.VISIBLE);
 		if (editButton != null) editButton.setVisibility(View.GONE);
-		
-		// Reapply highlighting to edit text
-		applyHighlightingToEditText();
 	}
 	
 	public void saveLyric(View view) {
@@ -194,46 +145,49 @@ public class AddEditActivity extends AppCompatActivity {
 			return;
 		}
 		
-		try {
-			if (lyricId == -1) {
-				// New lyric
-				Lyric newLyric = new Lyric(title, content);
-				newLyric.detectSectionType(); // Auto-detect sections and apply highlighting
-				long result = dbHelper.insertLyric(newLyric);
-				
+		if (lyricId == -1) {
+			// New lyric
+			Lyric newLyric = new Lyric(title, content);
+			newLyric.detectSectionType(); // Auto-detect sections and apply highlighting
+			repository.write(this, (lyrics, setlists) -> lyrics.insertLyric(newLyric), result -> {
 				if (result > 0) {
 					Toast.makeText(this, "Lyric saved successfully", Toast.LENGTH_SHORT).show();
+					finish();
 					} else {
 					Toast.makeText(this, "Failed to save lyric", Toast.LENGTH_SHORT).show();
-					return;
-				}
-				} else {
-				// Update existing
-				if (currentLyric == null) {
-					currentLyric = dbHelper.getLyricById(lyricId);
 				}
+			}, this::showSaveError);
+			} else {
+			// Update existing; the writer gets its own copy, or fetches the lyric if it has not loaded yet
+			Lyric loaded = (currentLyric != null)
+			? new Lyric(currentLyric.getId(), currentLyric.getTitle(), currentLyric.getContent(),
+			currentLyric.getTimestamp(), currentLyric.getSectionType())
+			: null;
+			int id = lyricId;
+			repository.write(this, (lyrics, setlists) -> {
+				Lyric lyric = (loaded != null) ? loaded : lyrics.getLyricById(id);
+				if (lyric == null) return -1;
 				
-				if (currentLyric != null) {
-					currentLyric.setTitle(title);
-					currentLyric.setContent(content);
-					currentLyric.setTimestamp(System.currentTimeMillis());
-					currentLyric.detectSectionType(); // Re-detect sections on update
-					
-					int result = dbHelper.updateLyric(currentLyric);
-					if (result > 0) {
-						Toast.makeText(this, "Lyric updated successfully", Toast.LENGTH_SHORT).show();
-						} else {
-						Toast.makeText(this, "Failed to update lyric", Toast.LENGTH_SHORT).show();
-						return;
-					}
+				lyric.setTitle(title);
+				lyric.setContent(content);
+				lyric.setTimestamp(System.currentTimeMillis());
+				lyric.detectSectionType(); // Re-detect sections on update
+				return lyrics.updateLyric(lyric);
+			}, result -> {
+				if (result < 0) {
+					finish();
+					} else if (result > 0) {
+					Toast.makeText(this, "Lyric updated successfully", Toast.LENGTH_SHORT).show();
+					finish();
+					} else {
+					Toast.makeText(this, "Failed to update lyric", Toast.LENGTH_SHORT).show();
 				}
-			}
-			} catch (Exception e) {
-			Toast.makeText(this, "Error saving lyric: " + e.getMessage(), Toast.LENGTH_SHORT).show();
-			return;
+			}, this::showSaveError);
 		}
-		
-		finish();
+	}
+	
+	private void showSaveError(Exception e) {
+		Toast.makeText(this, "Error saving lyric: " + e.getMessage(), Toast.LENGTH_SHORT).show();
 	}
 	
 	public void previewLyric(View view) {
@@ -326,7 +280,11 @@ public class AddEditActivity extends AppCompatActivity {
 			currentLyric.setContent(content);
 			currentLyric.setTimestamp(System.currentTimeMillis());
 			currentLyric.detectSectionType();
-			dbHelper.updateLyric(currentLyric);
+			
+			// Hand the writer its own copy; the editor keeps changing currentLyric
+			Lyric snapshot = new Lyric(currentLyric.getId(), title, content,
+			currentLyric.getTimestamp(), currentLyric.getSectionType());
+			repository.write(this, (lyrics, setlists) -> lyrics.updateLyric(snapshot), null);
 		}
 	}
 	
@@ -363,13 +321,4 @@ public class AddEditActivity extends AppCompatActivity {
 		return !titleEditText.getText().toString().trim().isEmpty() ||
 		!contentEditText.getText().toString().trim().isEmpty();
 	}
-	
-	@Override
-	protected void onDestroy() {
-		super.onDestroy();
-		// Remove any pending callbacks
-		if (contentEditText != null) {
-			contentEditText.removeCallbacks(highlightRunnable);
-		}
-	}
 }
\ No newline at end of file
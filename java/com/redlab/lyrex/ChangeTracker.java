@@ -0,0 +1,147 @@
+package com.redlab.lyrex;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+* Records which rows of which table have changed since a given point.
+*
+* Every committed write bumps the table's generation and logs the ids it touched.
+* A screen remembers the generation it last loaded and, when it comes back, asks
+* for changesSince() that generation: nothing, a set of row ids, or "everything"
+* when the change was table-wide (a restore) or older than the bounded log.
+*/
+public final class ChangeTracker {
+	// Row changes remembered per table; older ones collapse into "everything"
+	private static final int MAX_LOGGED_ROWS = 1000;
+	
+	public interface Observer {
+		// Called on the main thread after a write to table has committed
+		void onTableChanged(String table);
+	}
+	
+	public static final class Changes {
+		public final long generation;
+		// null means every row may have changed
+		private final Set<Integer> ids;
+		
+		Changes(long generation, Set<Integer> ids) {
+			this.generation = generation;
+			this.ids = ids;
+		}
+		
+		public boolean isEmpty() {
+			return ids != null && ids.isEmpty();
+		}
+		
+		public boolean isEverything() {
+			return ids == null;
+		}
+		
+		public Set<Integer> getIds() {
+			return ids != null ? Collections.unmodifiableSet(ids) : Collections.emptySet();
+		}
+	}
+	
+	private static class TableLog {
+		long generation = 0;
+		// The log holds every change after this generation
+		long completeSince = 0;
+		// Pairs of {generation, row id}, oldest first
+		final ArrayDeque<long[]> rows = new ArrayDeque<>();
+	}
+	
+	private final Map<String, TableLog> tables = new HashMap<>();
+	private final CopyOnWriteArrayList<Observer> observers = new CopyOnWriteArrayList<>();
+	private final Handler mainHandler = new Handler(Looper.getMainLooper());
+	
+	public synchronized long getGeneration(String table) {
+		return log(table).generation;
+	}
+	
+	public synchronized Changes changesSince(String table, long generation) {
+		TableLog log = log(table);
+		if (generation >= log.generation) {
+			return new Changes(log.generation, Collections.emptySet());
+		}
+		if (generation < log.completeSince) {
+			return new Changes(log.generation, null);
+		}
+		
+		Set<Integer> ids = new HashSet<>();
+		for (long[] row : log.rows) {
+			if (row[0] > generation) {
+				ids.add((int) row[1]);
+			}
+		}
+		return new Changes(log.generation, ids);
+	}
+	
+	public void recordRow(String table, long id) {
+		recordRows(table, Collections.singletonList(id));
+	}
+	
+	public void recordRows(String table, Collection<? extends Number> ids) {
+		if (ids.isEmpty()) return;
+		synchronized (this) {
+			TableLog log = log(table);
+			log.generation++;
+			for (Number id : ids) {
+				log.rows.addLast(new long[]{log.generation, id.longValue()});
+			}
+			while (log.rows.size() > MAX_LOGGED_ROWS) {
+				log.completeSince = Math.max(log.completeSince, log.rows.removeFirst()[0]);
+			}
+		}
+		notifyObservers(table);
+	}
+	
+	/**
+	* Marks the whole table as changed, for writes too large or too broad to log
+	* row by row.
+	*/
+	public void recordAll(String table) {
+		synchronized (this) {
+			TableLog log = log(table);
+			log.generation++;
+			log.completeSince = log.generation;
+			log.rows.clear();
+		}
+		notifyObservers(table);
+	}
+	
+	public void addObserver(Observer observer) {
+		observers.addIfAbsent(observer);
+	}
+	
+	public void removeObserver(Observer observer) {
+		observers.remove(observer);
+	}
+	
+	private void notifyObservers(String table) {
+		if (observers.isEmpty()) return;
+		mainHandler.post(() -> {
+			for (Observer observer : observers) {
+				observer.onTableChanged(table);
+			}
+		});
+	}
+	
+	private TableLog log(String table) {
+		TableLog log = tables.get(table);
+		if (log == null) {
+			log = new TableLog();
+			tables.put(table, log);
+		}
+		return log;
+	}
+}
\ No newline at end of file
@@ -0,0 +1,287 @@
+package com.redlab.lyrex;
+
+/**
+* The chords written in a lyric body, found once and rendered into any key.
+*
+* Two notations are recognised: ChordPro chords in brackets anywhere in the
+* text ("[Am]love me [G/B]tender") and chord lines, lines whose every word is a
+* chord or a bar mark, written over the lyric they belong to. A line holding a
+* single short chord-like word ("A", "Em") is taken for lyrics. A section header
+* such as "[Chorus]" is not a chord, since "horus" is no chord quality.
+*
+* parse records where each chord's root, quality and bass sit. render then
+* rewrites only those tokens and copies the text between them, so a key change
+* never parses the text again. On chord lines the spaces after a chord absorb a
+* change in its length, so chords stay over the syllables they were written
+* above. Renderings are cached per semitone shift.
+*/
+final class ChordChart {
+	private static final String[] SHARP_NAMES = {"C", "C#", "D", "D#", "E", "F", "F#", "G", "G#", "A", "A#", "B"};
+	private static final String[] FLAT_NAMES = {"C", "Db", "D", "Eb", "E", "F", "Gb", "G", "Ab", "A", "Bb", "B"};
+	// Major keys, by root, whose signatures use flats: F, Bb, Eb, Ab, Db
+	private static final boolean[] FLAT_KEYS = {false, true, false, true, false, true, false, false, true, false, true, false};
+	// Semitones above C of the letters A to G
+	private static final int[] LETTER_PITCHES = {9, 11, 0, 2, 4, 5, 7};
+	// Chord qualities, longest first where one is a prefix of another
+	private static final String[] QUALITIES = {"maj", "min", "dim", "aug", "sus", "add", "m", "M"};
+	// Words a chord line may hold besides chords
+	private static final String[] LINE_MARKS = {"|", "||", "/", "-", "%", "N.C.", "NC"};
+	
+	// Per chord: start, end of the root, end of the quality, bass pitch or -1, end, flags
+	private static final int FIELDS = 6;
+	private static final int START = 0;
+	private static final int ROOT_END = 1;
+	private static final int QUALITY_END = 2;
+	private static final int BASS = 3;
+	private static final int END = 4;
+	private static final int FLAGS = 5;
+	// Set on chords of a chord line, whose spacing render keeps aligned
+	private static final int FLAG_OVER_LYRIC = 1;
+	
+	private final String content;
+	private final int[] chords;
+	private final int count;
+	// Root of the song's major key, guessed from its first chord, or -1
+	private final int keyRoot;
+	// By semitone shift; render fills it from any thread
+	private final String[] renderings = new String[12];
+	
+	private ChordChart(String content, int[] chords, int count) {
+		this.content = content;
+		this.chords = chords;
+		this.count = count;
+		if (count == 0) {
+			keyRoot = -1;
+			} else {
+			// A minor first chord puts the song in its relative major
+			int root = pitchAt(content, chords[START]);
+			boolean minor = isMinor(content, chords[ROOT_END], chords[QUALITY_END]);
+			keyRoot = minor ? (root + 3) % 12 : root;
+		}
+	}
+	
+	static ChordChart parse(String content) {
+		if (content == null) content = "";
+		int[] chords = new int[16 * FIELDS];
+		int count = 0;
+		int[] chord = new int[FIELDS];
+		for (int lineStart = 0; lineStart < content.length(); ) {
+			int lineEnd = content.indexOf('\n', lineStart);
+			if (lineEnd < 0) lineEnd = content.length();
+			
+			// A chord line first; otherwise look for bracketed chords in it
+			int lineChords = chordLineChords(content, lineStart, lineEnd);
+			for (int i = lineStart; i < lineEnd; i++) {
+				char c = content.charAt(i);
+				if (lineChords > 0) {
+					if (Character.isWhitespace(c) || (i > lineStart && !Character.isWhitespace(content.charAt(i - 1)))) continue;
+					int wordEnd = wordEnd(content, i, lineEnd);
+					if (readChord(content, i, wordEnd, chord)) {
+						chord[FLAGS] = FLAG_OVER_LYRIC;
+						chords = append(chords, count++, chord);
+					}
+					} else if (c == '[') {
+					int close = content.indexOf(']', i);
+					if (close < 0 || close > lineEnd) break;
+					if (readChord(content, i + 1, close, chord)) {
+						chord[FLAGS] = 0;
+						chords = append(chords, count++, chord);
+					}
+					i = close;
+				}
+			}
+			lineStart = lineEnd + 1;
+		}
+		return new ChordChart(content, chords, count);
+	}
+	
+	/**
+	* The content with every chord moved by semitones (any integer; only the
+	* shift within the octave matters). Flats or sharps follow the new key.
+	*/
+	String render(int semitones) {
+		int shift = Math.floorMod(semitones, 12);
+		if (shift == 0 || count == 0) return content;
+		synchronized (renderings) {
+			if (renderings[shift] != null) return renderings[shift];
+		}
+		
+		boolean flats = keyRoot >= 0 && FLAT_KEYS[(keyRoot + shift) % 12];
+		StringBuilder out = new StringBuilder(content.length() + count);
+		int copied = 0;
+		// Characters the current chord line has grown by so far
+		int drift = 0;
+		for (int i = 0; i < count * FIELDS; i += FIELDS) {
+			int start = chords[i + START];
+			boolean overLyric = (chords[i + FLAGS] & FLAG_OVER_LYRIC) != 0;
+			int gapLength = start - copied;
+			if (overLyric && drift != 0 && isSpaces(content, copied, start)) {
+				// Same chord line: take up the drift in the spaces, keeping one
+				int length = Math.max(1, gapLength - drift);
+				drift += length - gapLength;
+				for (int s = 0; s < length; s++) {
+					out.append(' ');
+				}
+				} else {
+				out.append(content, copied, start);
+				drift = 0;
+			}
+			
+			int written = out.length();
+			out.append(noteName(pitchAt(content, start) + shift, flats));
+			out.append(content, chords[i + ROOT_END], chords[i + QUALITY_END]);
+			if (chords[i + BASS] >= 0) {
+				out.append('/').append(noteName(chords[i + BASS] + shift, flats));
+			}
+			copied = chords[i + END];
+			if (overLyric) {
+				drift += (out.length() - written) - (copied - start);
+			}
+		}
+		out.append(content, copied, content.length());
+		
+		String rendering = out.toString();
+		synchronized (renderings) {
+			renderings[shift] = rendering;
+		}
+		return rendering;
+	}
+	
+	private static int[] append(int[] chords, int index, int[] chord) {
+		if ((index + 1) * FIELDS > chords.length) {
+			int[] grown = new int[chords.length * 2];
+			System.arraycopy(chords, 0, grown, 0, chords.length);
+			chords = grown;
+		}
+		System.arraycopy(chord, 0, chords, index * FIELDS, FIELDS);
+		return chords;
+	}
+	
+	/**
+	* Number of chords if the line is a chord line, else 0. Every word must be a
+	* chord or bar mark, and a lone chord of one or two characters ("A", "Em")
+	* only counts next to a bar mark, since it is as likely a lyric word.
+	*/
+	private static int chordLineChords(String content, int lineStart, int lineEnd) {
+		int[] chord = new int[FIELDS];
+		int chords = 0;
+		int marks = 0;
+		int longestChord = 0;
+		for (int i = lineStart; i < lineEnd; ) {
+			if (Character.isWhitespace(content.charAt(i))) {
+				i++;
+				continue;
+			}
+			int end = wordEnd(content, i, lineEnd);
+			if (readChord(content, i, end, chord)) {
+				chords++;
+				longestChord = Math.max(longestChord, end - i);
+				} else if (isLineMark(content, i, end)) {
+				marks++;
+				} else {
+				return 0;
+			}
+			i = end;
+		}
+		if (chords == 1 && marks == 0 && longestChord <= 2) return 0;
+		return chords;
+	}
+	
+	private static int wordEnd(String content, int start, int lineEnd) {
+		int end = start;
+		while (end < lineEnd && !Character.isWhitespace(content.charAt(end))) {
+			end++;
+		}
+		return end;
+	}
+	
+	private static boolean isLineMark(String content, int start, int end) {
+		for (String mark : LINE_MARKS) {
+			if (mark.length() == end - start && content.startsWith(mark, start)) return true;
+		}
+		return false;
+	}
+	
+	/**
+	* Reads a chord filling all of start..end: a root, a quality made of the
+	* QUALITIES words, digits and alterations, then an optional /bass.
+	*/
+	private static boolean readChord(String content, int start, int end, int[] chord) {
+		if (start >= end || pitchAt(content, start) < 0) return false;
+		
+		int i = start + 1;
+		if (i < end && isAccidental(content.charAt(i))) i++;
+		chord[START] = start;
+		chord[ROOT_END] = i;
+		chord[BASS] = -1;
+		
+		qualities:
+		while (i < end) {
+			char c = content.charAt(i);
+			if (c == '/') {
+				// A bass note, or the slash of a 6/9
+				if (i + 1 < end && Character.isDigit(content.charAt(i + 1))) {
+					i++;
+					continue;
+				}
+				chord[QUALITY_END] = i;
+				int bass = i + 1;
+				if (bass >= end || pitchAt(content, bass) < 0) return false;
+				int bassEnd = bass + 1;
+				if (bassEnd < end && isAccidental(content.charAt(bassEnd))) bassEnd++;
+				if (bassEnd != end) return false;
+				chord[BASS] = pitchAt(content, bass);
+				chord[END] = end;
+				return true;
+			}
+			if (Character.isDigit(c) || c == '#' || c == 'b' || c == '+' || c == '-' || c == '('
+			|| c == ')' || c == '°' || c == 'ø' || c == 'Δ') {
+				i++;
+				continue;
+			}
+			for (String quality : QUALITIES) {
+				if (content.startsWith(quality, i) && i + quality.length() <= end) {
+					i += quality.length();
+					continue qualities;
+				}
+			}
+			return false;
+		}
+		chord[QUALITY_END] = end;
+		chord[END] = end;
+		return true;
+	}
+	
+	private static boolean isAccidental(char c) {
+		return c == '#' || c == 'b' || c == '♯' || c == '♭';
+	}
+	
+	// Pitch class of the note at index, or -1 if there is no note letter there
+	private static int pitchAt(String content, int index) {
+		char letter = content.charAt(index);
+		if (letter < 'A' || letter > 'G') return -1;
+		int pitch = LETTER_PITCHES[letter - 'A'];
+		if (index + 1 < content.length()) {
+			char accidental = content.charAt(index + 1);
+			if (accidental == '#' || accidental == '♯') pitch++;
+			if (accidental == 'b' || accidental == '♭') pitch--;
+		}
+		return Math.floorMod(pitch, 12);
+	}
+	
+	private static boolean isMinor(String content, int qualityStart, int qualityEnd) {
+		return qualityStart < qualityEnd && content.charAt(qualityStart) == 'm'
+		&& !content.startsWith("maj", qualityStart);
+	}
+	
+	private static String noteName(int pitch, boolean flats) {
+		return (flats ? FLAT_NAMES : SHARP_NAMES)[Math.floorMod(pitch, 12)];
+	}
+	
+	private static boolean isSpaces(String content, int start, int end) {
+		for (int i = start; i < end; i++) {
+			if (content.charAt(i) != ' ') return false;
+		}
+		return true;
+	}
+}
\ No newline at end of file
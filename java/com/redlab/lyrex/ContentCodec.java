@@ -0,0 +1,77 @@
+package com.redlab.lyrex;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+* Storage format for large lyric bodies: a one-byte format marker followed by the
+* raw-deflated UTF-8 text.
+*
+* Only bodies of at least COMPRESSION_THRESHOLD_CHARS are compressed, and only
+* when that saves a worthwhile share of the space; short lyrics stay plain TEXT,
+* where compression would cost a decode on every read for a few bytes saved.
+*/
+final class ContentCodec {
+	static final int COMPRESSION_THRESHOLD_CHARS = 4096;
+	// Compressed size must come under this share of the UTF-8 size to be kept
+	private static final double MAX_KEPT_RATIO = 0.8;
+	
+	// First byte of every stored blob; new formats get new markers
+	private static final byte FORMAT_DEFLATE = 1;
+	
+	private ContentCodec() {}
+	
+	/**
+	* @return the blob to store, or null if content should stay plain text
+	*/
+	static byte[] encode(String content) {
+		if (content == null || content.length() < COMPRESSION_THRESHOLD_CHARS) return null;
+		
+		byte[] raw = content.getBytes(StandardCharsets.UTF_8);
+		Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION, true);
+		try {
+			deflater.setInput(raw);
+			deflater.finish();
+			ByteArrayOutputStream out = new ByteArrayOutputStream(raw.length / 3 + 16);
+			out.write(FORMAT_DEFLATE);
+			byte[] buffer = new byte[4096];
+			while (!deflater.finished()) {
+				out.write(buffer, 0, deflater.deflate(buffer));
+			}
+			return out.size() < raw.length * MAX_KEPT_RATIO ? out.toByteArray() : null;
+			} finally {
+			deflater.end();
+		}
+	}
+	
+	/**
+	* @throws IllegalStateException for an unknown marker or corrupt data
+	*/
+	static String decode(byte[] blob) {
+		if (blob.length == 0 || blob[0] != FORMAT_DEFLATE) {
+			throw new IllegalStateException("Unknown lyric content format " + (blob.length > 0 ? blob[0] : -1));
+		}
+		
+		Inflater inflater = new Inflater(true);
+		try {
+			inflater.setInput(blob, 1, blob.length - 1);
+			ByteArrayOutputStream out = new ByteArrayOutputStream(blob.length * 4);
+			byte[] buffer = new byte[8192];
+			while (!inflater.finished()) {
+				int n = inflater.inflate(buffer);
+				if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+					throw new IllegalStateException("Truncated lyric content");
+				}
+				out.write(buffer, 0, n);
+			}
+			return new String(out.toByteArray(), StandardCharsets.UTF_8);
+			} catch (DataFormatException e) {
+			throw new IllegalStateException("Corrupt lyric content", e);
+			} finally {
+			inflater.end();
+		}
+	}
+}
\ No newline at end of file
@@ -0,0 +1,237 @@
+package com.redlab.lyrex;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.util.Log;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+* Background upkeep of the lyric database: purges trash older than
+* TRASH_RETENTION_MS and gives free pages back to the file system.
+*
+* Work is split into steps that each hold the write lock briefly, a batch of
+* purged rows or a run of vacuumed pages, so LyricRepository can run them on its
+* writer thread between the user's own writes. Free pages are reclaimed with
+* incremental vacuum once they pass VACUUM_FREE_RATIO of the file. A database
+* created before auto_vacuum was enabled is converted by one full VACUUM the
+* first time it crosses that threshold.
+*/
+public final class DatabaseMaintenance {
+	private static final String TAG = "DatabaseMaintenance";
+	
+	public static final long TRASH_RETENTION_MS = 30L * 24 * 60 * 60 * 1000;
+	// How often a full pass is due; checked when the repository starts and after each pass
+	static final long RUN_INTERVAL_MS = 24L * 60 * 60 * 1000;
+	
+	// Rows deleted per transaction, so a large purge never holds the write lock for long
+	private static final int PURGE_BATCH_SIZE = 100;
+	// Vacuum once this share of the file is free pages, and never for fewer than the minimum
+	private static final double VACUUM_FREE_RATIO = 0.10;
+	private static final long VACUUM_MIN_FREE_PAGES = 64;
+	// Pages handed back per incremental_vacuum step
+	private static final int VACUUM_STEP_PAGES = 256;
+	
+	private static final int AUTO_VACUUM_INCREMENTAL = 2;
+	
+	private static final String PREFS_NAME = "database_maintenance";
+	private static final String PREF_LAST_RUN = "last_run";
+	private static final String PREF_LAST_PURGED = "last_purged_rows";
+	private static final String PREF_LAST_RECLAIMED = "last_reclaimed_pages";
+	
+	public static class Stats {
+		// Main file plus write-ahead log
+		public final long fileSizeBytes;
+		public final long pageSize;
+		public final long pageCount;
+		public final long freePages;
+		// 0 if maintenance has never completed
+		public final long lastRunAt;
+		public final int lastPurgedRows;
+		public final long lastReclaimedPages;
+		
+		Stats(long fileSizeBytes, long pageSize, long pageCount, long freePages, long lastRunAt,
+		int lastPurgedRows, long lastReclaimedPages) {
+			this.fileSizeBytes = fileSizeBytes;
+			this.pageSize = pageSize;
+			this.pageCount = pageCount;
+			this.freePages = freePages;
+			this.lastRunAt = lastRunAt;
+			this.lastPurgedRows = lastPurgedRows;
+			this.lastReclaimedPages = lastReclaimedPages;
+		}
+		
+		public double getFreeRatio() {
+			return pageCount > 0 ? (double) freePages / pageCount : 0;
+		}
+	}
+	
+	private final LyricDbHelper helper;
+	private final File databaseFile;
+	private final SharedPreferences prefs;
+	
+	// State of the pass in progress; only touched on the writer thread
+	private boolean running = false;
+	private boolean vacuuming = false;
+	private int purgedRows;
+	private long reclaimedPages;
+	
+	// Constructed by the helper itself, which it must not open from here
+	DatabaseMaintenance(Context context, LyricDbHelper helper, String databaseName) {
+		this.helper = helper;
+		this.databaseFile = context.getDatabasePath(databaseName);
+		this.prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+	}
+	
+	public boolean isDue() {
+		return System.currentTimeMillis() - prefs.getLong(PREF_LAST_RUN, 0) >= RUN_INTERVAL_MS;
+	}
+	
+	/**
+	* Runs one bounded unit of the current pass, starting a pass if none is in
+	* progress. Call on the writer thread until it returns false.
+	* @return true while there is more work in this pass
+	*/
+	boolean runStep() {
+		SQLiteDatabase db = helper.getWritableDatabase();
+		if (!running) {
+			running = true;
+			vacuuming = false;
+			purgedRows = 0;
+			reclaimedPages = 0;
+		}
+		
+		long cutoff = System.currentTimeMillis() - TRASH_RETENTION_MS;
+		int purged = purgeBatch(db, LyricDbHelper.TABLE_LYRICS, LyricDbHelper.COLUMN_ID,
+		LyricDbHelper.COLUMN_DELETED_AT, cutoff);
+		if (purged == 0) {
+			purged = purgeBatch(db, SetlistDbHelper.TABLE_SETLISTS, SetlistDbHelper.COLUMN_ID,
+			SetlistDbHelper.COLUMN_DELETED_AT, cutoff);
+		}
+		if (purged > 0) {
+			purgedRows += purged;
+			return true;
+		}
+		
+		if (vacuuming || needsVacuum(db)) {
+			vacuuming = true;
+			long reclaimed = vacuumStep(db);
+			if (reclaimed > 0) {
+				reclaimedPages += reclaimed;
+				return true;
+			}
+		}
+		
+		finishPass(db);
+		return false;
+	}
+	
+	private void finishPass(SQLiteDatabase db) {
+		running = false;
+		// Lets the shrunken main file be truncated once the log is folded back in
+		LyricDbHelper.checkpoint(db);
+		prefs.edit()
+		.putLong(PREF_LAST_RUN, System.currentTimeMillis())
+		.putInt(PREF_LAST_PURGED, purgedRows)
+		.putLong(PREF_LAST_RECLAIMED, reclaimedPages)
+		.apply();
+		Log.i(TAG, "Maintenance done: purged " + purgedRows + " rows, reclaimed " + reclaimedPages + " pages");
+	}
+	
+	static String expiredSelect(String table, String idColumn, String deletedAtColumn) {
+		return "SELECT " + idColumn + " FROM " + table +
+		" WHERE " + deletedAtColumn + " IS NOT NULL AND " + deletedAtColumn + " < ?" +
+		" LIMIT " + PURGE_BATCH_SIZE;
+	}
+	
+	// Dependent rows (setlist items, revisions, chunks, the search index) go through cascades and triggers,
+	// apart from index entries of lyrics not stored inline, which are removed here first
+	private static int purgeBatch(SQLiteDatabase db, String table, String idColumn, String deletedAtColumn,
+	long cutoff) {
+		db.beginTransaction();
+		try {
+			// Ids are fixed up front so the unindexed rows are exactly the deleted ones
+			List<String> ids = new ArrayList<>();
+			Cursor cursor = db.rawQuery(expiredSelect(table, idColumn, deletedAtColumn),
+			new String[]{String.valueOf(cutoff)});
+			try {
+				while (cursor.moveToNext()) {
+					ids.add(cursor.getString(0));
+				}
+				} finally {
+				cursor.close();
+			}
+			
+			int deleted = 0;
+			if (!ids.isEmpty()) {
+				StringBuilder placeholders = new StringBuilder();
+				for (int i = 0; i < ids.size(); i++) {
+					placeholders.append(i == 0 ? "?" : ", ?");
+				}
+				String selection = idColumn + " IN (" + placeholders + ")";
+				String[] args = ids.toArray(new String[0]);
+				if (LyricDbHelper.TABLE_LYRICS.equals(table)) {
+					LyricSearchIndex.unindexOutOfLine(db, selection, args);
+				}
+				deleted = db.delete(table, selection, args);
+			}
+			db.setTransactionSuccessful();
+			return deleted;
+			} finally {
+			db.endTransaction();
+		}
+	}
+	
+	private static boolean needsVacuum(SQLiteDatabase db) {
+		long pageCount = pragma(db, "page_count");
+		long freePages = pragma(db, "freelist_count");
+		return freePages >= VACUUM_MIN_FREE_PAGES && freePages >= pageCount * VACUUM_FREE_RATIO;
+	}
+	
+	// @return pages reclaimed by this step, 0 once the free list is empty
+	private static long vacuumStep(SQLiteDatabase db) {
+		long before = pragma(db, "freelist_count");
+		if (before == 0) return 0;
+		
+		if (pragma(db, "auto_vacuum") != AUTO_VACUUM_INCREMENTAL) {
+			// One-off rebuild; onConfigure has already asked for incremental mode
+			Log.i(TAG, "Converting database to incremental auto_vacuum");
+			db.execSQL("PRAGMA auto_vacuum = INCREMENTAL");
+			db.execSQL("VACUUM");
+			return before - pragma(db, "freelist_count");
+		}
+		
+		// Each row stepped frees more pages, so the cursor is drained like wal_checkpoint's
+		Cursor cursor = db.rawQuery("PRAGMA incremental_vacuum(" + VACUUM_STEP_PAGES + ")", null);
+		try {
+			while (cursor.moveToNext()) {
+				// Nothing to read
+			}
+			} finally {
+			cursor.close();
+		}
+		return before - pragma(db, "freelist_count");
+	}
+	
+	public Stats getStats() {
+		SQLiteDatabase db = helper.getReadableDatabase();
+		File wal = new File(databaseFile.getPath() + "-wal");
+		return new Stats(
+		databaseFile.length() + wal.length(),
+		pragma(db, "page_size"),
+		pragma(db, "page_count"),
+		pragma(db, "freelist_count"),
+		prefs.getLong(PREF_LAST_RUN, 0),
+		prefs.getInt(PREF_LAST_PURGED, 0),
+		prefs.getLong(PREF_LAST_RECLAIMED, 0));
+	}
+	
+	private static long pragma(SQLiteDatabase db, String name) {
+		return DatabaseUtils.longForQuery(db, "PRAGMA " + name, null);
+	}
+}
\ No newline at end of file
@@ -0,0 +1,83 @@
+package com.redlab.lyrex;
+
+import android.graphics.Typeface;
+import android.text.Editable;
+import android.text.Spannable;
+import android.text.TextWatcher;
+import android.text.style.ForegroundColorSpan;
+import android.text.style.StyleSpan;
+
+/**
+* Keeps section markers highlighted in an editor as it is typed in.
+*
+* Spans are updated in place on the Editable, so the IME, undo state and
+* selection are left alone. No keyword spans a line break, so each change only
+* rescans the lines it touched: a keystroke costs the length of its line,
+* whatever the size of the document. Setting the whole text rescans it once.
+*/
+final class EditorHighlighter implements TextWatcher {
+	// Own span types, so spans from elsewhere (pasted text, the IME) are never removed
+	private static final class MarkerColorSpan extends ForegroundColorSpan {
+		MarkerColorSpan(int color) {
+			super(color);
+		}
+	}
+	
+	private static final class MarkerStyleSpan extends StyleSpan {
+		MarkerStyleSpan() {
+			super(Typeface.BOLD);
+		}
+	}
+	
+	// Range changed since the last rescan, in current offsets, or -1
+	private int changedStart = -1;
+	private int changedEnd = -1;
+	
+	@Override
+	public void beforeTextChanged(CharSequence s, int start, int count, int after) {}
+	
+	@Override
+	public void onTextChanged(CharSequence s, int start, int before, int count) {
+		changedStart = start;
+		changedEnd = start + count;
+	}
+	
+	@Override
+	public void afterTextChanged(Editable s) {
+		if (changedStart < 0) return;
+		
+		int start = Math.min(changedStart, s.length());
+		int end = Math.min(changedEnd, s.length());
+		changedStart = -1;
+		changedEnd = -1;
+		rescan(s, LyricSection.lineStart(s, start), LyricSection.lineEnd(s, end));
+	}
+	
+	/**
+	* Replaces the marker spans within from..to, which must start and end at
+	* line boundaries.
+	* @return the number of markers found
+	*/
+	static int rescan(Spannable text, int from, int to) {
+		removeSpans(text, MarkerColorSpan.class, from, to);
+		removeSpans(text, MarkerStyleSpan.class, from, to);
+		
+		int[] spans = LyricSection.findHeaders(text, from, to);
+		for (int i = 0; i < spans.length; i += 3) {
+			text.setSpan(new MarkerColorSpan(Lyric.SECTION_COLORS[spans[i + 2]]),
+			spans[i], spans[i + 1], Spannable.SPAN_EXCLUSIVE_EXCLUSIVE);
+			text.setSpan(new MarkerStyleSpan(),
+			spans[i], spans[i + 1], Spannable.SPAN_EXCLUSIVE_EXCLUSIVE);
+		}
+		return spans.length / 3;
+	}
+	
+	// getSpans also returns spans that only touch the range, which belong to the lines beside it
+	private static <T> void removeSpans(Spannable text, Class<T> type, int from, int to) {
+		for (T span : text.getSpans(from, to, type)) {
+			if (text.getSpanStart(span) < to && text.getSpanEnd(span) > from) {
+				text.removeSpan(span);
+			}
+		}
+	}
+}
\ No newline at end of file
@@ -0,0 +1,175 @@
+package com.redlab.lyrex;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+* Line-level delta between two versions of a text.
+*
+* A delta is a list of operations, one per line of the encoded string: "=n"
+* keeps the next n lines of the base, "-n" drops them and "+text" inserts one
+* line. Lines shared at the start and end are trimmed before an LCS diff of the
+* middle; a middle too large for the LCS table is replaced wholesale, which is
+* still correct, only less compact.
+*/
+final class LineDelta {
+	// Cells of the LCS table allowed before falling back to replacing the middle
+	private static final long MAX_LCS_CELLS = 250_000;
+	
+	private LineDelta() {}
+	
+	static String diff(String from, String to) {
+		String[] a = split(from);
+		String[] b = split(to);
+		
+		int prefix = 0;
+		while (prefix < a.length && prefix < b.length && a[prefix].equals(b[prefix])) {
+			prefix++;
+		}
+		int suffix = 0;
+		while (suffix < a.length - prefix && suffix < b.length - prefix
+		&& a[a.length - 1 - suffix].equals(b[b.length - 1 - suffix])) {
+			suffix++;
+		}
+		
+		Encoder out = new Encoder();
+		out.keep(prefix);
+		int aEnd = a.length - suffix;
+		int bEnd = b.length - suffix;
+		if ((long) (aEnd - prefix) * (bEnd - prefix) <= MAX_LCS_CELLS) {
+			diffMiddle(a, prefix, aEnd, b, prefix, bEnd, out);
+			} else {
+			out.drop(aEnd - prefix);
+			for (int j = prefix; j < bEnd; j++) {
+				out.insert(b[j]);
+			}
+		}
+		out.keep(suffix);
+		return out.toString();
+	}
+	
+	/**
+	* @throws IllegalArgumentException if the delta does not fit the base
+	*/
+	static String apply(String base, String delta) {
+		String[] lines = split(base);
+		StringBuilder result = new StringBuilder(base.length() + delta.length());
+		int position = 0;
+		boolean first = true;
+		
+		for (String op : split(delta)) {
+			if (op.isEmpty()) {
+				throw new IllegalArgumentException("Empty delta operation");
+			}
+			char kind = op.charAt(0);
+			if (kind == '+') {
+				first = appendLine(result, op.substring(1), first);
+				continue;
+			}
+			int count = Integer.parseInt(op.substring(1));
+			if (count < 0 || position + count > lines.length) {
+				throw new IllegalArgumentException("Delta runs past the end of the base");
+			}
+			if (kind == '=') {
+				for (int i = position; i < position + count; i++) {
+					first = appendLine(result, lines[i], first);
+				}
+				} else if (kind != '-') {
+				throw new IllegalArgumentException("Unknown delta operation " + kind);
+			}
+			position += count;
+		}
+		if (position != lines.length) {
+			throw new IllegalArgumentException("Delta does not cover the whole base");
+		}
+		return result.toString();
+	}
+	
+	// Standard LCS table over the differing middle, walked forwards to emit operations
+	private static void diffMiddle(String[] a, int aStart, int aEnd, String[] b, int bStart, int bEnd,
+	Encoder out) {
+		int n = aEnd - aStart;
+		int m = bEnd - bStart;
+		// lcs[i][j]: longest common subsequence of a[aStart + i..] and b[bStart + j..]
+		int[][] lcs = new int[n + 1][m + 1];
+		for (int i = n - 1; i >= 0; i--) {
+			for (int j = m - 1; j >= 0; j--) {
+				lcs[i][j] = a[aStart + i].equals(b[bStart + j])
+				? lcs[i + 1][j + 1] + 1
+				: Math.max(lcs[i + 1][j], lcs[i][j + 1]);
+			}
+		}
+		
+		int i = 0;
+		int j = 0;
+		while (i < n && j < m) {
+			if (a[aStart + i].equals(b[bStart + j])) {
+				out.keep(1);
+				i++;
+				j++;
+				} else if (lcs[i + 1][j] >= lcs[i][j + 1]) {
+				out.drop(1);
+				i++;
+				} else {
+				out.insert(b[bStart + j]);
+				j++;
+			}
+		}
+		out.drop(n - i);
+		while (j < m) {
+			out.insert(b[bStart + j++]);
+		}
+	}
+	
+	// Splits on '\n' keeping a trailing empty line, so join(split(s)) == s
+	private static String[] split(String text) {
+		return text.split("\n", -1);
+	}
+	
+	private static boolean appendLine(StringBuilder result, String line, boolean first) {
+		if (!first) result.append('\n');
+		result.append(line);
+		return false;
+	}
+	
+	// Collapses runs of keeps and drops into single counted operations
+	private static class Encoder {
+		private final List<String> ops = new ArrayList<>();
+		private char pendingKind = 0;
+		private int pendingCount = 0;
+		
+		void keep(int count) {
+			counted('=', count);
+		}
+		
+		void drop(int count) {
+			counted('-', count);
+		}
+		
+		void insert(String line) {
+			flush();
+			ops.add("+" + line);
+		}
+		
+		private void counted(char kind, int count) {
+			if (count <= 0) return;
+			if (kind != pendingKind) flush();
+			pendingKind = kind;
+			pendingCount += count;
+		}
+		
+		private void flush() {
+			if (pendingCount > 0) {
+				ops.add(pendingKind + String.valueOf(pendingCount));
+			}
+			pendingKind = 0;
+			pendingCount = 0;
+		}
+		
+		@Override
+		public String toString() {
+			flush();
+			return String.join("\n", ops);
+		}
+	}
+}
\ No newline at end of file
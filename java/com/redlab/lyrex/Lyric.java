@@ -1,29 +1,51 @@
 package com.redlab.lyrex;
 
-import android.graphics.Color;
 import android.text.Spannable;
 import android.text.SpannableStringBuilder;
 import android.text.style.ForegroundColorSpan;
 import android.text.style.StyleSpan;
+import android.graphics.Color;
 import android.graphics.Typeface;
 import android.content.Context;
 import android.os.Environment;
-import java.util.regex.Pattern;
-import java.util.regex.Matcher;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.text.SimpleDateFormat;
 import java.util.Date;
+import java.util.List;
 import java.util.Locale;
 
 public class Lyric {
+	// Highlight colour of each SectionMarkers kind
+	static final int[] SECTION_COLORS = {
+		Color.parseColor("#2196F3"),    // Blue for VERSE
+		Color.parseColor("#4CAF50"),    // Green for PRE-CHORUS
+		Color.parseColor("#F44336"),    // Red for CHORUS
+		Color.parseColor("#9C27B0"),    // Purple for BRIDGE
+		Color.parseColor("#FF9800"),    // Orange for REFRAIN
+		Color.parseColor("#78909C"),    // Blue Gray for INTRO
+		Color.parseColor("#A1887F"),    // Brown for OUTRO
+		Color.parseColor("#E91E63"),    // Pink for HOOK
+		Color.parseColor("#009688")     // Teal for TAG
+	};
+	
 	private int id;
 	private String title;
+	// Guarded by this, since cached lyrics are read from several threads
 	private String content;
+	// Stored form of a compressed body, decoded the first time the content is read
+	private byte[] compressedContent;
 	private long timestamp;
 	private String sectionType;
 	private SpannableStringBuilder styledContent;
+	// Section headers as LyricSection.findHeaders triples, or as stored with the row until first used
+	private int[] sectionSpans;
+	private byte[] storedSectionSpans;
+	// Parsed from sectionSpans on first use
+	private List<LyricSection> sections;
+	// Chord positions, parsed on first use; immutable, so copies share it
+	private ChordChart chordChart;
 	
 	// Constructor for new lyrics
 	public Lyric(String title, String content) {
@@ -44,10 +66,43 @@ public class Lyric {
 		this.styledContent = null;
 	}
 	
+	// Copy for caches; the highlighted content is not carried over
+	public Lyric(Lyric other) {
+		this(other.id, other.title, null, other.timestamp, other.sectionType);
+		synchronized (other) {
+			this.content = other.content;
+			this.compressedContent = other.compressedContent;
+		}
+		this.sectionSpans = other.sectionSpans;
+		this.storedSectionSpans = other.storedSectionSpans;
+		this.sections = other.sections;
+		this.chordChart = other.chordChart;
+	}
+	
+	// Row read from the database with its body still compressed
+	static Lyric withCompressedContent(int id, String title, byte[] compressedContent, long timestamp,
+	String sectionType) {
+		Lyric lyric = new Lyric(id, title, null, timestamp, sectionType);
+		lyric.compressedContent = compressedContent;
+		return lyric;
+	}
+	
+	// Approximate bytes held for the body, without decoding it
+	synchronized int contentFootprint() {
+		if (compressedContent != null) return compressedContent.length;
+		return (content != null) ? 2 * content.length() : 0;
+	}
+	
 	// Getters
 	public int getId() { return id; }
 	public String getTitle() { return title; }
-	public String getContent() { return content; }
+	public synchronized String getContent() {
+		if (compressedContent != null) {
+			content = ContentCodec.decode(compressedContent);
+			compressedContent = null;
+		}
+		return content;
+	}
 	public long getTimestamp() { return timestamp; }
 	public String getSectionType() { return sectionType; }
 	public SpannableStringBuilder getStyledContent() { return styledContent; }
@@ -56,60 +111,105 @@ public class Lyric {
 	public void setId(int id) { this.id = id; }
 	public void setTitle(String title) { this.title = title; }
 	public void setContent(String content) {
-		this.content = content;
+		synchronized (this) {
+			this.content = content;
+			this.compressedContent = null;
+		}
 		this.styledContent = null;
+		this.sectionSpans = null;
+		this.storedSectionSpans = null;
+		this.sections = null;
+		this.chordChart = null;
 	}
 	public void setTimestamp(long timestamp) { this.timestamp = timestamp; }
 	public void setSectionType(String sectionType) {
 		this.sectionType = (sectionType != null) ? sectionType.toLowerCase() : "verse";
 	}
 	
+	// Stored spans are checked against the content when first used; stale ones are recomputed
+	void setStoredSectionSpans(byte[] storedSectionSpans) {
+		this.sectionSpans = null;
+		this.storedSectionSpans = storedSectionSpans;
+		this.sections = null;
+	}
+	
+	/**
+	* Section markers as {start, end, kind} triples, scanned only if none were
+	* stored for the current content.
+	*/
+	int[] getSectionSpans() {
+		if (sectionSpans == null) {
+			String text = getContent();
+			if (storedSectionSpans != null && text != null) {
+				sectionSpans = SectionMarkers.decode(storedSectionSpans, text.length());
+				storedSectionSpans = null;
+			}
+			if (sectionSpans == null) {
+				sectionSpans = LyricSection.findHeaders(text);
+			}
+		}
+		return sectionSpans;
+	}
+	
+	/**
+	* The content split at its section headers, parsed once from the section
+	* spans and kept until the content changes.
+	*/
+	public List<LyricSection> getSections() {
+		if (sections == null) {
+			sections = LyricSection.parse(getContent(), getSectionSpans());
+		}
+		return sections;
+	}
+	
+	ChordChart getChordChart() {
+		if (chordChart == null) {
+			chordChart = ChordChart.parse(getContent());
+		}
+		return chordChart;
+	}
+	
+	// Takes a chart parsed from a copy of this lyric, unless one is already here
+	void adoptChordChart(ChordChart chart) {
+		if (chordChart == null) {
+			chordChart = chart;
+		}
+	}
+	
+	/**
+	* The content with its chords moved by semitones; renderings are cached on
+	* the chord chart.
+	*/
+	public String getContentInKey(int semitones) {
+		return getChordChart().render(semitones);
+	}
+	
 	/**
 	* Highlights section keywords in the lyric content
 	*/
 	public void highlightSections() {
-		if (content == null || content.trim().isEmpty()) {
+		if (getContent() == null || getContent().trim().isEmpty()) {
 			styledContent = null;
 			return;
 		}
 		
-		styledContent = new SpannableStringBuilder(content);
-		
-		String[] patterns = {
-			"\\b(VERSE|Verse|verse|\\[VERSE\\]|\\[Verse\\]|\\[verse\\])\\b",
-			"\\b(PRE-CHORUS|Pre-Chorus|pre-chorus|\\[PRE-CHORUS\\]|\\[Pre-Chorus\\]|\\[pre-chorus\\])\\b",
-			"\\b(CHORUS|Chorus|chorus|\\[CHORUS\\]|\\[Chorus\\]|\\[chorus\\])\\b",
-			"\\b(BRIDGE|Bridge|bridge|\\[BRIDGE\\]|\\[Bridge\\]|\\[bridge\\])\\b",
-			"\\b(REFRAIN|Refrain|refrain|\\[REFRAIN\\]|\\[Refrain\\]|\\[refrain\\])\\b"
-		};
+		styledContent = new SpannableStringBuilder(getContent());
 		
-		int[] colors = {
-			Color.parseColor("#2196F3"),    // Blue for VERSE
-			Color.parseColor("#4CAF50"),    // Green for PRE-CHORUS
-			Color.parseColor("#F44336"),    // Red for CHORUS
-			Color.parseColor("#9C27B0"),    // Purple for BRIDGE
-			Color.parseColor("#FF9800")     // Orange for REFRAIN
-		};
-		
-		for (int i = 0; i < patterns.length; i++) {
-			Pattern pattern = Pattern.compile(patterns[i], Pattern.CASE_INSENSITIVE);
-			Matcher matcher = pattern.matcher(content);
+		int[] spans = getSectionSpans();
+		for (int i = 0; i < spans.length; i += 3) {
+			styledContent.setSpan(
+			new ForegroundColorSpan(SECTION_COLORS[spans[i + 2]]),
+			spans[i],
+			spans[i + 1],
+			Spannable.SPAN_EXCLUSIVE_EXCLUSIVE
+			);
 			
-			while (matcher.find()) {
-				styledContent.setSpan(
-				new ForegroundColorSpan(colors[i]),
-				matcher.start(),
-				matcher.end(),
-				Spannable.SPAN_EXCLUSIVE_EXCLUSIVE
-				);
-				
-				styledContent.setSpan(
-				new StyleSpan(Typeface.BOLD),
-				matcher.start(),
-				matcher.end(),
-				Spannable.SPAN_EXCLUSIVE_EXCLUSIVE
-				);
-			}
+			styledContent.setSpan(
+			new StyleSpan(Typeface.BOLD),
+			spans[i],
+			spans[i + 1],
+			Spannable.SPAN_EXCLUSIVE_EXCLUSIVE
+			);
 		}
 	}
 	
@@ -159,12 +259,16 @@ public class Lyric {
 			writer.write("Title: " + title + "\n");
 			writer.write("Created: " + new SimpleDateFormat("MMMM dd, yyyy 'at' hh:mm a", Locale.getDefault()).format(new Date(this.timestamp)) + "\n");
 			writer.write("Section Type: " + sectionType.toUpperCase() + "\n");
+			String outline = sectionOutline();
+			if (!outline.isEmpty()) {
+				writer.write("Sections: " + outline + "\n");
+			}
 			writer.write("Export Date: " + new SimpleDateFormat("MMMM dd, yyyy 'at' hh:mm a", Locale.getDefault()).format(new Date()) + "\n");
 			writer.write("File Location: " + txtFile.getAbsolutePath() + "\n");
 			
 			writer.write("\n🎵 LYRICS:\n");
 			writer.write(separator + "\n\n");
-			writer.write(content);
+			writer.write(getContent());
 			writer.write("\n\n" + separator + "\n");
 			writer.write("📱 Exported by LyrEx - Professional Lyrics Manager\n");
 			writer.write("🌐 Version: 1.0.0\n");
@@ -173,7 +277,7 @@ public class Lyric {
 			writer.close();
 			
 			// Also create a backup in the Backups folder
-			createBackupCopy(new File(backupsFolder, fileName), content);
+			createBackupCopy(new File(backupsFolder, fileName), getContent());
 			
 			return txtFile.getAbsolutePath();
 			
@@ -195,7 +299,7 @@ public class Lyric {
 				writer.write("=== LYREX PROFESSIONAL ===\n\n");
 				writer.write("Title: " + title + "\n");
 				writer.write("Created: " + new SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.getDefault()).format(new Date()) + "\n\n");
-				writer.write(content);
+				writer.write(getContent());
 				writer.write("\n\n--- End of Export ---");
 				writer.close();
 				
@@ -208,6 +312,17 @@ public class Lyric {
 		}
 	}
 	
+	// Header labels in order, e.g. "Verse 1, Chorus, Verse 2"
+	private String sectionOutline() {
+		StringBuilder outline = new StringBuilder();
+		for (LyricSection section : getSections()) {
+			if (section.getKind() == LyricSection.KIND_UNMARKED) continue;
+			if (outline.length() > 0) outline.append(", ");
+			outline.append(section.getLabel());
+		}
+		return outline.toString();
+	}
+	
 	private void createBackupCopy(File backupFile, String content) {
 		try {
 			FileWriter backupWriter = new FileWriter(backupFile);
@@ -236,51 +351,53 @@ public class Lyric {
 		return sanitized.trim().replaceAll("_+", "_"); // Remove multiple underscores
 	}
 	
+	// Kinds in the order detectSectionType prefers them
+	private static final int[] TYPE_PRIORITY = {
+		SectionMarkers.KIND_CHORUS, SectionMarkers.KIND_PRE_CHORUS, SectionMarkers.KIND_BRIDGE,
+		SectionMarkers.KIND_REFRAIN
+	};
+	
+	/**
+	* Sets the section type from the headed sections: chorus if there is one,
+	* then pre-chorus, bridge and refrain, otherwise verse.
+	*/
 	public void detectSectionType() {
-		if (content == null) return;
-		
-		String lowerContent = content.toLowerCase();
+		if (getContent() == null) return;
 		
-		if (lowerContent.contains("chorus")) {
-			sectionType = "chorus";
-			} else if (lowerContent.contains("pre-chorus")) {
-			sectionType = "pre-chorus";
-			} else if (lowerContent.contains("bridge")) {
-			sectionType = "bridge";
-			} else if (lowerContent.contains("refrain")) {
-			sectionType = "refrain";
-			} else {
-			sectionType = "verse";
+		sectionType = "verse";
+		for (int kind : TYPE_PRIORITY) {
+			if (hasSection(kind)) {
+				sectionType = SectionMarkers.keyword(kind);
+				break;
+			}
 		}
 		
 		highlightSections();
 	}
 	
+	private boolean hasSection(int kind) {
+		for (LyricSection section : getSections()) {
+			if (section.getKind() == kind) return true;
+		}
+		return false;
+	}
+	
+	/**
+	* Sets the section type from a header on the first non-blank line, if there is one.
+	*/
 	public void autoDetectSection() {
-		if (content == null || content.trim().isEmpty()) return;
-		
-		String[] lines = content.split("\n");
-		if (lines.length == 0) return;
-		
-		String firstLine = lines[0].toLowerCase().trim();
+		if (getContent() == null || getContent().trim().isEmpty()) return;
 		
-		if (firstLine.contains("chorus:") || firstLine.contains("[chorus]")) {
-			sectionType = "chorus";
-			} else if (firstLine.contains("pre-chorus:") || firstLine.contains("[pre-chorus]")) {
-			sectionType = "pre-chorus";
-			} else if (firstLine.contains("bridge:") || firstLine.contains("[bridge]")) {
-			sectionType = "bridge";
-			} else if (firstLine.contains("refrain:") || firstLine.contains("[refrain]")) {
-			sectionType = "refrain";
-			} else if (firstLine.contains("verse:") || firstLine.contains("[verse]")) {
-			sectionType = "verse";
+		List<LyricSection> sections = getSections();
+		if (!sections.isEmpty() && sections.get(0).getKind() != LyricSection.KIND_UNMARKED) {
+			sectionType = sections.get(0).getTypeName();
 		}
 		
 		highlightSections();
 	}
 	
 	public boolean hasHighlights() {
-		return styledContent != null && !styledContent.toString().equals(content);
+		return styledContent != null && !styledContent.toString().equals(getContent());
 	}
 	
 	public void clearHighlights() {
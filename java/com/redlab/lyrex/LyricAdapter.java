@@ -23,21 +23,29 @@ import java.util.Date;
 import java.util.Locale;
 
 /**
-* Enhanced Adapter for displaying lyrics in RecyclerView with beautiful Material Design
+* Enhanced Adapter for displaying lyrics in RecyclerView with beautiful Material Design.
+* Rows are content-free summaries from a LyricPager; the next page is fetched as the user scrolls near the end.
 */
-public class LyricAdapter extends RecyclerView.Adapter<LyricAdapter.LyricViewHolder> {
+public class LyricAdapter extends RecyclerView.Adapter<LyricAdapter.LyricViewHolder> implements LyricPager.Listener {
+	// Start fetching the next page this many rows before the end is reached
+	private static final int PREFETCH_DISTANCE = 10;
+	
 	private final Context context;
-	private List<Lyric> lyrics;
+	private LyricPager pager;
 	private final Set<Integer> selectedIds = new HashSet<>();
 	private final OnLyricClickListener clickListener;
+	private OnListLoadedListener listLoadedListener;
 	
 	public interface OnLyricClickListener {
-		void onLyricClick(Lyric lyric);
+		void onLyricClick(LyricSummary lyric);
+	}
+	
+	public interface OnListLoadedListener {
+		void onListLoaded(int itemCount);
 	}
 	
-	public LyricAdapter(Context context, List<Lyric> lyrics, OnLyricClickListener listener) {
+	public LyricAdapter(Context context, OnLyricClickListener listener) {
 		this.context = context;
-		this.lyrics = (lyrics != null) ? lyrics : new ArrayList<>();
 		this.clickListener = listener;
 	}
 	
@@ -50,20 +58,76 @@ public class LyricAdapter extends RecyclerView.Adapter<LyricAdapter.LyricViewHol
 	
 	@Override
 	public void onBindViewHolder(@NonNull LyricViewHolder holder, int position) {
-		Lyric lyric = lyrics.get(position);
-		holder.bind(lyric);
+		LyricSummary lyric = pager.get(position);
+		if (lyric != null) {
+			holder.bind(lyric);
+			} else {
+			// Page is on its way back from the database
+			holder.bindPlaceholder();
+		}
+		prefetchIfNeeded(position);
 	}
 	
 	@Override
 	public int getItemCount() {
-		return lyrics.size();
+		return pager != null ? pager.getCount() : 0;
 	}
 	
-	public void updateData(List<Lyric> newLyrics) {
-		this.lyrics = (newLyrics != null) ? newLyrics : new ArrayList<>();
+	public void setOnListLoadedListener(OnListLoadedListener listener) {
+		this.listLoadedListener = listener;
+	}
+	
+	/**
+	* Replaces the data source and starts loading its first page.
+	*/
+	public void setPager(LyricPager newPager) {
+		if (pager != null) {
+			pager.close();
+		}
+		this.pager = newPager;
+		if (pager != null) {
+			pager.setListener(this);
+			if (pager.getCount() == 0) {
+				pager.loadNextPage();
+			}
+		}
 		notifyDataSetChanged();
 	}
 	
+	@Override
+	public void onRowsAppended(int start, int count) {
+		if (count > 0) {
+			notifyItemRangeInserted(start, count);
+		}
+		if (listLoadedListener != null) {
+			listLoadedListener.onListLoaded(getItemCount());
+		}
+	}
+	
+	@Override
+	public void onRowsReloaded(int start, int count) {
+		notifyItemRangeChanged(start, count);
+	}
+	
+	/**
+	* Applies row-level changes to the current pager; see LyricPager.applyChanges.
+	*/
+	public void applyChanges(Set<Integer> ids, Runnable onStructureChanged) {
+		if (pager == null) {
+			onStructureChanged.run();
+			return;
+		}
+		pager.applyChanges(ids, onStructureChanged);
+	}
+	
+	private void prefetchIfNeeded(int position) {
+		if (pager == null || !pager.hasMore()) return;
+		if (position < pager.getCount() - PREFETCH_DISTANCE) return;
+		
+		// Results arrive through a posted callback, never during this bind pass
+		pager.loadNextPage();
+	}
+	
 	private String getFormattedDate(long timestamp) {
 		SimpleDateFormat sdf = new SimpleDateFormat("MMM d, yyyy h:mm a", Locale.getDefault());
 		return sdf.format(new Date(timestamp));
@@ -71,7 +135,7 @@ public class LyricAdapter extends RecyclerView.Adapter<LyricAdapter.LyricViewHol
 	
 	// ---------------- Selection Handling ----------------
 	
-	public void toggleSelection(Lyric lyric) {
+	public void toggleSelection(LyricSummary lyric) {
 		if (lyric == null) return;
 		int id = lyric.getId();
 		if (selectedIds.contains(id)) {
@@ -88,28 +152,24 @@ public class LyricAdapter extends RecyclerView.Adapter<LyricAdapter.LyricViewHol
 	}
 	
 	public void selectAll() {
-		selectedIds.clear();
-		for (Lyric l : lyrics) {
-			selectedIds.add(l.getId());
-		}
-		notifyDataSetChanged();
+		if (pager == null) return;
+		// Not every page is loaded, so ask the database for the ids alone
+		pager.loadAllIds(ids -> {
+			selectedIds.clear();
+			selectedIds.addAll(ids);
+			notifyDataSetChanged();
+		});
 	}
 	
-	public List<Lyric> getSelectedLyrics() {
-		List<Lyric> result = new ArrayList<>();
-		for (Lyric l : lyrics) {
-			if (selectedIds.contains(l.getId())) {
-				result.add(l);
-			}
-		}
-		return result;
+	public List<Integer> getSelectedIds() {
+		return new ArrayList<>(selectedIds);
 	}
 	
 	public int getSelectedCount() {
 		return selectedIds.size();
 	}
 	
-	public boolean isSelected(Lyric lyric) {
+	public boolean isSelected(LyricSummary lyric) {
 		return lyric != null && selectedIds.contains(lyric.getId());
 	}
 	
@@ -146,7 +206,10 @@ public class LyricAdapter extends RecyclerView.Adapter<LyricAdapter.LyricViewHol
 			itemView.setOnClickListener(v -> {
 				int pos = getAdapterPosition();
 				if (pos != RecyclerView.NO_POSITION && clickListener != null) {
-					clickListener.onLyricClick(lyrics.get(pos));
+					LyricSummary lyric = pager.get(pos);
+					if (lyric != null) {
+						clickListener.onLyricClick(lyric);
+					}
 				}
 			});
 			
@@ -154,20 +217,30 @@ public class LyricAdapter extends RecyclerView.Adapter<LyricAdapter.LyricViewHol
 			itemView.setOnLongClickListener(v -> {
 				int pos = getAdapterPosition();
 				if (pos != RecyclerView.NO_POSITION) {
-					toggleSelection(lyrics.get(pos));
+					toggleSelection(pager.get(pos));
 				}
 				return true;
 			});
 		}
 		
-		void bind(Lyric lyric) {
+		void bindPlaceholder() {
+			titleView.setText("");
+			if (cardView != null) {
+				previewView.setText("");
+				dateView.setText("");
+				lengthView.setText("");
+				updateSelectionUI(false);
+			}
+		}
+		
+		void bind(LyricSummary lyric) {
 			// Set title
 			titleView.setText(lyric.getTitle());
 			
 			// Check if the card view is available to apply enhanced visuals
 			if (cardView != null) {
 				// Set preview text
-				String preview = getPreviewText(lyric.getContent());
+				String preview = lyric.getPreview();
 				previewView.setText(preview);
 				previewView.setVisibility(TextUtils.isEmpty(preview) ? View.GONE : View.VISIBLE);
 				
@@ -183,7 +256,7 @@ public class LyricAdapter extends RecyclerView.Adapter<LyricAdapter.LyricViewHol
 				}
 				
 				// Set word/line count
-				String lengthText = getLengthText(lyric.getContent());
+				String lengthText = getLengthText(lyric.getWordCount(), lyric.getLineCount());
 				lengthView.setText(lengthText);
 				
 				// Handle selection state
@@ -199,30 +272,11 @@ public class LyricAdapter extends RecyclerView.Adapter<LyricAdapter.LyricViewHol
 			}
 		}
 		
-		private String getPreviewText(String content) {
-			if (TextUtils.isEmpty(content)) {
-				return "";
-			}
-			
-			// Get first line or first 60 characters
-			String[] lines = content.split("\n");
-			if (lines.length > 0 && !lines[0].trim().isEmpty()) {
-				String firstLine = lines[0].trim();
-				return firstLine.length() > 60 ? firstLine.substring(0, 60) + "..." : firstLine;
-			}
-			
-			// Fallback: first 60 chars of content
-			return content.length() > 60 ? content.substring(0, 60) + "..." : content;
-		}
-		
-		private String getLengthText(String content) {
-			if (TextUtils.isEmpty(content)) {
+		private String getLengthText(int wordCount, int lineCount) {
+			if (wordCount <= 0) {
 				return "0 words";
 			}
 			
-			int wordCount = content.split("\\s+").length;
-			int lineCount = content.split("\n").length;
-			
 			if (wordCount < 50) {
 				return wordCount + " words";
 				} else {
@@ -0,0 +1,129 @@
+package com.redlab.lyrex;
+
+import android.util.LruCache;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+* Memory-bounded LRU cache of full lyrics in front of the lyrics table.
+*
+* Entries are sized by the text they hold, compressed bodies at their stored
+* size, so a few long songs cannot crowd out the rest of the budget. Lyric is
+* mutable, so copies go in and copies come out; callers can never change a
+* cached entry behind the cache's back.
+*
+* LyricDbHelper writes through on insert and update, except for chunked
+* bodies, removes on delete and clears the cache when a restore replaces the library. Rows read from the
+* database are only added if no write happened while they were being read, so a
+* slow read cannot put back a version an update has just replaced.
+*/
+public final class LyricCache {
+	// Share of the heap the cache may use, and a ceiling for large-heap devices
+	private static final int HEAP_FRACTION = 32;
+	private static final int MAX_BYTES = 4 * 1024 * 1024;
+	// Rough per-entry cost of the Lyric object, its strings and the map entry
+	private static final int ENTRY_OVERHEAD_BYTES = 96;
+	
+	private final LruCache<Integer, Lyric> lyrics;
+	// Bumped by every write, see putIfUnchanged
+	private long writeStamp = 0;
+	
+	LyricCache() {
+		this((int) Math.min(Runtime.getRuntime().maxMemory() / HEAP_FRACTION, MAX_BYTES));
+	}
+	
+	LyricCache(int maxBytes) {
+		lyrics = new LruCache<Integer, Lyric>(maxBytes) {
+			@Override
+			protected int sizeOf(Integer id, Lyric lyric) {
+				return ENTRY_OVERHEAD_BYTES + 2 * length(lyric.getTitle()) + lyric.contentFootprint();
+			}
+		};
+	}
+	
+	/**
+	* Copy of the cached lyric, or null on a miss.
+	*/
+	public Lyric get(int id) {
+		Lyric lyric = lyrics.get(id);
+		return (lyric != null) ? new Lyric(lyric) : null;
+	}
+	
+	/**
+	* Stamp to pass to putIfUnchanged for rows about to be read from the database.
+	*/
+	synchronized long getWriteStamp() {
+		return writeStamp;
+	}
+	
+	// Read-through fill; dropped if a write landed since the stamp was taken
+	synchronized void putIfUnchanged(long stamp, Collection<Lyric> loaded) {
+		if (stamp != writeStamp) return;
+		for (Lyric lyric : loaded) {
+			// Bodies long enough to be stored in chunks are read from the table each time
+			if (lyric.contentFootprint() >= 2 * LyricChunks.CHUNK_THRESHOLD_CHARS) continue;
+			lyrics.put(lyric.getId(), new Lyric(lyric));
+		}
+	}
+	
+	synchronized void put(Lyric lyric) {
+		writeStamp++;
+		lyrics.put(lyric.getId(), new Lyric(lyric));
+	}
+	
+	synchronized void remove(int id) {
+		writeStamp++;
+		lyrics.remove(id);
+	}
+	
+	synchronized void clear() {
+		writeStamp++;
+		lyrics.evictAll();
+	}
+	
+	/**
+	* Puts copies of the cached lyrics among ids into found.
+	* @return the ids that missed, in the order given
+	*/
+	List<Integer> getAll(List<Integer> ids, Map<Integer, Lyric> found) {
+		List<Integer> misses = new ArrayList<>();
+		for (Integer id : ids) {
+			Lyric lyric = get(id);
+			if (lyric != null) {
+				found.put(id, lyric);
+				} else {
+				misses.add(id);
+			}
+		}
+		return misses;
+	}
+	
+	public int hitCount() {
+		return lyrics.hitCount();
+	}
+	
+	public int missCount() {
+		return lyrics.missCount();
+	}
+	
+	public int sizeBytes() {
+		return lyrics.size();
+	}
+	
+	public int maxSizeBytes() {
+		return lyrics.maxSize();
+	}
+	
+	@Override
+	public String toString() {
+		return "LyricCache[hits=" + hitCount() + ", misses=" + missCount()
+		+ ", " + sizeBytes() + "/" + maxSizeBytes() + " bytes]";
+	}
+	
+	private static int length(String s) {
+		return (s != null) ? s.length() : 0;
+	}
+}
\ No newline at end of file
@@ -0,0 +1,185 @@
+package com.redlab.lyrex;
+
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+import java.io.Reader;
+
+/**
+* Lyric bodies too large to keep in their row, stored as fixed-size chunks.
+*
+* A CursorWindow holds about 2 MB, and a single row that does not fit fails the
+* whole query it belongs to. Bodies of CHUNK_THRESHOLD_CHARS or more are split
+* into CHUNK_CHARS pieces here, with the row's content left empty and the
+* number of chunks in LyricDbHelper.COLUMN_CONTENT_CHUNKS. Each chunk is read by
+* a query of its own, so no cursor ever holds more than one. Rows go with their
+* lyric through ON DELETE CASCADE.
+*/
+public final class LyricChunks {
+	public static final String TABLE_LYRIC_CHUNKS = "lyric_chunks";
+	public static final String COLUMN_LYRIC_ID = "lyric_id";
+	public static final String COLUMN_SEQ = "seq";
+	public static final String COLUMN_DATA = "data";
+	
+	// At most 3 UTF-8 bytes per char, so a chunk stays well inside one window
+	static final int CHUNK_CHARS = 128 * 1024;
+	static final int CHUNK_THRESHOLD_CHARS = 2 * CHUNK_CHARS;
+	
+	static final String SQL_READ_CHUNK = "SELECT " + COLUMN_DATA + " FROM " + TABLE_LYRIC_CHUNKS +
+	" WHERE " + COLUMN_LYRIC_ID + " = ? AND " + COLUMN_SEQ + " = ?";
+	
+	private LyricChunks() {}
+	
+	// The primary key is the lookup for reads and for the cascade
+	public static void create(SQLiteDatabase db) {
+		db.execSQL("CREATE TABLE IF NOT EXISTS " + TABLE_LYRIC_CHUNKS + " (" +
+		COLUMN_LYRIC_ID + " INTEGER NOT NULL REFERENCES " + LyricDbHelper.TABLE_LYRICS +
+		"(" + LyricDbHelper.COLUMN_ID + ") ON DELETE CASCADE, " +
+		COLUMN_SEQ + " INTEGER NOT NULL, " +
+		COLUMN_DATA + " TEXT NOT NULL, " +
+		"PRIMARY KEY (" + COLUMN_LYRIC_ID + ", " + COLUMN_SEQ + "))");
+	}
+	
+	static boolean needsChunks(String content) {
+		return content != null && content.length() >= CHUNK_THRESHOLD_CHARS;
+	}
+	
+	// Number of chunks write will store for content
+	static int chunkCount(String content) {
+		int count = 0;
+		for (int start = 0; start < content.length(); start = chunkEnd(content, start)) {
+			count++;
+		}
+		return count;
+	}
+	
+	// Never splits a surrogate pair, which could not be encoded on its own
+	private static int chunkEnd(String content, int start) {
+		int end = Math.min(content.length(), start + CHUNK_CHARS);
+		if (end < content.length() && Character.isHighSurrogate(content.charAt(end - 1))) {
+			end--;
+		}
+		return end;
+	}
+	
+	/**
+	* Replaces the chunks of a lyric with content. Call inside the transaction
+	* that writes the row.
+	*/
+	static void write(SQLiteDatabase db, long lyricId, String content) {
+		delete(db, lyricId);
+		SQLiteStatement insert = db.compileStatement("INSERT INTO " + TABLE_LYRIC_CHUNKS + " (" +
+		COLUMN_LYRIC_ID + ", " + COLUMN_SEQ + ", " + COLUMN_DATA + ") VALUES (?, ?, ?)");
+		try {
+			int seq = 0;
+			for (int start = 0; start < content.length(); ) {
+				int end = chunkEnd(content, start);
+				insert.bindLong(1, lyricId);
+				insert.bindLong(2, seq++);
+				insert.bindString(3, content.substring(start, end));
+				insert.executeInsert();
+				start = end;
+			}
+			} finally {
+			insert.close();
+		}
+	}
+	
+	static void delete(SQLiteDatabase db, long lyricId) {
+		db.delete(TABLE_LYRIC_CHUNKS, COLUMN_LYRIC_ID + " = ?", new String[]{String.valueOf(lyricId)});
+	}
+	
+	/**
+	* Moves the content column of an existing row into chunks, cutting it with
+	* substr() so the oversized value never passes through a cursor. The row
+	* itself is left for the caller to update.
+	* @return the number of chunks written
+	*/
+	static int copyFromContent(SQLiteDatabase db, long lyricId) {
+		String[] idArgs = {String.valueOf(lyricId)};
+		delete(db, lyricId);
+		long length = DatabaseUtils.longForQuery(db, "SELECT length(" + LyricDbHelper.COLUMN_CONTENT + ") FROM " +
+		LyricDbHelper.TABLE_LYRICS + " WHERE " + LyricDbHelper.COLUMN_ID + " = ?", idArgs);
+		
+		int seq = 0;
+		// substr() counts characters, not UTF-16 units, so pairs are never split
+		for (long start = 1; start <= length; start += CHUNK_CHARS) {
+			db.execSQL("INSERT INTO " + TABLE_LYRIC_CHUNKS + " (" +
+			COLUMN_LYRIC_ID + ", " + COLUMN_SEQ + ", " + COLUMN_DATA + ")" +
+			" SELECT " + LyricDbHelper.COLUMN_ID + ", ?, substr(" + LyricDbHelper.COLUMN_CONTENT + ", ?, ?)" +
+			" FROM " + LyricDbHelper.TABLE_LYRICS + " WHERE " + LyricDbHelper.COLUMN_ID + " = ?",
+			new Object[]{seq++, start, CHUNK_CHARS, lyricId});
+		}
+		return seq;
+	}
+	
+	/**
+	* The whole body, read one chunk per query.
+	* @throws IllegalStateException if a chunk is missing
+	*/
+	static String read(SQLiteDatabase db, long lyricId, int chunkCount) {
+		StringBuilder content = new StringBuilder(chunkCount * CHUNK_CHARS);
+		for (int seq = 0; seq < chunkCount; seq++) {
+			content.append(readChunk(db, lyricId, seq));
+		}
+		return content.toString();
+	}
+	
+	/**
+	* Streams the body a chunk at a time, for callers that never need it whole.
+	* Reads use db lazily, so the reader must be consumed while db is open.
+	*/
+	static Reader openReader(SQLiteDatabase db, long lyricId, int chunkCount) {
+		return new ChunkReader(db, lyricId, chunkCount);
+	}
+	
+	private static String readChunk(SQLiteDatabase db, long lyricId, int seq) {
+		Cursor cursor = db.rawQuery(SQL_READ_CHUNK, new String[]{String.valueOf(lyricId), String.valueOf(seq)});
+		try {
+			if (!cursor.moveToFirst()) {
+				throw new IllegalStateException("Lyric " + lyricId + " is missing chunk " + seq);
+			}
+			return cursor.getString(0);
+			} finally {
+			cursor.close();
+		}
+	}
+	
+	private static class ChunkReader extends Reader {
+		private final SQLiteDatabase db;
+		private final long lyricId;
+		private final int chunkCount;
+		private int nextSeq = 0;
+		private String chunk = "";
+		private int position = 0;
+		
+		ChunkReader(SQLiteDatabase db, long lyricId, int chunkCount) {
+			this.db = db;
+			this.lyricId = lyricId;
+			this.chunkCount = chunkCount;
+		}
+		
+		@Override
+		public int read(char[] buffer, int offset, int length) {
+			if (length == 0) return 0;
+			while (position == chunk.length()) {
+				if (nextSeq == chunkCount) return -1;
+				chunk = readChunk(db, lyricId, nextSeq++);
+				position = 0;
+			}
+			int n = Math.min(length, chunk.length() - position);
+			chunk.getChars(position, position + n, buffer, offset);
+			position += n;
+			return n;
+		}
+		
+		@Override
+		public void close() {
+			chunk = "";
+			nextSeq = chunkCount;
+			position = 0;
+		}
+	}
+}
\ No newline at end of file
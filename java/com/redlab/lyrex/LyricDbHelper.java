@@ -2,30 +2,195 @@ package com.redlab.lyrex;
 
 import android.content.ContentValues;
 import android.content.Context;
+import android.content.SharedPreferences;
+import android.content.pm.ApplicationInfo;
 import android.database.Cursor;
+import android.database.DatabaseUtils;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
 import android.util.Log;
 
+import java.io.File;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
 import java.util.regex.Pattern;
 
 public class LyricDbHelper extends SQLiteOpenHelper {
 	private static final String TAG = "LyricDbHelper";
 	
 	private static final String DATABASE_NAME = "lyricpad.db";
-	private static final int DATABASE_VERSION = 2;
+	private static final int DATABASE_VERSION = 15;
 	
 	public static final String TABLE_LYRICS = "lyrics";
 	public static final String COLUMN_ID = "_id";
 	public static final String COLUMN_TITLE = "title";
+	// Title folded by titleKey, for case-insensitive lookups that also cover non-ASCII letters
+	public static final String COLUMN_TITLE_KEY = "title_key";
 	public static final String COLUMN_CONTENT = "content";
+	// Body compressed by ContentCodec; content is then empty. NULL for plain rows.
+	public static final String COLUMN_CONTENT_BLOB = "content_blob";
+	// Number of LyricChunks rows holding the body; content is then empty. NULL for inline rows.
+	public static final String COLUMN_CONTENT_CHUNKS = "content_chunks";
 	public static final String COLUMN_TIMESTAMP = "timestamp";
 	public static final String COLUMN_SECTION_TYPE = "section_type";
+	public static final String COLUMN_PREVIEW = "preview";
+	public static final String COLUMN_WORD_COUNT = "word_count";
+	public static final String COLUMN_LINE_COUNT = "line_count";
+	public static final String COLUMN_CONTENT_HASH = "content_hash";
+	// Section markers encoded by SectionMarkers, valid while the key equals content_hash
+	public static final String COLUMN_SECTION_SPANS = "section_spans";
+	public static final String COLUMN_SECTION_SPANS_KEY = "section_spans_key";
+	// When the lyric was moved to the trash; NULL for live rows
+	public static final String COLUMN_DELETED_AT = "deleted_at";
 	
-	public LyricDbHelper(Context context) {
+	// Every query that lists or looks up lyrics for the user filters on this
+	static final String LIVE = COLUMN_DELETED_AT + " IS NULL";
+	
+	// Rows whose body is the content column itself, the only form SQL and the FTS triggers can read
+	static final String INLINE_CONTENT = COLUMN_CONTENT_BLOB + " IS NULL AND " + COLUMN_CONTENT_CHUNKS + " IS NULL";
+	
+	private static final String INDEX_CONTENT_HASH = "idx_lyrics_content_hash";
+	private static final String INDEX_TITLE = "idx_lyrics_title";
+	private static final String INDEX_TITLE_KEY = "idx_lyrics_title_key";
+	private static final String INDEX_TIMESTAMP = "idx_lyrics_timestamp";
+	private static final String INDEX_SECTION_TIMESTAMP = "idx_lyrics_section_timestamp";
+	private static final String INDEX_DELETED_AT = "idx_lyrics_deleted_at";
+	
+	// List screens show this many characters of the first line
+	static final int PREVIEW_LENGTH = 60;
+	
+	// Ids bound per IN (...) query; SQLite allows at most 999 parameters on older versions
+	static final int ID_BATCH_SIZE = 500;
+	
+	// Rows committed per transaction by bulkInsert
+	static final int BULK_INSERT_CHUNK_SIZE = 1000;
+	
+	// Rows whose derived columns are filled in per transaction by the backfill
+	static final int BACKFILL_BATCH_SIZE = 200;
+	
+	// Rows missing a derived column, or whose section spans predate their content
+	static final String BACKFILL_SELECTION = COLUMN_WORD_COUNT + " IS NULL OR " + COLUMN_CONTENT_HASH + " IS NULL OR " +
+	COLUMN_TITLE_KEY + " IS NULL OR " + COLUMN_SECTION_SPANS_KEY + " IS NOT " + COLUMN_CONTENT_HASH;
+	
+	// Summary projection for list screens. Preview and counts are stored at write
+	// time; the fallbacks only apply to rows the upgrade backfill has not reached yet.
+	private static final String[] SUMMARY_COLUMNS = {
+		COLUMN_ID,
+		COLUMN_TITLE,
+		COLUMN_TIMESTAMP,
+		COLUMN_SECTION_TYPE,
+		"COALESCE(" + COLUMN_PREVIEW + ", substr(" + COLUMN_CONTENT + ", 1, " + PREVIEW_LENGTH + "))",
+		"COALESCE(" + COLUMN_WORD_COUNT + ", 0)",
+		"COALESCE(" + COLUMN_LINE_COUNT + ", 0)"
+	};
+	
+	// Latency of the public operations, recorded while QueryStats is enabled
+	private static final QueryStats.Operation OP_INSERT = QueryStats.operation("insertLyric");
+	private static final QueryStats.Operation OP_UPDATE = QueryStats.operation("updateLyric");
+	private static final QueryStats.Operation OP_GET_BY_ID = QueryStats.operation("getLyricById");
+	private static final QueryStats.Operation OP_GET_BY_IDS = QueryStats.operation("getLyricsByIds");
+	private static final QueryStats.Operation OP_GET_ALL = QueryStats.operation("getAllLyrics");
+	private static final QueryStats.Operation OP_GET_BY_SECTION = QueryStats.operation("getLyricsBySection");
+	private static final QueryStats.Operation OP_SUMMARY_PAGE = QueryStats.operation("getLyricSummaryPage");
+	private static final QueryStats.Operation OP_ALL_SUMMARIES = QueryStats.operation("getAllLyricSummaries");
+	private static final QueryStats.Operation OP_SUMMARIES_BY_IDS = QueryStats.operation("getLyricSummariesByIds");
+	private static final QueryStats.Operation OP_SEARCH = QueryStats.operation("searchLyrics");
+	private static final QueryStats.Operation OP_TRASH = QueryStats.operation("deleteLyric");
+	private static final QueryStats.Operation OP_RESTORE = QueryStats.operation("restoreLyric");
+	private static final QueryStats.Operation OP_GET_TRASHED = QueryStats.operation("getTrashedLyrics");
+	private static final QueryStats.Operation OP_PURGE = QueryStats.operation("purgeLyric");
+	private static final QueryStats.Operation OP_ADD_PARSED = QueryStats.operation("addParsedLyrics");
+	private static final QueryStats.Operation OP_INSERT_PARSED = QueryStats.operation("insertParsedLyrics");
+	private static final QueryStats.Operation OP_BULK_INSERT = QueryStats.operation("bulkInsert");
+	
+	private boolean backfillPending = false;
+	// Opt-in from the main menu: large bodies written while this is set are stored compressed
+	private static final String PREFS_NAME = "lyric_storage";
+	private static final String PREF_COMPRESS_CONTENT = "compress_content";
+	private final SharedPreferences prefs;
+	private volatile boolean compressContent;
+	private final ChangeTracker changeTracker = new ChangeTracker();
+	private final LyricCache lyricCache = new LyricCache();
+	private final DatabaseMaintenance maintenance;
+	
+	private final Context context;
+	
+	private static LyricDbHelper instance;
+	
+	/**
+	* Returns the process-wide helper. The underlying connection is opened once and
+	* kept for the lifetime of the process; callers must not close it.
+	*/
+	public static synchronized LyricDbHelper getInstance(Context context) {
+		if (instance == null) {
+			instance = new LyricDbHelper(context.getApplicationContext());
+		}
+		return instance;
+	}
+	
+	private LyricDbHelper(Context context) {
 		super(context, DATABASE_NAME, null, DATABASE_VERSION);
+		this.context = context;
+		this.maintenance = new DatabaseMaintenance(context, this, DATABASE_NAME);
+		this.prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+		this.compressContent = prefs.getBoolean(PREF_COMPRESS_CONTENT, false);
+		// Debug builds time every data-layer call for QueryStatsActivity
+		if ((context.getApplicationInfo().flags & ApplicationInfo.FLAG_DEBUGGABLE) != 0) {
+			QueryStats.setEnabled(true);
+		}
+		// WAL lets readers keep a consistent snapshot from the read connection pool
+		// while a restore is writing, instead of blocking until it commits.
+		setWriteAheadLoggingEnabled(true);
+	}
+	
+	/**
+	* Generations and changed row ids for the lyrics and setlist tables; every
+	* write made through the helpers is recorded here once it has committed.
+	*/
+	public ChangeTracker getChangeTracker() {
+		return changeTracker;
+	}
+	
+	/**
+	* Cache in front of getLyricById and getLyricsByIds, with hit and miss counts.
+	*/
+	public LyricCache getLyricCache() {
+		return lyricCache;
+	}
+	
+	/**
+	* Stores bodies of ContentCodec.COMPRESSION_THRESHOLD_CHARS or more compressed
+	* from now on, and remembers the choice. Existing rows keep their format until
+	* they are next saved, and either format reads back the same.
+	*/
+	public void setContentCompressionEnabled(boolean enabled) {
+		compressContent = enabled;
+		prefs.edit().putBoolean(PREF_COMPRESS_CONTENT, enabled).apply();
+	}
+	
+	public boolean isContentCompressionEnabled() {
+		return compressContent;
+	}
+	
+	/**
+	* Trash purging and incremental vacuum, run in the background by LyricRepository.
+	*/
+	public DatabaseMaintenance getMaintenance() {
+		return maintenance;
 	}
 	
 	public static class RestoreResult {
@@ -44,15 +209,68 @@ public class LyricDbHelper extends SQLiteOpenHelper {
 		}
 	}
 	
+	/**
+	* Progress callback for bulkInsert, called on the inserting thread after each
+	* committed chunk.
+	*/
+	public interface BulkInsertListener {
+		void onProgress(int insertedSoFar);
+	}
+	
+	/**
+	* Thrown by bulkInsert when a chunk fails. Earlier chunks stay committed;
+	* getInsertedCount says how many rows they hold.
+	*/
+	public static class BulkInsertException extends RuntimeException {
+		private final int insertedCount;
+		
+		BulkInsertException(int insertedCount, RuntimeException cause) {
+			super(cause.getMessage(), cause);
+			this.insertedCount = insertedCount;
+		}
+		
+		public int getInsertedCount() {
+			return insertedCount;
+		}
+	}
+	
+	@Override
+	public void onConfigure(SQLiteDatabase db) {
+		super.onConfigure(db);
+		// Setlist items reference lyrics and are removed with them
+		db.setForeignKeyConstraintsEnabled(true);
+		// Takes effect for a new database; DatabaseMaintenance converts existing ones
+		db.execSQL("PRAGMA auto_vacuum = INCREMENTAL");
+	}
+	
 	@Override
 	public void onCreate(SQLiteDatabase db) {
 		String TABLE_CREATE = "CREATE TABLE " + TABLE_LYRICS + " (" +
 		COLUMN_ID + " INTEGER PRIMARY KEY AUTOINCREMENT, " +
 		COLUMN_TITLE + " TEXT NOT NULL, " +
+		COLUMN_TITLE_KEY + " TEXT, " +
 		COLUMN_CONTENT + " TEXT NOT NULL, " +
+		COLUMN_CONTENT_BLOB + " BLOB, " +
+		COLUMN_CONTENT_CHUNKS + " INTEGER, " +
 		COLUMN_TIMESTAMP + " INTEGER, " +
-		COLUMN_SECTION_TYPE + " TEXT DEFAULT 'verse');";
+		COLUMN_SECTION_TYPE + " TEXT DEFAULT 'verse', " +
+		COLUMN_PREVIEW + " TEXT, " +
+		COLUMN_WORD_COUNT + " INTEGER, " +
+		COLUMN_LINE_COUNT + " INTEGER, " +
+		COLUMN_CONTENT_HASH + " TEXT, " +
+		COLUMN_SECTION_SPANS + " BLOB, " +
+		COLUMN_SECTION_SPANS_KEY + " TEXT, " +
+		COLUMN_DELETED_AT + " INTEGER);";
 		db.execSQL(TABLE_CREATE);
+		createContentHashIndex(db);
+		LyricSearchIndex.create(db);
+		SetlistDbHelper.createTables(db);
+		createQueryIndexes(db);
+		createTitleKeyIndex(db);
+		LyricRevisions.create(db);
+		createTrashIndex(db);
+		SetlistDbHelper.createTrashIndex(db);
+		LyricChunks.create(db);
 	}
 	
 	@Override
@@ -61,128 +279,875 @@ public class LyricDbHelper extends SQLiteOpenHelper {
 			db.execSQL("ALTER TABLE " + TABLE_LYRICS +
 			" ADD COLUMN " + COLUMN_SECTION_TYPE + " TEXT DEFAULT 'verse'");
 		}
+		if (oldVersion < 3) {
+			// Triggers come with the version 11 step, once the columns they test exist
+			LyricSearchIndex.createTable(db);
+			LyricSearchIndex.rebuild(db);
+		}
+		if (oldVersion < 4) {
+			db.execSQL("ALTER TABLE " + TABLE_LYRICS + " ADD COLUMN " + COLUMN_PREVIEW + " TEXT");
+			db.execSQL("ALTER TABLE " + TABLE_LYRICS + " ADD COLUMN " + COLUMN_WORD_COUNT + " INTEGER");
+			db.execSQL("ALTER TABLE " + TABLE_LYRICS + " ADD COLUMN " + COLUMN_LINE_COUNT + " INTEGER");
+			backfillPending = true;
+		}
+		if (oldVersion < 5) {
+			db.execSQL("ALTER TABLE " + TABLE_LYRICS + " ADD COLUMN " + COLUMN_CONTENT_HASH + " TEXT");
+			createContentHashIndex(db);
+			backfillPending = true;
+		}
+		if (oldVersion < 6) {
+			// onOpen brings over the setlists of the old setlists.db
+			SetlistDbHelper.createTables(db);
+		}
+		if (oldVersion < 7) {
+			createQueryIndexes(db);
+		}
+		if (oldVersion < 8) {
+			LyricRevisions.create(db);
+		}
+		if (oldVersion < 9) {
+			db.execSQL("ALTER TABLE " + TABLE_LYRICS + " ADD COLUMN " + COLUMN_DELETED_AT + " INTEGER");
+			createTrashIndex(db);
+			// Setlist tables created by the version 6 upgrade above already have it
+			if (oldVersion >= 6) {
+				SetlistDbHelper.addTrashColumn(db);
+			}
+			SetlistDbHelper.createTrashIndex(db);
+		}
+		if (oldVersion < 10) {
+			db.execSQL("ALTER TABLE " + TABLE_LYRICS + " ADD COLUMN " + COLUMN_CONTENT_BLOB + " BLOB");
+		}
+		if (oldVersion < 11) {
+			db.execSQL("ALTER TABLE " + TABLE_LYRICS + " ADD COLUMN " + COLUMN_CONTENT_CHUNKS + " INTEGER");
+			LyricChunks.create(db);
+			LyricSearchIndex.recreateTriggers(db);
+			chunkOversizedRows(db);
+		}
+		if (oldVersion < 12) {
+			db.execSQL("ALTER TABLE " + TABLE_LYRICS + " ADD COLUMN " + COLUMN_SECTION_SPANS + " BLOB");
+			db.execSQL("ALTER TABLE " + TABLE_LYRICS + " ADD COLUMN " + COLUMN_SECTION_SPANS_KEY + " TEXT");
+			backfillPending = true;
+		}
+		if (oldVersion < 13) {
+			// Section grammar grew; spans of SectionMarkers.VERSION 1 are rebuilt by the backfill
+			db.execSQL("UPDATE " + TABLE_LYRICS + " SET " + COLUMN_SECTION_SPANS_KEY + " = NULL");
+			backfillPending = true;
+		}
+		if (oldVersion < 14) {
+			// Only header lines are marked now; spans of SectionMarkers.VERSION 2 are rebuilt
+			db.execSQL("UPDATE " + TABLE_LYRICS + " SET " + COLUMN_SECTION_SPANS_KEY + " = NULL");
+			backfillPending = true;
+		}
+		if (oldVersion < 15) {
+			// Filled in by the backfill, which folds case in Java
+			db.execSQL("ALTER TABLE " + TABLE_LYRICS + " ADD COLUMN " + COLUMN_TITLE_KEY + " TEXT");
+			createTitleKeyIndex(db);
+			backfillPending = true;
+		}
 	}
 	
-	public long insertLyric(Lyric lyric) {
-		SQLiteDatabase db = this.getWritableDatabase();
+	// Bodies saved before chunking existed may already be too large for a cursor;
+	// they are split in SQL and their rows emptied
+	private static void chunkOversizedRows(SQLiteDatabase db) {
+		List<Long> ids = new ArrayList<>();
+		Cursor cursor = db.query(TABLE_LYRICS, new String[]{COLUMN_ID},
+		"length(" + COLUMN_CONTENT + ") >= " + LyricChunks.CHUNK_THRESHOLD_CHARS,
+		null, null, null, null);
+		try {
+			while (cursor.moveToNext()) {
+				ids.add(cursor.getLong(0));
+			}
+			} finally {
+			cursor.close();
+		}
+		
+		for (long id : ids) {
+			String[] idArgs = {String.valueOf(id)};
+			int chunks = LyricChunks.copyFromContent(db, id);
+			String title = DatabaseUtils.stringForQuery(db,
+			"SELECT " + COLUMN_TITLE + " FROM " + TABLE_LYRICS + " WHERE " + COLUMN_ID + " = ?", idArgs);
+			ContentValues values = new ContentValues();
+			values.put(COLUMN_CONTENT, "");
+			values.put(COLUMN_CONTENT_CHUNKS, chunks);
+			// The update trigger unindexes the old text; the chunked body is indexed from here
+			db.update(TABLE_LYRICS, values, COLUMN_ID + " = ?", idArgs);
+			LyricSearchIndex.indexRow(db, id, title, LyricChunks.read(db, id, chunks));
+		}
+	}
+	
+	// Indexes matching the sort and filter order of the list, section and setlist
+	// queries, so none of them needs a table scan or a temporary sort
+	private static void createQueryIndexes(SQLiteDatabase db) {
+		db.execSQL("CREATE INDEX IF NOT EXISTS " + INDEX_TITLE + " ON " + TABLE_LYRICS +
+		"(" + COLUMN_TITLE + " COLLATE NOCASE, " + COLUMN_ID + ")");
+		db.execSQL("CREATE INDEX IF NOT EXISTS " + INDEX_TIMESTAMP + " ON " + TABLE_LYRICS +
+		"(" + COLUMN_TIMESTAMP + ", " + COLUMN_ID + ")");
+		db.execSQL("CREATE INDEX IF NOT EXISTS " + INDEX_SECTION_TIMESTAMP + " ON " + TABLE_LYRICS +
+		"(" + COLUMN_SECTION_TYPE + ", " + COLUMN_TIMESTAMP + ", " + COLUMN_ID + ")");
+		SetlistDbHelper.createIndexes(db);
+	}
+	
+	// Serves createSetlistFromTitles; the id breaks ties between songs sharing a title
+	private static void createTitleKeyIndex(SQLiteDatabase db) {
+		db.execSQL("CREATE INDEX IF NOT EXISTS " + INDEX_TITLE_KEY + " ON " + TABLE_LYRICS +
+		"(" + COLUMN_TITLE_KEY + ", " + COLUMN_ID + ")");
+	}
+	
+	// Partial, so it only holds trashed rows and the planner never picks it for live queries
+	private static void createTrashIndex(SQLiteDatabase db) {
+		db.execSQL("CREATE INDEX IF NOT EXISTS " + INDEX_DELETED_AT + " ON " + TABLE_LYRICS +
+		"(" + COLUMN_DELETED_AT + ") WHERE " + COLUMN_DELETED_AT + " IS NOT NULL");
+	}
+	
+	/**
+	* Setlists used to live in their own file; bring them over into this database.
+	* The import commits whole or not at all, and the file is only deleted once it
+	* has, so a failed import is tried again on the next open.
+	*/
+	private void importLegacySetlists(SQLiteDatabase db) {
+		File legacyFile = context.getDatabasePath(SetlistDbHelper.LEGACY_DATABASE_NAME);
+		if (!legacyFile.exists()) return;
+		
+		boolean imported;
+		db.beginTransaction();
+		try {
+			imported = SetlistDbHelper.importLegacyDatabase(db, legacyFile);
+			if (imported) {
+				db.setTransactionSuccessful();
+			}
+			} finally {
+			db.endTransaction();
+		}
+		if (imported) {
+			context.deleteDatabase(SetlistDbHelper.LEGACY_DATABASE_NAME);
+			changeTracker.recordAll(SetlistDbHelper.TABLE_SETLISTS);
+		}
+	}
+	
+	// Not UNIQUE: libraries may already hold identical songs saved by hand, and
+	// only restores are meant to skip duplicates.
+	private static void createContentHashIndex(SQLiteDatabase db) {
+		db.execSQL("CREATE INDEX IF NOT EXISTS " + INDEX_CONTENT_HASH +
+		" ON " + TABLE_LYRICS + "(" + COLUMN_CONTENT_HASH + ")");
+	}
+	
+	@Override
+	public void onOpen(SQLiteDatabase db) {
+		super.onOpen(db);
+		if ((context.getApplicationInfo().flags & ApplicationInfo.FLAG_DEBUGGABLE) != 0) {
+			new Thread(() -> QueryPlanCheck.run(db), "query-plan-check").start();
+		}
+		if (!db.isReadOnly()) {
+			importLegacySetlists(db);
+		}
+		if (backfillPending) {
+			backfillPending = false;
+			new Thread(this::backfillDerivedColumns, "lyric-backfill").start();
+		}
+	}
+	
+	/**
+	* Fills title key, preview, counts, content hash and section spans for rows written before they were
+	* stored, a small batch per transaction so list reads are never held up for long.
+	*/
+	public void backfillDerivedColumns() {
+		SQLiteDatabase db = getWritableDatabase();
+		// Reported once at the end, so list screens reload once rather than per batch
+		List<Integer> backfilledIds = new ArrayList<>();
+		try {
+			backfillBatches(db, backfilledIds);
+			} finally {
+			// Previews and counts changed, so list rows showing them need a refresh
+			changeTracker.recordRows(TABLE_LYRICS, backfilledIds);
+		}
+	}
+	
+	// Adds the ids of each committed batch to backfilledIds
+	private void backfillBatches(SQLiteDatabase db, List<Integer> backfilledIds) {
+		while (true) {
+			Cursor cursor = db.query(
+			TABLE_LYRICS,
+			storedContentColumns(COLUMN_TITLE),
+			BACKFILL_SELECTION,
+			null, null, null, null,
+			String.valueOf(BACKFILL_BATCH_SIZE));
+			
+			List<Integer> updatedIds = new ArrayList<>();
+			db.beginTransaction();
+			try {
+				while (cursor.moveToNext()) {
+					ContentValues values = new ContentValues();
+					putDerivedColumns(values, cursor.getString(4), readStoredContent(db, cursor));
+					db.update(TABLE_LYRICS, values, COLUMN_ID + " = ?",
+					new String[]{String.valueOf(cursor.getInt(0))});
+					updatedIds.add(cursor.getInt(0));
+				}
+				db.setTransactionSuccessful();
+				} catch (Exception e) {
+				Log.e(TAG, "Backfill of derived columns failed", e);
+				return;
+				} finally {
+				db.endTransaction();
+				cursor.close();
+			}
+			backfilledIds.addAll(updatedIds);
+			if (updatedIds.size() < BACKFILL_BATCH_SIZE) break;
+		}
+	}
+	
+	/**
+	* Column values for a lyric row, including the preview and counts that list
+	* screens bind directly.
+	*/
+	private ContentValues toContentValues(Lyric lyric) {
 		ContentValues values = new ContentValues();
 		values.put(COLUMN_TITLE, lyric.getTitle());
-		values.put(COLUMN_CONTENT, lyric.getContent());
+		String content = lyric.getContent();
+		byte[] compressed = null;
+		if (LyricChunks.needsChunks(content)) {
+			values.put(COLUMN_CONTENT, "");
+			values.put(COLUMN_CONTENT_CHUNKS, LyricChunks.chunkCount(content));
+			} else {
+			compressed = compressContent ? ContentCodec.encode(content) : null;
+			values.put(COLUMN_CONTENT, (compressed != null) ? "" : content);
+			values.putNull(COLUMN_CONTENT_CHUNKS);
+		}
+		if (compressed != null) {
+			values.put(COLUMN_CONTENT_BLOB, compressed);
+			} else {
+			values.putNull(COLUMN_CONTENT_BLOB);
+		}
 		values.put(COLUMN_TIMESTAMP, System.currentTimeMillis());
 		values.put(COLUMN_SECTION_TYPE, lyric.getSectionType());
+		putDerivedColumns(values, lyric.getTitle(), lyric.getContent());
+		return values;
+	}
+	
+	private static void putDerivedColumns(ContentValues values, String title, String content) {
+		String hash = contentHash(title, content);
+		values.put(COLUMN_TITLE_KEY, titleKey(title));
+		values.put(COLUMN_PREVIEW, buildPreview(content));
+		values.put(COLUMN_WORD_COUNT, countWords(content));
+		values.put(COLUMN_LINE_COUNT, countLines(content));
+		values.put(COLUMN_CONTENT_HASH, hash);
+		// Scanned once here, so showing the lyric never has to
+		values.put(COLUMN_SECTION_SPANS, SectionMarkers.encode(LyricSection.findHeaders(content)));
+		values.put(COLUMN_SECTION_SPANS_KEY, hash);
+	}
+	
+	/**
+	* Title as compared by lookups: trimmed and lower-cased in Java, which unlike
+	* SQLite's NOCASE folds letters such as "É" too.
+	*/
+	static String titleKey(String title) {
+		return (title != null) ? title.trim().toLowerCase(Locale.ROOT) : "";
+	}
+	
+	/**
+	* Stable hash identifying a song for duplicate detection. Titles compare
+	* case-insensitively and content ignores line-ending style and outer whitespace.
+	*/
+	static String contentHash(String title, String content) {
+		String normalisedTitle = titleKey(title);
+		String normalisedContent = (content != null) ? content.replace("\r\n", "\n").trim() : "";
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-1");
+			digest.update(normalisedTitle.getBytes(StandardCharsets.UTF_8));
+			digest.update((byte) 0);
+			byte[] hash = digest.digest(normalisedContent.getBytes(StandardCharsets.UTF_8));
+			
+			StringBuilder hex = new StringBuilder(hash.length * 2);
+			for (byte b : hash) {
+				hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+			}
+			return hex.toString();
+			} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException("SHA-1 not available", e);
+		}
+	}
+	
+	public long insertLyric(Lyric lyric) {
+		long started = QueryStats.start();
+		SQLiteDatabase db = this.getWritableDatabase();
+		ContentValues values = toContentValues(lyric);
 		
-		long id = db.insert(TABLE_LYRICS, null, values);
-		db.close();
+		long id;
+		db.beginTransaction();
+		try {
+			id = db.insert(TABLE_LYRICS, null, values);
+			if (id != -1) {
+				storeOutOfLine(db, id, lyric, values);
+			}
+			db.setTransactionSuccessful();
+			} finally {
+			db.endTransaction();
+		}
+		if (id != -1) {
+			cache((int) id, values);
+			changeTracker.recordRow(TABLE_LYRICS, id);
+		}
+		OP_INSERT.end(started, (id != -1) ? 1 : 0);
 		return id;
 	}
 	
+	// Chunks and index entries for a body the row and the FTS triggers cannot hold
+	private static void storeOutOfLine(SQLiteDatabase db, long id, Lyric lyric, ContentValues values) {
+		boolean chunked = values.getAsInteger(COLUMN_CONTENT_CHUNKS) != null;
+		if (chunked) {
+			LyricChunks.write(db, id, lyric.getContent());
+		}
+		if (chunked || values.getAsByteArray(COLUMN_CONTENT_BLOB) != null) {
+			LyricSearchIndex.indexRow(db, id, lyric.getTitle(), lyric.getContent());
+		}
+	}
+	
+	// Chunked bodies would take most of the cache budget, so those rows are only dropped from it
+	private void cache(int id, ContentValues values) {
+		if (values.getAsInteger(COLUMN_CONTENT_CHUNKS) != null) {
+			lyricCache.remove(id);
+			} else {
+			lyricCache.put(cachedCopy(id, values));
+		}
+	}
+	
+	// The row as stored, which carries the write time rather than the caller's timestamp
+	private static Lyric cachedCopy(int id, ContentValues values) {
+		String title = values.getAsString(COLUMN_TITLE);
+		long timestamp = values.getAsLong(COLUMN_TIMESTAMP);
+		String sectionType = values.getAsString(COLUMN_SECTION_TYPE);
+		byte[] compressed = values.getAsByteArray(COLUMN_CONTENT_BLOB);
+		Lyric copy;
+		if (compressed != null) {
+			copy = Lyric.withCompressedContent(id, title, compressed, timestamp, sectionType);
+			} else {
+			copy = new Lyric(id, title, values.getAsString(COLUMN_CONTENT), timestamp, sectionType);
+		}
+		copy.setStoredSectionSpans(values.getAsByteArray(COLUMN_SECTION_SPANS));
+		return copy;
+	}
+	
+	// Full row from a SELECT *; a compressed body is decoded only when first read,
+	// a chunked one is read in a query per chunk
+	private static Lyric lyricFromCursor(SQLiteDatabase db, Cursor cursor) {
+		int id = cursor.getInt(cursor.getColumnIndexOrThrow(COLUMN_ID));
+		String title = cursor.getString(cursor.getColumnIndexOrThrow(COLUMN_TITLE));
+		long timestamp = cursor.getLong(cursor.getColumnIndexOrThrow(COLUMN_TIMESTAMP));
+		String sectionType = cursor.getString(cursor.getColumnIndexOrThrow(COLUMN_SECTION_TYPE));
+		int blobIndex = cursor.getColumnIndexOrThrow(COLUMN_CONTENT_BLOB);
+		int chunksIndex = cursor.getColumnIndexOrThrow(COLUMN_CONTENT_CHUNKS);
+		Lyric lyric;
+		if (!cursor.isNull(blobIndex)) {
+			lyric = Lyric.withCompressedContent(id, title, cursor.getBlob(blobIndex), timestamp, sectionType);
+			} else {
+			String content = cursor.isNull(chunksIndex)
+			? cursor.getString(cursor.getColumnIndexOrThrow(COLUMN_CONTENT))
+			: LyricChunks.read(db, id, cursor.getInt(chunksIndex));
+			lyric = new Lyric(id, title, content, timestamp, sectionType);
+		}
+		
+		// Spans stored for other content, or before they existed, are rescanned on use
+		String hash = cursor.getString(cursor.getColumnIndexOrThrow(COLUMN_CONTENT_HASH));
+		if (hash != null && hash.equals(cursor.getString(cursor.getColumnIndexOrThrow(COLUMN_SECTION_SPANS_KEY)))) {
+			lyric.setStoredSectionSpans(cursor.getBlob(cursor.getColumnIndexOrThrow(COLUMN_SECTION_SPANS)));
+		}
+		return lyric;
+	}
+	
+	/**
+	* Projection for readStoredContent: id, content, blob and chunk count, then
+	* the given columns from index 4 on.
+	*/
+	static String[] storedContentColumns(String... more) {
+		String[] columns = new String[4 + more.length];
+		columns[0] = COLUMN_ID;
+		columns[1] = COLUMN_CONTENT;
+		columns[2] = COLUMN_CONTENT_BLOB;
+		columns[3] = COLUMN_CONTENT_CHUNKS;
+		System.arraycopy(more, 0, columns, 4, more.length);
+		return columns;
+	}
+	
+	// Plain text of the current row, whichever form it is stored in
+	static String readStoredContent(SQLiteDatabase db, Cursor cursor) {
+		if (!cursor.isNull(2)) {
+			return ContentCodec.decode(cursor.getBlob(2));
+		}
+		if (!cursor.isNull(3)) {
+			return LyricChunks.read(db, cursor.getLong(0), cursor.getInt(3));
+		}
+		return cursor.getString(1);
+	}
+	
+	/**
+	* Streams a lyric's body without holding it whole where it is stored in
+	* chunks. Consume it on the calling thread.
+	* @return null if there is no such live lyric
+	*/
+	public Reader openContentReader(int id) {
+		SQLiteDatabase db = getReadableDatabase();
+		Cursor cursor = db.query(TABLE_LYRICS, storedContentColumns(),
+		COLUMN_ID + " = ? AND " + LIVE, new String[]{String.valueOf(id)}, null, null, null);
+		try {
+			if (!cursor.moveToFirst()) return null;
+			if (!cursor.isNull(3)) {
+				return LyricChunks.openReader(db, id, cursor.getInt(3));
+			}
+			return new StringReader(readStoredContent(db, cursor));
+			} finally {
+			cursor.close();
+		}
+	}
+	
 	public Lyric getLyricById(int id) {
+		long started = QueryStats.start();
+		List<Lyric> lyrics = loadLyricsByIds(Collections.singletonList(id));
+		OP_GET_BY_ID.end(started, lyrics.size());
+		return lyrics.isEmpty() ? null : lyrics.get(0);
+	}
+	
+	/**
+	* Loads several lyrics in the order the ids were given, from the cache where
+	* possible and otherwise in one query per batch of ids. Missing ids are skipped.
+	*/
+	public List<Lyric> getLyricsByIds(List<Integer> ids) {
+		long started = QueryStats.start();
+		List<Lyric> lyrics = loadLyricsByIds(ids);
+		OP_GET_BY_IDS.end(started, lyrics.size());
+		return lyrics;
+	}
+	
+	private List<Lyric> loadLyricsByIds(List<Integer> ids) {
+		Map<Integer, Lyric> byId = new HashMap<>();
+		List<Integer> misses = lyricCache.getAll(ids, byId);
+		if (!misses.isEmpty()) {
+			long stamp = lyricCache.getWriteStamp();
+			Map<Integer, Lyric> loaded = queryLyricsByIds(misses);
+			lyricCache.putIfUnchanged(stamp, loaded.values());
+			byId.putAll(loaded);
+		}
+		
+		List<Lyric> lyrics = new ArrayList<>(ids.size());
+		for (Integer id : ids) {
+			Lyric lyric = byId.get(id);
+			if (lyric != null) {
+				lyrics.add(lyric);
+			}
+		}
+		return lyrics;
+	}
+	
+	private Map<Integer, Lyric> queryLyricsByIds(List<Integer> ids) {
+		Map<Integer, Lyric> byId = new HashMap<>();
 		SQLiteDatabase db = this.getReadableDatabase();
-		Cursor cursor = db.query(
-		TABLE_LYRICS,
-		null,
-		COLUMN_ID + " = ?",
-		new String[]{String.valueOf(id)},
-		null, null, null);
 		
-		Lyric lyric = null;
-		if (cursor != null) {
-			if (cursor.moveToFirst()) {
-				lyric = new Lyric(
-				cursor.getString(cursor.getColumnIndexOrThrow(COLUMN_TITLE)),
-				cursor.getString(cursor.getColumnIndexOrThrow(COLUMN_CONTENT))
-				);
-				lyric.setId(cursor.getInt(cursor.getColumnIndexOrThrow(COLUMN_ID)));
-				lyric.setTimestamp(cursor.getLong(cursor.getColumnIndexOrThrow(COLUMN_TIMESTAMP)));
-				lyric.setSectionType(cursor.getString(cursor.getColumnIndexOrThrow(COLUMN_SECTION_TYPE)));
+		for (int start = 0; start < ids.size(); start += ID_BATCH_SIZE) {
+			List<Integer> batch = ids.subList(start, Math.min(ids.size(), start + ID_BATCH_SIZE));
+			StringBuilder placeholders = new StringBuilder();
+			String[] args = new String[batch.size()];
+			for (int i = 0; i < batch.size(); i++) {
+				placeholders.append(i == 0 ? "?" : ", ?");
+				args[i] = String.valueOf(batch.get(i));
+			}
+			
+			Cursor cursor = db.query(
+			TABLE_LYRICS,
+			null,
+			COLUMN_ID + " IN (" + placeholders + ") AND " + LIVE,
+			args,
+			null, null, null);
+			
+			if (cursor != null) {
+				while (cursor.moveToNext()) {
+					Lyric lyric = lyricFromCursor(db, cursor);
+					byId.put(lyric.getId(), lyric);
+				}
+				cursor.close();
 			}
-			cursor.close();
 		}
-		db.close();
-		return lyric;
+		return byId;
 	}
 	
 	public List<Lyric> getAllLyrics(String sortOrder) {
+		long started = QueryStats.start();
 		List<Lyric> lyrics = new ArrayList<>();
 		SQLiteDatabase db = this.getReadableDatabase();
 		
 		Cursor cursor = db.query(
 		TABLE_LYRICS,
-		null, null, null, null, null,
-		sortOrder.equals("title") ?
-		COLUMN_TITLE + " COLLATE NOCASE ASC" :
-		COLUMN_TIMESTAMP + " DESC");
+		null, LIVE, null, null, null,
+		summaryOrderBy(sortOrder));
 		
 		if (cursor != null) {
 			while (cursor.moveToNext()) {
-				Lyric lyric = new Lyric(
-				cursor.getString(cursor.getColumnIndexOrThrow(COLUMN_TITLE)),
-				cursor.getString(cursor.getColumnIndexOrThrow(COLUMN_CONTENT))
-				);
-				lyric.setId(cursor.getInt(cursor.getColumnIndexOrThrow(COLUMN_ID)));
-				lyric.setTimestamp(cursor.getLong(cursor.getColumnIndexOrThrow(COLUMN_TIMESTAMP)));
-				lyric.setSectionType(cursor.getString(cursor.getColumnIndexOrThrow(COLUMN_SECTION_TYPE)));
-				lyrics.add(lyric);
+				lyrics.add(lyricFromCursor(db, cursor));
 			}
 			cursor.close();
 		}
-		db.close();
+		OP_GET_ALL.end(started, lyrics.size());
 		return lyrics;
 	}
 	
+	/**
+	* Keyset-paged listing of summaries: returns up to {@code limit} rows ordered like
+	* getAllLyrics(sortOrder), starting strictly after {@code after} (or from the top
+	* when it is null). Ties on the sort key are broken by id so pages never overlap
+	* or skip rows.
+	*/
+	public List<LyricSummary> getLyricSummaryPage(String sortOrder, LyricSummary after, int limit) {
+		long started = QueryStats.start();
+		boolean byTitle = sortOrder.equals("title");
+		
+		String selection = null;
+		String[] selectionArgs = null;
+		if (after != null) {
+			String afterId = String.valueOf(after.getId());
+			if (byTitle) {
+				selection = keysetSelection(true);
+				selectionArgs = new String[]{after.getTitle(), after.getTitle(), afterId};
+				} else {
+				String afterTimestamp = String.valueOf(after.getTimestamp());
+				selection = keysetSelection(false);
+				selectionArgs = new String[]{afterTimestamp, afterTimestamp, afterId};
+			}
+		}
+		
+		List<LyricSummary> page =
+		querySummaries(selection, selectionArgs, summaryOrderBy(sortOrder), String.valueOf(limit));
+		OP_SUMMARY_PAGE.end(started, page.size());
+		return page;
+	}
+	
+	// The leading bound lets SQLite seek into the sort index instead of filtering
+	// every row before the page
+	static String keysetSelection(boolean byTitle) {
+		return byTitle ?
+		COLUMN_TITLE + " >= ? COLLATE NOCASE AND (" +
+		COLUMN_TITLE + " > ? COLLATE NOCASE OR " + COLUMN_ID + " > ?)" :
+		COLUMN_TIMESTAMP + " <= ? AND (" +
+		COLUMN_TIMESTAMP + " < ? OR " + COLUMN_ID + " < ?)";
+	}
+	
+	/**
+	* Every lyric as a summary, for pickers that need the whole list but not the bodies.
+	*/
+	public List<LyricSummary> getAllLyricSummaries(String sortOrder) {
+		long started = QueryStats.start();
+		List<LyricSummary> summaries = querySummaries(null, null, summaryOrderBy(sortOrder), null);
+		OP_ALL_SUMMARIES.end(started, summaries.size());
+		return summaries;
+	}
+	
+	/**
+	* Summaries for specific rows, in no particular order; missing ids are skipped.
+	*/
+	public List<LyricSummary> getLyricSummariesByIds(Collection<Integer> ids) {
+		long started = QueryStats.start();
+		List<Integer> idList = new ArrayList<>(ids);
+		List<LyricSummary> summaries = new ArrayList<>(idList.size());
+		for (int start = 0; start < idList.size(); start += ID_BATCH_SIZE) {
+			List<Integer> batch = idList.subList(start, Math.min(idList.size(), start + ID_BATCH_SIZE));
+			StringBuilder placeholders = new StringBuilder();
+			String[] args = new String[batch.size()];
+			for (int i = 0; i < batch.size(); i++) {
+				placeholders.append(i == 0 ? "?" : ", ?");
+				args[i] = String.valueOf(batch.get(i));
+			}
+			summaries.addAll(querySummaries(COLUMN_ID + " IN (" + placeholders + ")", args, null, null));
+		}
+		OP_SUMMARIES_BY_IDS.end(started, summaries.size());
+		return summaries;
+	}
+	
+	public int countLyrics() {
+		return (int) DatabaseUtils.queryNumEntries(getReadableDatabase(), TABLE_LYRICS, LIVE);
+	}
+	
+	public boolean hasAnyLyrics() {
+		Cursor cursor = getReadableDatabase().query(
+		TABLE_LYRICS, new String[]{COLUMN_ID}, LIVE, null, null, null, null, "1");
+		try {
+			return cursor.moveToFirst();
+			} finally {
+			cursor.close();
+		}
+	}
+	
+	static String summaryOrderBy(String sortOrder) {
+		return sortOrder.equals("title") ?
+		COLUMN_TITLE + " COLLATE NOCASE ASC, " + COLUMN_ID + " ASC" :
+		COLUMN_TIMESTAMP + " DESC, " + COLUMN_ID + " DESC";
+	}
+	
+	// Live rows only; see queryTrashedSummaries for the trash
+	private List<LyricSummary> querySummaries(String selection, String[] selectionArgs, String orderBy, String limit) {
+		String live = (selection != null) ? LIVE + " AND (" + selection + ")" : LIVE;
+		return querySummaries(getReadableDatabase(), live, selectionArgs, orderBy, limit);
+	}
+	
+	private static List<LyricSummary> querySummaries(SQLiteDatabase db, String selection, String[] selectionArgs,
+	String orderBy, String limit) {
+		List<LyricSummary> summaries = new ArrayList<>();
+		Cursor cursor = db.query(
+		TABLE_LYRICS, SUMMARY_COLUMNS, selection, selectionArgs, null, null, orderBy, limit);
+		
+		if (cursor != null) {
+			while (cursor.moveToNext()) {
+				summaries.add(new LyricSummary(
+				cursor.getInt(0),
+				cursor.getString(1),
+				cursor.getString(4),
+				cursor.getLong(2),
+				cursor.getString(3),
+				cursor.getInt(5),
+				cursor.getInt(6)));
+			}
+			cursor.close();
+		}
+		return summaries;
+	}
+	
+	/**
+	* First non-empty line of the content, cut to PREVIEW_LENGTH characters.
+	*/
+	static String buildPreview(String content) {
+		if (content == null || content.isEmpty()) {
+			return "";
+		}
+		int lineEnd = content.indexOf('\n');
+		String firstLine = (lineEnd >= 0 ? content.substring(0, lineEnd) : content).trim();
+		String preview = !firstLine.isEmpty() ? firstLine : content;
+		return preview.length() > PREVIEW_LENGTH ? preview.substring(0, PREVIEW_LENGTH) + "..." : preview;
+	}
+	
+	/**
+	* Number of whitespace-separated words, in one pass without regex.
+	*/
+	static int countWords(String content) {
+		if (content == null) return 0;
+		int words = 0;
+		boolean inWord = false;
+		for (int i = 0; i < content.length(); i++) {
+			if (Character.isWhitespace(content.charAt(i))) {
+				inWord = false;
+				} else if (!inWord) {
+				inWord = true;
+				words++;
+			}
+		}
+		return words;
+	}
+	
+	/**
+	* Number of lines, ignoring trailing line breaks.
+	*/
+	static int countLines(String content) {
+		if (content == null) return 0;
+		int end = content.length();
+		while (end > 0 && content.charAt(end - 1) == '\n') {
+			end--;
+		}
+		if (end == 0) return 0;
+		int lines = 1;
+		for (int i = 0; i < end; i++) {
+			if (content.charAt(i) == '\n') lines++;
+		}
+		return lines;
+	}
+	
+	public List<Integer> getAllLyricIds() {
+		List<Integer> ids = new ArrayList<>();
+		Cursor cursor = getReadableDatabase().query(
+		TABLE_LYRICS, new String[]{COLUMN_ID}, LIVE, null, null, null, null);
+		
+		if (cursor != null) {
+			while (cursor.moveToNext()) {
+				ids.add(cursor.getInt(0));
+			}
+			cursor.close();
+		}
+		return ids;
+	}
+	
+	// A content change is also appended to the lyric's revision history
 	public int updateLyric(Lyric lyric) {
+		long started = QueryStats.start();
 		SQLiteDatabase db = this.getWritableDatabase();
-		ContentValues values = new ContentValues();
-		values.put(COLUMN_TITLE, lyric.getTitle());
-		values.put(COLUMN_CONTENT, lyric.getContent());
-		values.put(COLUMN_TIMESTAMP, System.currentTimeMillis());
-		values.put(COLUMN_SECTION_TYPE, lyric.getSectionType());
+		ContentValues values = toContentValues(lyric);
+		String[] idArgs = {String.valueOf(lyric.getId())};
 		
-		int rowsAffected = db.update(
-		TABLE_LYRICS,
-		values,
-		COLUMN_ID + " = ?",
-		new String[]{String.valueOf(lyric.getId())});
-		db.close();
+		int rowsAffected = 0;
+		db.beginTransaction();
+		try {
+			Cursor cursor = db.query(TABLE_LYRICS,
+			storedContentColumns(COLUMN_TITLE, COLUMN_TIMESTAMP),
+			COLUMN_ID + " = ?", idArgs, null, null, null);
+			try {
+				if (cursor.moveToFirst()) {
+					String previousContent = readStoredContent(db, cursor);
+					// The triggers only handle inline bodies; the others are indexed here
+					if (!cursor.isNull(2) || !cursor.isNull(3)) {
+						LyricSearchIndex.unindexRow(db, lyric.getId(), cursor.getString(4), previousContent);
+					}
+					if (!cursor.isNull(3)) {
+						LyricChunks.delete(db, lyric.getId());
+					}
+					rowsAffected = db.update(TABLE_LYRICS, values, COLUMN_ID + " = ?", idArgs);
+					storeOutOfLine(db, lyric.getId(), lyric, values);
+					LyricRevisions.record(db, lyric.getId(), previousContent, cursor.getLong(5),
+					lyric.getContent(), values.getAsLong(COLUMN_TIMESTAMP));
+				}
+				} finally {
+				cursor.close();
+			}
+			db.setTransactionSuccessful();
+			} finally {
+			db.endTransaction();
+		}
+		if (rowsAffected > 0) {
+			cache(lyric.getId(), values);
+			changeTracker.recordRow(TABLE_LYRICS, lyric.getId());
+		}
+		OP_UPDATE.end(started, rowsAffected);
 		return rowsAffected;
 	}
 	
+	/**
+	* Recorded revisions of a lyric's content, newest first. Empty until its
+	* content is first edited.
+	*/
+	public List<LyricRevisions.Revision> getRevisions(int lyricId) {
+		return LyricRevisions.list(getReadableDatabase(), lyricId);
+	}
+	
+	/**
+	* Content of the lyric as of a revision from getRevisions, or null if there
+	* is no such revision or its stored history no longer applies.
+	*/
+	public String getRevisionContent(int lyricId, int revision) {
+		return LyricRevisions.reconstruct(getReadableDatabase(), lyricId, revision);
+	}
+	
 	public List<Lyric> getLyricsBySection(String sectionType) {
+		long started = QueryStats.start();
 		List<Lyric> lyrics = new ArrayList<>();
 		SQLiteDatabase db = this.getReadableDatabase();
 		
 		Cursor cursor = db.query(
 		TABLE_LYRICS,
 		null,
-		COLUMN_SECTION_TYPE + " = ?",
+		COLUMN_SECTION_TYPE + " = ? AND " + LIVE,
 		new String[]{sectionType},
 		null, null,
-		COLUMN_TIMESTAMP + " DESC");
+		COLUMN_TIMESTAMP + " DESC, " + COLUMN_ID + " DESC");
 		
 		if (cursor != null) {
 			while (cursor.moveToNext()) {
-				Lyric lyric = new Lyric(
-				cursor.getString(cursor.getColumnIndexOrThrow(COLUMN_TITLE)),
-				cursor.getString(cursor.getColumnIndexOrThrow(COLUMN_CONTENT))
-				);
-				lyric.setId(cursor.getInt(cursor.getColumnIndexOrThrow(COLUMN_ID)));
-				lyric.setTimestamp(cursor.getLong(cursor.getColumnIndexOrThrow(COLUMN_TIMESTAMP)));
-				lyric.setSectionType(sectionType);
-				lyrics.add(lyric);
+				lyrics.add(lyricFromCursor(db, cursor));
 			}
 			cursor.close();
 		}
-		db.close();
+		OP_GET_BY_SECTION.end(started, lyrics.size());
 		return lyrics;
 	}
 	
+	/**
+	* Full-text search over titles and content, best matches first.
+	*/
+	public List<LyricSearchIndex.Result> searchLyrics(String query, int limit, int offset) {
+		long started = QueryStats.start();
+		List<LyricSearchIndex.Result> results = LyricSearchIndex.search(getReadableDatabase(), query, limit, offset);
+		OP_SEARCH.end(started, results.size());
+		return results;
+	}
+	
+	/**
+	* Moves a lyric to the trash. It keeps its setlist entries, which are hidden
+	* until it is restored; DatabaseMaintenance deletes it for good once it has
+	* been in the trash for TRASH_RETENTION_MS.
+	*/
 	public void deleteLyric(int id) {
+		long started = QueryStats.start();
+		boolean trashed = setDeletedAt(id, System.currentTimeMillis());
+		OP_TRASH.end(started, trashed ? 1 : 0);
+	}
+	
+	/**
+	* Takes a lyric back out of the trash, into every setlist it was part of.
+	* @return false if it was not in the trash
+	*/
+	public boolean restoreLyric(int id) {
+		long started = QueryStats.start();
+		boolean restored = setDeletedAt(id, null);
+		OP_RESTORE.end(started, restored ? 1 : 0);
+		return restored;
+	}
+	
+	/**
+	* Trashed lyrics, most recently deleted first.
+	*/
+	public List<LyricSummary> getTrashedLyrics() {
+		long started = QueryStats.start();
+		List<LyricSummary> trashed = querySummaries(getReadableDatabase(), COLUMN_DELETED_AT + " IS NOT NULL", null,
+		COLUMN_DELETED_AT + " DESC", null);
+		OP_GET_TRASHED.end(started, trashed.size());
+		return trashed;
+	}
+	
+	/**
+	* Deletes a trashed lyric now instead of waiting for maintenance to purge it.
+	* Its setlist entries and revisions go with it through ON DELETE CASCADE.
+	*/
+	public boolean purgeLyric(int id) {
+		long started = QueryStats.start();
+		SQLiteDatabase db = getWritableDatabase();
+		String selection = COLUMN_ID + " = ? AND " + COLUMN_DELETED_AT + " IS NOT NULL";
+		String[] args = {String.valueOf(id)};
+		db.beginTransaction();
+		try {
+			LyricSearchIndex.unindexOutOfLine(db, selection, args);
+			int deleted = db.delete(TABLE_LYRICS, selection, args);
+			db.setTransactionSuccessful();
+			OP_PURGE.end(started, deleted);
+			return deleted > 0;
+			} finally {
+			db.endTransaction();
+		}
+	}
+	
+	private boolean setDeletedAt(int id, Long deletedAt) {
 		SQLiteDatabase db = this.getWritableDatabase();
-		db.delete(
-		TABLE_LYRICS,
-		COLUMN_ID + " = ?",
-		new String[]{String.valueOf(id)});
-		db.close();
+		List<Integer> affectedSetlists = new ArrayList<>();
+		int rowsAffected;
+		db.beginTransaction();
+		try {
+			ContentValues values = new ContentValues();
+			values.put(COLUMN_DELETED_AT, deletedAt);
+			rowsAffected = db.update(TABLE_LYRICS, values,
+			COLUMN_ID + " = ? AND " + COLUMN_DELETED_AT + (deletedAt != null ? " IS NULL" : " IS NOT NULL"),
+			new String[]{String.valueOf(id)});
+			
+			// Song counts of these setlists change with it
+			Cursor cursor = db.query(true, SetlistDbHelper.TABLE_SETLIST_ITEMS,
+			new String[]{SetlistDbHelper.COLUMN_SETLIST_ID},
+			SetlistDbHelper.COLUMN_LYRIC_ID + " = ?", new String[]{String.valueOf(id)},
+			null, null, null, null);
+			try {
+				while (cursor.moveToNext()) {
+					affectedSetlists.add(cursor.getInt(0));
+				}
+				} finally {
+				cursor.close();
+			}
+			db.setTransactionSuccessful();
+			} finally {
+			db.endTransaction();
+		}
+		if (rowsAffected == 0) return false;
+		
+		lyricCache.remove(id);
+		changeTracker.recordRow(TABLE_LYRICS, id);
+		changeTracker.recordRows(SetlistDbHelper.TABLE_SETLISTS, affectedSetlists);
+		return true;
 	}
 	
 	// BACKUP / RESTORE
@@ -222,66 +1187,209 @@ public class LyricDbHelper extends SQLiteOpenHelper {
 	}
 	
 	public RestoreResult addParsedLyrics(SQLiteDatabase db, List<Lyric> lyrics) {
-		int addedCount = 0;
+		return addParsedLyrics(db, lyrics, null);
+	}
+	
+	public RestoreResult addParsedLyrics(SQLiteDatabase db, List<Lyric> lyrics, BulkInsertListener listener) {
+		long started = QueryStats.start();
 		try {
-			db.beginTransaction();
+			// Every row needs a hash before the set below can stand in for the table
+			backfillDerivedColumns();
+			Set<String> knownHashes = loadContentHashes(db);
 			
-			for (Lyric lyric : lyrics) {
-				// Check if a lyric with the same title and content already exists
-				if (!lyricExists(db, lyric.getTitle(), lyric.getContent())) {
-					ContentValues values = new ContentValues();
-					values.put(COLUMN_TITLE, lyric.getTitle());
-					values.put(COLUMN_CONTENT, lyric.getContent());
-					values.put(COLUMN_TIMESTAMP, System.currentTimeMillis());
-					values.put(COLUMN_SECTION_TYPE, lyric.getSectionType());
-					db.insert(TABLE_LYRICS, null, values);
-					addedCount++;
-				}
+			// Skips lyrics whose title and content already exist, including earlier ones in this batch
+			int addedCount = bulkInsert(db, lyrics.iterator(), knownHashes, listener);
+			if (addedCount > 0) {
+				changeTracker.recordAll(TABLE_LYRICS);
 			}
-			
-			db.setTransactionSuccessful();
+			checkpoint(db);
+			OP_ADD_PARSED.end(started, addedCount);
 			return new RestoreResult(true, addedCount, null);
+			} catch (BulkInsertException e) {
+			// The chunks before the failure are in the library, so say how many
+			int addedCount = e.getInsertedCount();
+			if (addedCount > 0) {
+				changeTracker.recordAll(TABLE_LYRICS);
+			}
+			OP_ADD_PARSED.end(started, addedCount);
+			return new RestoreResult(false, addedCount,
+			"stopped after " + addedCount + " lyrics were added: " + e.getMessage());
 			} catch (Exception e) {
+			OP_ADD_PARSED.end(started, 0);
 			return new RestoreResult(false, 0, e.getMessage());
-			} finally {
-			try {
-				if (db.inTransaction()) {
-					db.endTransaction();
-				}
-				} catch (Exception e) {
-				// Ignore
-			}
 		}
 	}
 	
 	public RestoreResult insertParsedLyrics(SQLiteDatabase db, List<Lyric> lyrics) {
-		int addedCount = 0;
+		long started = QueryStats.start();
 		try {
+			// The old rows need their hashes to be matched against the new ones
+			backfillDerivedColumns();
+			// Replacing the library must not leave it half-restored, so the chunks
+			// nest inside one outer transaction here
+			int addedCount;
+			long trashedAt = System.currentTimeMillis();
 			db.beginTransaction();
-			db.delete(TABLE_LYRICS, null, null);
-			
-			for (Lyric lyric : lyrics) {
-				ContentValues values = new ContentValues();
-				values.put(COLUMN_TITLE, lyric.getTitle());
-				values.put(COLUMN_CONTENT, lyric.getContent());
-				values.put(COLUMN_TIMESTAMP, System.currentTimeMillis());
-				values.put(COLUMN_SECTION_TYPE, lyric.getSectionType());
-				db.insert(TABLE_LYRICS, null, values);
-				addedCount++;
+			try {
+				// The old library goes to the trash, where it can still be restored from
+				ContentValues trashed = new ContentValues();
+				trashed.put(COLUMN_DELETED_AT, trashedAt);
+				db.update(TABLE_LYRICS, trashed, LIVE, null);
+				addedCount = bulkInsert(db, lyrics.iterator(), null, null);
+				moveSetlistItemsToNewRows(db, trashedAt);
+				db.setTransactionSuccessful();
+				} finally {
+				db.endTransaction();
 			}
-			
-			db.setTransactionSuccessful();
+			// Every lyric was replaced, and setlists now point at the new rows
+			lyricCache.clear();
+			changeTracker.recordAll(TABLE_LYRICS);
+			changeTracker.recordAll(SetlistDbHelper.TABLE_SETLISTS);
+			checkpoint(db);
+			OP_INSERT_PARSED.end(started, addedCount);
 			return new RestoreResult(true, addedCount, null);
 			} catch (Exception e) {
+			OP_INSERT_PARSED.end(started, 0);
 			return new RestoreResult(false, 0, e.getMessage());
-			} finally {
-			try {
-				if (db.inTransaction()) {
+		}
+	}
+	
+	private static final String SQL_REPLACEMENT_ROW =
+	"SELECT n." + COLUMN_ID + " FROM " + TABLE_LYRICS + " n, " + TABLE_LYRICS + " o" +
+	" WHERE o." + COLUMN_ID + " = " + SetlistDbHelper.TABLE_SETLIST_ITEMS + "." + SetlistDbHelper.COLUMN_LYRIC_ID +
+	" AND n." + COLUMN_CONTENT_HASH + " = o." + COLUMN_CONTENT_HASH + " AND n." + LIVE +
+	" ORDER BY n." + COLUMN_ID + " LIMIT 1";
+	
+	// Setlist entries of the rows trashed at trashedAt follow the first live row with
+	// the same title and content; songs the backup lacks stay with the trashed row
+	static final String SQL_MOVE_SETLIST_ITEMS =
+	"UPDATE " + SetlistDbHelper.TABLE_SETLIST_ITEMS + " SET " + SetlistDbHelper.COLUMN_LYRIC_ID +
+	" = (" + SQL_REPLACEMENT_ROW + ") WHERE " + SetlistDbHelper.COLUMN_LYRIC_ID + " IN (SELECT " + COLUMN_ID +
+	" FROM " + TABLE_LYRICS + " WHERE " + COLUMN_DELETED_AT + " = ?) AND EXISTS (" + SQL_REPLACEMENT_ROW + ")";
+	
+	private static void moveSetlistItemsToNewRows(SQLiteDatabase db, long trashedAt) {
+		db.execSQL(SQL_MOVE_SETLIST_ITEMS, new Object[]{trashedAt});
+	}
+	
+	/**
+	* Inserts lyrics through one compiled statement, committing every
+	* BULK_INSERT_CHUNK_SIZE rows so a large import neither holds the write lock
+	* throughout nor grows the WAL without bound.
+	* @return the number of rows inserted
+	* @throws BulkInsertException if a chunk fails, with the rows committed before it
+	*/
+	public int bulkInsert(Iterator<Lyric> lyrics, BulkInsertListener listener) {
+		long started = QueryStats.start();
+		SQLiteDatabase db = getWritableDatabase();
+		int inserted;
+		try {
+			inserted = bulkInsert(db, lyrics, null, listener);
+			} catch (BulkInsertException e) {
+			if (e.getInsertedCount() > 0) {
+				changeTracker.recordAll(TABLE_LYRICS);
+			}
+			throw e;
+		}
+		if (inserted > 0) {
+			changeTracker.recordAll(TABLE_LYRICS);
+		}
+		checkpoint(db);
+		OP_BULK_INSERT.end(started, inserted);
+		return inserted;
+	}
+	
+	// knownHashes, if given, filters out duplicates and collects the hashes of new rows
+	private int bulkInsert(SQLiteDatabase db, Iterator<Lyric> lyrics, Set<String> knownHashes,
+	BulkInsertListener listener) {
+		SQLiteStatement insert = db.compileStatement("INSERT INTO " + TABLE_LYRICS + " (" +
+		COLUMN_TITLE + ", " + COLUMN_CONTENT + ", " + COLUMN_TIMESTAMP + ", " + COLUMN_SECTION_TYPE + ", " +
+		COLUMN_PREVIEW + ", " + COLUMN_WORD_COUNT + ", " + COLUMN_LINE_COUNT + ", " + COLUMN_CONTENT_HASH + ", " +
+		COLUMN_CONTENT_BLOB + ", " + COLUMN_CONTENT_CHUNKS + ", " + COLUMN_SECTION_SPANS + ", " +
+		COLUMN_SECTION_SPANS_KEY + ", " + COLUMN_TITLE_KEY + ") VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)");
+		int inserted = 0;
+		try {
+			while (lyrics.hasNext()) {
+				int chunk = 0;
+				db.beginTransaction();
+				try {
+					while (chunk < BULK_INSERT_CHUNK_SIZE && lyrics.hasNext()) {
+						Lyric lyric = lyrics.next();
+						String title = lyric.getTitle();
+						String content = lyric.getContent();
+						String hash = contentHash(title, content);
+						if (knownHashes != null && !knownHashes.add(hash)) continue;
+						
+						boolean chunked = LyricChunks.needsChunks(content);
+						byte[] compressed = (compressContent && !chunked) ? ContentCodec.encode(content) : null;
+						bindNullable(insert, 1, title);
+						bindNullable(insert, 2, (chunked || compressed != null) ? "" : content);
+						insert.bindLong(3, System.currentTimeMillis());
+						bindNullable(insert, 4, lyric.getSectionType());
+						bindNullable(insert, 5, buildPreview(content));
+						insert.bindLong(6, countWords(content));
+						insert.bindLong(7, countLines(content));
+						insert.bindString(8, hash);
+						if (compressed != null) {
+							insert.bindBlob(9, compressed);
+							} else {
+							insert.bindNull(9);
+						}
+						if (chunked) {
+							insert.bindLong(10, LyricChunks.chunkCount(content));
+							} else {
+							insert.bindNull(10);
+						}
+						insert.bindBlob(11, SectionMarkers.encode(LyricSection.findHeaders(content)));
+						insert.bindString(12, hash);
+						insert.bindString(13, titleKey(title));
+						long id = insert.executeInsert();
+						if (chunked) {
+							LyricChunks.write(db, id, content);
+						}
+						if (chunked || compressed != null) {
+							LyricSearchIndex.indexRow(db, id, title, content);
+						}
+						chunk++;
+					}
+					db.setTransactionSuccessful();
+					} finally {
 					db.endTransaction();
 				}
-				} catch (Exception e) {
-				// Ignore
+				inserted += chunk;
+				if (listener != null && chunk > 0) {
+					listener.onProgress(inserted);
+				}
 			}
+			} catch (RuntimeException e) {
+			throw new BulkInsertException(inserted, e);
+			} finally {
+			insert.close();
+		}
+		return inserted;
+	}
+	
+	private static void bindNullable(SQLiteStatement statement, int index, String value) {
+		if (value != null) {
+			statement.bindString(index, value);
+			} else {
+			statement.bindNull(index);
+		}
+	}
+	
+	/**
+	* Folds the write-ahead log back into the database without waiting on readers.
+	* Called after bulk writes so a large import does not leave a long WAL behind;
+	* other writes leave it to the automatic checkpoint the platform configures.
+	*/
+	public static void checkpoint(SQLiteDatabase db) {
+		Cursor cursor = null;
+		try {
+			cursor = db.rawQuery("PRAGMA wal_checkpoint(PASSIVE)", null);
+			cursor.moveToFirst();
+			} catch (Exception e) {
+			Log.w(TAG, "WAL checkpoint failed", e);
+			} finally {
+			if (cursor != null) cursor.close();
 		}
 	}
 	
@@ -367,24 +1475,23 @@ public class LyricDbHelper extends SQLiteOpenHelper {
 		return content.contains("╔") && content.contains("LYREX EXPORT");
 	}
 	
-	// You already have a lyricExists method, which is perfect for this.
-	private boolean lyricExists(SQLiteDatabase db, String title, String content) {
-		Cursor cursor = null;
+	// Live rows only, so a song in the trash can be restored from a backup again;
+	// never reads titles or content
+	private Set<String> loadContentHashes(SQLiteDatabase db) {
+		Set<String> hashes = new HashSet<>();
+		Cursor cursor = db.query(
+		TABLE_LYRICS,
+		new String[]{COLUMN_CONTENT_HASH},
+		COLUMN_CONTENT_HASH + " IS NOT NULL AND " + LIVE,
+		null, null, null, null);
 		try {
-			cursor = db.query(
-			TABLE_LYRICS,
-			new String[]{COLUMN_ID},
-			COLUMN_TITLE + " = ? AND " + COLUMN_CONTENT + " = ?",
-			new String[]{title, content},
-			null, null, null
-			);
-			return cursor != null && cursor.getCount() > 0;
-			} catch (Exception e) {
-			Log.e(TAG, "lyricExists check failed", e);
-			return false;
+			while (cursor.moveToNext()) {
+				hashes.add(cursor.getString(0));
+			}
 			} finally {
-			if (cursor != null) cursor.close();
+			cursor.close();
 		}
+		return hashes;
 	}
 	
 	// escaping/unescaping (kept as-is)
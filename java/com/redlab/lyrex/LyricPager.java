@@ -0,0 +1,215 @@
+package com.redlab.lyrex;
+
+import androidx.lifecycle.LifecycleOwner;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+* Keyset-paged view of lyric summaries for list screens.
+*
+* Pages are fetched on demand with a (sort key, id) cursor instead of OFFSET, and
+* only the most recently used pages are kept in memory. Evicted pages are fetched
+* again from their remembered start key, so memory stays bounded however large the
+* library grows. All queries run on the LyricRepository reader pool; the pager
+* itself is only touched on the main thread.
+*/
+public class LyricPager {
+	public static final int PAGE_SIZE = 50;
+	private static final int MAX_CACHED_PAGES = 6;
+	
+	/**
+	* Page results, delivered on the main thread.
+	*/
+	public interface Listener {
+		// New rows were discovered at the end of the list; count may be 0 for an empty first page
+		void onRowsAppended(int start, int count);
+		
+		// A page that had been evicted is available again
+		void onRowsReloaded(int start, int count);
+	}
+	
+	private final LyricRepository repository;
+	private final LifecycleOwner owner;
+	private final String sortOrder;
+	private Listener listener;
+	
+	// pageKeys.get(i) is the last row before page i (null for the first page)
+	private final List<LyricSummary> pageKeys = new ArrayList<>();
+	private final LinkedHashMap<Integer, List<LyricSummary>> pages =
+	new LinkedHashMap<Integer, List<LyricSummary>>(MAX_CACHED_PAGES + 1, 0.75f, true) {
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Integer, List<LyricSummary>> eldest) {
+			return size() > MAX_CACHED_PAGES;
+		}
+	};
+	// Pages with a query in flight, so scrolling does not issue duplicates
+	private final Set<Integer> loadingPages = new HashSet<>();
+	private int count = 0;
+	private boolean endReached = false;
+	private boolean closed = false;
+	
+	public LyricPager(LyricRepository repository, LifecycleOwner owner, String sortOrder) {
+		this.repository = repository;
+		this.owner = owner;
+		this.sortOrder = sortOrder;
+		pageKeys.add(null);
+	}
+	
+	public void setListener(Listener listener) {
+		this.listener = listener;
+	}
+	
+	/**
+	* Stops delivering results, e.g. once the pager has been replaced by one with
+	* another sort order.
+	*/
+	public void close() {
+		closed = true;
+		listener = null;
+	}
+	
+	public String getSortOrder() {
+		return sortOrder;
+	}
+	
+	/** Number of rows discovered so far. */
+	public int getCount() {
+		return count;
+	}
+	
+	public boolean hasMore() {
+		return !endReached;
+	}
+	
+	/**
+	* Starts fetching the page after the last one discovered; the listener hears
+	* about the new rows once they arrive.
+	*/
+	public void loadNextPage() {
+		int pageIndex = pageKeys.size() - 1;
+		if (closed || endReached || !loadingPages.add(pageIndex)) return;
+		
+		LyricSummary after = pageKeys.get(pageIndex);
+		repository.read(owner,
+		(lyrics, setlists) -> lyrics.getLyricSummaryPage(sortOrder, after, PAGE_SIZE),
+		page -> {
+			loadingPages.remove(pageIndex);
+			if (closed) return;
+			
+			pages.put(pageIndex, page);
+			int start = count;
+			count += page.size();
+			if (page.size() < PAGE_SIZE) {
+				endReached = true;
+				} else {
+				pageKeys.add(page.get(page.size() - 1));
+			}
+			if (listener != null) listener.onRowsAppended(start, page.size());
+		},
+		error -> loadingPages.remove(pageIndex));
+	}
+	
+	/**
+	* Row at position, or null while its page is being fetched again after eviction.
+	*/
+	public LyricSummary get(int position) {
+		if (position < 0 || position >= count) return null;
+		
+		int pageIndex = position / PAGE_SIZE;
+		List<LyricSummary> page = pages.get(pageIndex);
+		if (page == null) {
+			reloadPage(pageIndex);
+			return null;
+		}
+		int offset = position % PAGE_SIZE;
+		return offset < page.size() ? page.get(offset) : null;
+	}
+	
+	private void reloadPage(int pageIndex) {
+		if (closed || !loadingPages.add(pageIndex)) return;
+		
+		LyricSummary after = pageKeys.get(pageIndex);
+		repository.read(owner,
+		(lyrics, setlists) -> lyrics.getLyricSummaryPage(sortOrder, after, PAGE_SIZE),
+		page -> {
+			loadingPages.remove(pageIndex);
+			if (closed) return;
+			
+			pages.put(pageIndex, page);
+			int start = pageIndex * PAGE_SIZE;
+			int reloaded = Math.min(page.size(), count - start);
+			if (listener != null && reloaded > 0) listener.onRowsReloaded(start, reloaded);
+		},
+		error -> loadingPages.remove(pageIndex));
+	}
+	
+	/**
+	* Refreshes changed rows in place with one query for just those ids. Rows that
+	* are new, deleted, not in a cached page, or whose sort key changed would move
+	* or shift positions; onStructureChanged is called for those instead and the
+	* caller is expected to reload.
+	*/
+	public void applyChanges(Set<Integer> ids, Runnable onStructureChanged) {
+		if (closed || ids.isEmpty()) return;
+		
+		repository.read(owner, (lyrics, setlists) -> lyrics.getLyricSummariesByIds(ids), summaries -> {
+			if (closed) return;
+			
+			Map<Integer, LyricSummary> byId = new HashMap<>();
+			for (LyricSummary summary : summaries) {
+				byId.put(summary.getId(), summary);
+			}
+			
+			List<int[]> updates = new ArrayList<>();
+			for (int id : ids) {
+				LyricSummary fresh = byId.get(id);
+				int[] location = findCached(id);
+				if (fresh == null || location == null
+				|| !sameSortKey(pages.get(location[0]).get(location[1]), fresh)) {
+					onStructureChanged.run();
+					return;
+				}
+				updates.add(location);
+			}
+			for (int[] location : updates) {
+				List<LyricSummary> page = pages.get(location[0]);
+				LyricSummary fresh = byId.get(page.get(location[1]).getId());
+				page.set(location[1], fresh);
+				if (listener != null) listener.onRowsReloaded(location[0] * PAGE_SIZE + location[1], 1);
+			}
+		});
+	}
+	
+	// {page index, offset} of a row in a cached page, or null
+	private int[] findCached(int id) {
+		for (Map.Entry<Integer, List<LyricSummary>> entry : pages.entrySet()) {
+			List<LyricSummary> page = entry.getValue();
+			for (int i = 0; i < page.size(); i++) {
+				if (page.get(i).getId() == id) {
+					return new int[]{entry.getKey(), i};
+				}
+			}
+		}
+		return null;
+	}
+	
+	private boolean sameSortKey(LyricSummary a, LyricSummary b) {
+		if (sortOrder.equals("title")) {
+			return a.getTitle() != null ? a.getTitle().equals(b.getTitle()) : b.getTitle() == null;
+		}
+		return a.getTimestamp() == b.getTimestamp();
+	}
+	
+	/**
+	* Ids of every row in the list, including pages not loaded yet.
+	*/
+	public void loadAllIds(LyricRepository.Callback<List<Integer>> callback) {
+		repository.read(owner, (lyrics, setlists) -> lyrics.getAllLyricIds(), callback);
+	}
+}
\ No newline at end of file
@@ -0,0 +1,218 @@
+package com.redlab.lyrex;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import androidx.lifecycle.Lifecycle;
+import androidx.lifecycle.LifecycleEventObserver;
+import androidx.lifecycle.LifecycleOwner;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+* Asynchronous access to the lyric and setlist database.
+*
+* Writes run one at a time on a single writer thread, in the order they were
+* submitted, so they never contend for SQLite's write lock. Reads run on a small
+* bounded pool and, with WAL, see a consistent snapshot while a write is in
+* progress. Results are delivered on the main thread.
+*
+* Work submitted with a LifecycleOwner is tied to it: once the owner is destroyed
+* its queued reads are cancelled and no callbacks are delivered. Writes are never
+* cancelled, only their callbacks dropped, so a change the user asked for always
+* lands. Submit from the main thread.
+*/
+public final class LyricRepository {
+	private static final String TAG = "LyricRepository";
+	
+	// WAL allows several readers next to the writer; more would only queue on the connection pool
+	private static final int READER_THREADS = 3;
+	private static final long READER_KEEP_ALIVE_SECONDS = 30;
+	// Lets startup reads go first before maintenance queues behind them
+	private static final long MAINTENANCE_START_DELAY_MS = 60_000;
+	
+	public interface Operation<T> {
+		T run(LyricDbHelper lyrics, SetlistDbHelper setlists) throws Exception;
+	}
+	
+	public interface Callback<T> {
+		void onResult(T result);
+	}
+	
+	private static LyricRepository instance;
+	
+	private final LyricDbHelper lyricDbHelper;
+	private final SetlistDbHelper setlistDbHelper;
+	private final ExecutorService writer;
+	private final ThreadPoolExecutor readers;
+	private final Handler mainHandler = new Handler(Looper.getMainLooper());
+	
+	public static synchronized LyricRepository getInstance(Context context) {
+		if (instance == null) {
+			instance = new LyricRepository(context.getApplicationContext());
+		}
+		return instance;
+	}
+	
+	private LyricRepository(Context context) {
+		lyricDbHelper = LyricDbHelper.getInstance(context);
+		setlistDbHelper = SetlistDbHelper.getInstance(context);
+		writer = Executors.newSingleThreadExecutor(threadFactory("lyric-db-writer"));
+		readers = new ThreadPoolExecutor(READER_THREADS, READER_THREADS,
+		READER_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+		new LinkedBlockingQueue<>(), threadFactory("lyric-db-reader"));
+		readers.allowCoreThreadTimeOut(true);
+		mainHandler.postDelayed(this::scheduleMaintenance, MAINTENANCE_START_DELAY_MS);
+	}
+	
+	// Checks whether a pass is due now and again every RUN_INTERVAL_MS while the process lives
+	private void scheduleMaintenance() {
+		writer.execute(() -> {
+			if (lyricDbHelper.getMaintenance().isDue()) {
+				runMaintenanceStep();
+			}
+		});
+		mainHandler.postDelayed(this::scheduleMaintenance, DatabaseMaintenance.RUN_INTERVAL_MS);
+	}
+	
+	// One step per writer task, so writes submitted meanwhile run between steps
+	private void runMaintenanceStep() {
+		try {
+			if (lyricDbHelper.getMaintenance().runStep()) {
+				writer.execute(this::runMaintenanceStep);
+			}
+			} catch (Exception e) {
+			Log.e(TAG, "Database maintenance failed", e);
+		}
+	}
+	
+	public ChangeTracker getChangeTracker() {
+		return lyricDbHelper.getChangeTracker();
+	}
+	
+	// A preference write only, so safe to call on the main thread
+	public void setContentCompressionEnabled(boolean enabled) {
+		lyricDbHelper.setContentCompressionEnabled(enabled);
+	}
+	
+	public boolean isContentCompressionEnabled() {
+		return lyricDbHelper.isContentCompressionEnabled();
+	}
+	
+	public <T> Future<?> read(LifecycleOwner owner, Operation<T> operation, Callback<T> onResult) {
+		return read(owner, operation, onResult, null);
+	}
+	
+	public <T> Future<?> read(LifecycleOwner owner, Operation<T> operation, Callback<T> onResult,
+	Callback<Exception> onError) {
+		return submit(readers, true, owner, operation, onResult, onError);
+	}
+	
+	public <T> Future<?> write(LifecycleOwner owner, Operation<T> operation, Callback<T> onResult) {
+		return write(owner, operation, onResult, null);
+	}
+	
+	public <T> Future<?> write(LifecycleOwner owner, Operation<T> operation, Callback<T> onResult,
+	Callback<Exception> onError) {
+		return submit(writer, false, owner, operation, onResult, onError);
+	}
+	
+	/**
+	* Runs non-database disk or CPU work (file parsing, QR encoding) on the reader
+	* pool with the same lifecycle handling as read().
+	*/
+	public <T> Future<?> runInBackground(LifecycleOwner owner, Callable<T> task, Callback<T> onResult,
+	Callback<Exception> onError) {
+		return submit(readers, true, owner, (lyrics, setlists) -> task.call(), onResult, onError);
+	}
+	
+	private <T> Future<?> submit(ExecutorService executor, boolean cancellable, LifecycleOwner owner,
+	Operation<T> operation, Callback<T> onResult, Callback<Exception> onError) {
+		Delivery<T> delivery = new Delivery<>(owner, onResult, onError);
+		if (cancellable && delivery.isReleased()) {
+			return null;
+		}
+		
+		Future<?> future = executor.submit(() -> {
+			try {
+				delivery.post(operation.run(lyricDbHelper, setlistDbHelper), null);
+				} catch (Exception e) {
+				Log.e(TAG, "Database operation failed", e);
+				delivery.post(null, e);
+			}
+		});
+		delivery.attach(future, cancellable);
+		return future;
+	}
+	
+	/**
+	* Hands one result back to the main thread unless the owner has gone away.
+	*/
+	private class Delivery<T> implements LifecycleEventObserver {
+		private final LifecycleOwner owner;
+		private final Callback<T> onResult;
+		private final Callback<Exception> onError;
+		private Future<?> future;
+		private boolean cancellable;
+		private boolean released;
+		
+		Delivery(LifecycleOwner owner, Callback<T> onResult, Callback<Exception> onError) {
+			this.owner = owner;
+			this.onResult = onResult;
+			this.onError = onError;
+			released = owner != null && owner.getLifecycle().getCurrentState() == Lifecycle.State.DESTROYED;
+		}
+		
+		boolean isReleased() {
+			return released;
+		}
+		
+		void attach(Future<?> future, boolean cancellable) {
+			this.future = future;
+			this.cancellable = cancellable;
+			if (owner != null && !released) {
+				owner.getLifecycle().addObserver(this);
+			}
+		}
+		
+		void post(T result, Exception error) {
+			mainHandler.post(() -> {
+				if (owner != null) {
+					owner.getLifecycle().removeObserver(this);
+				}
+				if (released) return;
+				released = true;
+				if (error == null) {
+					if (onResult != null) onResult.onResult(result);
+					} else if (onError != null) {
+					onError.onResult(error);
+				}
+			});
+		}
+		
+		@Override
+		public void onStateChanged(LifecycleOwner source, Lifecycle.Event event) {
+			if (event != Lifecycle.Event.ON_DESTROY) return;
+			released = true;
+			source.getLifecycle().removeObserver(this);
+			if (cancellable && future != null) {
+				future.cancel(false);
+			}
+		}
+	}
+	
+	private static ThreadFactory threadFactory(String name) {
+		AtomicInteger count = new AtomicInteger();
+		return runnable -> new Thread(runnable, name + "-" + count.incrementAndGet());
+	}
+}
\ No newline at end of file
@@ -0,0 +1,172 @@
+package com.redlab.lyrex;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+* Edit history of lyric content, stored as line deltas.
+*
+* Revision 0 is the content a lyric had before its first recorded edit. Every
+* later revision stores a LineDelta against the one before it, except every
+* KEYFRAME_INTERVAL-th, which stores the full text. Rebuilding a revision reads
+* its keyframe and at most KEYFRAME_INTERVAL - 1 deltas, however long the
+* history. Rows go with their lyric through ON DELETE CASCADE.
+*
+* Edits to or from a body large enough for LyricChunks are not recorded. The
+* next recorded edit then starts from text the history never saw, so any edit
+* whose previous text is not the latest revision is stored as a keyframe.
+*/
+public final class LyricRevisions {
+	private static final String TAG = "LyricRevisions";
+	
+	public static final String TABLE_LYRIC_REVISIONS = "lyric_revisions";
+	public static final String COLUMN_ID = "_id";
+	public static final String COLUMN_LYRIC_ID = "lyric_id";
+	public static final String COLUMN_REVISION = "revision";
+	public static final String COLUMN_TIMESTAMP = "timestamp";
+	public static final String COLUMN_KEYFRAME = "keyframe";
+	public static final String COLUMN_DATA = "data";
+	
+	// Full copies every this many revisions bound the deltas applied per rebuild
+	static final int KEYFRAME_INTERVAL = 16;
+	
+	static final String SQL_REVISION_RANGE = "SELECT " + COLUMN_REVISION + ", " + COLUMN_KEYFRAME + ", " +
+	COLUMN_DATA + " FROM " + TABLE_LYRIC_REVISIONS + " WHERE " + COLUMN_LYRIC_ID + " = ? AND " +
+	COLUMN_REVISION + " BETWEEN ? AND ? ORDER BY " + COLUMN_REVISION;
+	
+	static final String SQL_LIST_REVISIONS = "SELECT " + COLUMN_REVISION + ", " + COLUMN_TIMESTAMP + ", " +
+	"length(" + COLUMN_DATA + ") FROM " + TABLE_LYRIC_REVISIONS + " WHERE " + COLUMN_LYRIC_ID + " = ?" +
+	" ORDER BY " + COLUMN_REVISION + " DESC";
+	
+	static final String SQL_LATEST_REVISION = "SELECT COALESCE(MAX(" + COLUMN_REVISION + "), -1) FROM " +
+	TABLE_LYRIC_REVISIONS + " WHERE " + COLUMN_LYRIC_ID + " = ?";
+	
+	private LyricRevisions() {}
+	
+	public static class Revision {
+		public final int revision;
+		public final long timestamp;
+		// Characters stored for this revision, delta or keyframe
+		public final int storedLength;
+		
+		public Revision(int revision, long timestamp, int storedLength) {
+			this.revision = revision;
+			this.timestamp = timestamp;
+			this.storedLength = storedLength;
+		}
+	}
+	
+	// The unique index doubles as the lookup for rebuilds and for the cascade
+	public static void create(SQLiteDatabase db) {
+		db.execSQL("CREATE TABLE IF NOT EXISTS " + TABLE_LYRIC_REVISIONS + " (" +
+		COLUMN_ID + " INTEGER PRIMARY KEY AUTOINCREMENT, " +
+		COLUMN_LYRIC_ID + " INTEGER NOT NULL REFERENCES " + LyricDbHelper.TABLE_LYRICS +
+		"(" + LyricDbHelper.COLUMN_ID + ") ON DELETE CASCADE, " +
+		COLUMN_REVISION + " INTEGER NOT NULL, " +
+		COLUMN_TIMESTAMP + " INTEGER NOT NULL, " +
+		COLUMN_KEYFRAME + " INTEGER NOT NULL, " +
+		COLUMN_DATA + " TEXT NOT NULL, " +
+		"UNIQUE (" + COLUMN_LYRIC_ID + ", " + COLUMN_REVISION + "))");
+	}
+	
+	/**
+	* Appends a revision for an edit from previousContent to newContent, unless
+	* the text is unchanged or either side needs chunks. Call inside the
+	* transaction that updates the lyric, with previousContent read from the row
+	* being replaced.
+	*/
+	static void record(SQLiteDatabase db, int lyricId, String previousContent, long previousTimestamp,
+	String newContent, long timestamp) {
+		if (previousContent == null || newContent == null || previousContent.equals(newContent)) return;
+		// History keeps whole keyframes, which a chunked body would not fit a cursor
+		if (LyricChunks.needsChunks(previousContent) || LyricChunks.needsChunks(newContent)) return;
+		
+		int latest = (int) DatabaseUtils.longForQuery(db, SQL_LATEST_REVISION, new String[]{String.valueOf(lyricId)});
+		boolean continuesHistory;
+		if (latest < 0) {
+			// First edit since history began: keep the text being replaced as revision 0
+			insert(db, lyricId, 0, previousTimestamp, true, previousContent);
+			latest = 0;
+			continuesHistory = true;
+			} else {
+			// False after a skipped edit, when a delta from previousContent would not apply
+			continuesHistory = previousContent.equals(reconstruct(db, lyricId, latest));
+		}
+		
+		int next = latest + 1;
+		if (!continuesHistory || next % KEYFRAME_INTERVAL == 0) {
+			insert(db, lyricId, next, timestamp, true, newContent);
+			} else {
+			insert(db, lyricId, next, timestamp, false, LineDelta.diff(previousContent, newContent));
+		}
+	}
+	
+	private static void insert(SQLiteDatabase db, int lyricId, int revision, long timestamp, boolean keyframe,
+	String data) {
+		ContentValues values = new ContentValues();
+		values.put(COLUMN_LYRIC_ID, lyricId);
+		values.put(COLUMN_REVISION, revision);
+		values.put(COLUMN_TIMESTAMP, timestamp);
+		values.put(COLUMN_KEYFRAME, keyframe ? 1 : 0);
+		values.put(COLUMN_DATA, data);
+		db.insertOrThrow(TABLE_LYRIC_REVISIONS, null, values);
+	}
+	
+	/**
+	* Revisions of a lyric, newest first, without their content.
+	*/
+	static List<Revision> list(SQLiteDatabase db, int lyricId) {
+		List<Revision> revisions = new ArrayList<>();
+		Cursor cursor = db.rawQuery(SQL_LIST_REVISIONS, new String[]{String.valueOf(lyricId)});
+		try {
+			while (cursor.moveToNext()) {
+				revisions.add(new Revision(cursor.getInt(0), cursor.getLong(1), cursor.getInt(2)));
+			}
+			} finally {
+			cursor.close();
+		}
+		return revisions;
+	}
+	
+	/**
+	* Content of one revision, rebuilt from the keyframe at or before it.
+	* @return null if the lyric has no such revision or its deltas do not apply
+	*/
+	static String reconstruct(SQLiteDatabase db, int lyricId, int revision) {
+		if (revision < 0) return null;
+		
+		int keyframe = revision - revision % KEYFRAME_INTERVAL;
+		Cursor cursor = db.rawQuery(SQL_REVISION_RANGE, new String[]{
+			String.valueOf(lyricId), String.valueOf(keyframe), String.valueOf(revision)});
+		try {
+			String content = null;
+			int expected = keyframe;
+			while (cursor.moveToNext()) {
+				// A gap means the history is incomplete; nothing after it can be trusted
+				if (cursor.getInt(0) != expected++) return null;
+				
+				String data = cursor.getString(2);
+				if (cursor.getInt(1) != 0) {
+					content = data;
+					} else if (content != null) {
+					content = LineDelta.apply(content, data);
+					} else {
+					return null;
+				}
+			}
+			return (expected == revision + 1) ? content : null;
+			} catch (IllegalArgumentException e) {
+			// Also covers NumberFormatException from a malformed count
+			Log.w(TAG, "Corrupt revision history for lyric " + lyricId, e);
+			return null;
+			} finally {
+			cursor.close();
+		}
+	}
+}
\ No newline at end of file
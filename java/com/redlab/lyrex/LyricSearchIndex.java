@@ -0,0 +1,323 @@
+package com.redlab.lyrex;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+* FTS4 index over lyric titles and content.
+*
+* The virtual table uses the lyrics table as its external content, so the index
+* only stores the terms; triggers keep it in step with every insert, update and
+* delete made against the lyrics table. Rows whose body is stored compressed or
+* in chunks are the exception: SQL cannot read it, so the triggers skip those
+* rows and LyricDbHelper indexes and unindexes them with indexRow and unindexRow.
+*/
+public final class LyricSearchIndex {
+	public static final String TABLE_LYRICS_FTS = "lyrics_fts";
+	
+	// Rows indexed per statement when rebuilding an existing database
+	private static final int REBUILD_BATCH_SIZE = 500;
+	
+	// Title hits count for much more than body hits when ranking
+	private static final double TITLE_WEIGHT = 10.0;
+	private static final double CONTENT_WEIGHT = 1.0;
+	
+	// Markers wrapped around matched terms by snippet(); stripped before returning
+	private static final char MATCH_START = '\u0002';
+	private static final char MATCH_END = '\u0003';
+	private static final int SNIPPET_TOKENS = 12;
+	
+	// Trashed lyrics stay indexed so restoring them is free; the rowid join drops them here
+	static final String SQL_SEARCH =
+	"SELECT docid, matchinfo(" + TABLE_LYRICS_FTS + ", 'pcx') FROM " + TABLE_LYRICS_FTS +
+	" JOIN " + LyricDbHelper.TABLE_LYRICS + " ON " + LyricDbHelper.TABLE_LYRICS + "." + LyricDbHelper.COLUMN_ID +
+	" = docid WHERE " + TABLE_LYRICS_FTS + " MATCH ? AND " + LyricDbHelper.TABLE_LYRICS + "." + LyricDbHelper.LIVE;
+	
+	private LyricSearchIndex() {}
+	
+	public static class Result {
+		public final int id;
+		public final String title;
+		public final double score;
+		public final String snippet;
+		// Pairs of [start, end) character offsets of the matched terms within snippet
+		public final int[] matchOffsets;
+		
+		public Result(int id, String title, double score, String snippet, int[] matchOffsets) {
+			this.id = id;
+			this.title = title;
+			this.score = score;
+			this.snippet = snippet;
+			this.matchOffsets = matchOffsets;
+		}
+	}
+	
+	public static void create(SQLiteDatabase db) {
+		createTable(db);
+		createTriggers(db);
+	}
+	
+	static void createTable(SQLiteDatabase db) {
+		db.execSQL("CREATE VIRTUAL TABLE IF NOT EXISTS " + TABLE_LYRICS_FTS + " USING fts4(" +
+		"content=\"" + LyricDbHelper.TABLE_LYRICS + "\", " +
+		LyricDbHelper.COLUMN_TITLE + ", " +
+		LyricDbHelper.COLUMN_CONTENT + ")");
+	}
+	
+	// Replaces triggers created before compressed and chunked bodies existed
+	static void recreateTriggers(SQLiteDatabase db) {
+		for (String trigger : new String[]{"lyrics_fts_bu", "lyrics_fts_bd", "lyrics_fts_au", "lyrics_fts_ai"}) {
+			db.execSQL("DROP TRIGGER IF EXISTS " + trigger);
+		}
+		createTriggers(db);
+	}
+	
+	private static void createTriggers(SQLiteDatabase db) {
+		String lyrics = LyricDbHelper.TABLE_LYRICS;
+		String id = LyricDbHelper.COLUMN_ID;
+		String title = LyricDbHelper.COLUMN_TITLE;
+		String content = LyricDbHelper.COLUMN_CONTENT;
+		String plainOld = " WHEN old." + LyricDbHelper.COLUMN_CONTENT_BLOB + " IS NULL AND old." +
+		LyricDbHelper.COLUMN_CONTENT_CHUNKS + " IS NULL";
+		String plainNew = " WHEN new." + LyricDbHelper.COLUMN_CONTENT_BLOB + " IS NULL AND new." +
+		LyricDbHelper.COLUMN_CONTENT_CHUNKS + " IS NULL";
+		
+		db.execSQL("CREATE TRIGGER IF NOT EXISTS lyrics_fts_bu BEFORE UPDATE OF " + title + ", " + content +
+		" ON " + lyrics + plainOld + " BEGIN DELETE FROM " + TABLE_LYRICS_FTS + " WHERE docid = old." + id + "; END");
+		db.execSQL("CREATE TRIGGER IF NOT EXISTS lyrics_fts_bd BEFORE DELETE ON " + lyrics + plainOld +
+		" BEGIN DELETE FROM " + TABLE_LYRICS_FTS + " WHERE docid = old." + id + "; END");
+		db.execSQL("CREATE TRIGGER IF NOT EXISTS lyrics_fts_au AFTER UPDATE OF " + title + ", " + content +
+		" ON " + lyrics + plainNew + " BEGIN INSERT INTO " + TABLE_LYRICS_FTS + "(docid, " + title + ", " + content + ")" +
+		" VALUES (new." + id + ", new." + title + ", new." + content + "); END");
+		db.execSQL("CREATE TRIGGER IF NOT EXISTS lyrics_fts_ai AFTER INSERT ON " + lyrics + plainNew +
+		" BEGIN INSERT INTO " + TABLE_LYRICS_FTS + "(docid, " + title + ", " + content + ")" +
+		" VALUES (new." + id + ", new." + title + ", new." + content + "); END");
+	}
+	
+	/**
+	* Indexes a row whose body is not stored inline, with its plain text.
+	*/
+	static void indexRow(SQLiteDatabase db, long id, String title, String content) {
+		db.execSQL("INSERT INTO " + TABLE_LYRICS_FTS + "(docid, " +
+		LyricDbHelper.COLUMN_TITLE + ", " + LyricDbHelper.COLUMN_CONTENT + ") VALUES (?, ?, ?)",
+		new Object[]{id, title, content});
+	}
+	
+	/**
+	* Removes a row indexed with indexRow. The values must be the ones it was indexed
+	* with, since FTS cannot read them back from the row.
+	*/
+	static void unindexRow(SQLiteDatabase db, long id, String title, String content) {
+		db.execSQL("INSERT INTO " + TABLE_LYRICS_FTS + "(" + TABLE_LYRICS_FTS + ", docid, " +
+		LyricDbHelper.COLUMN_TITLE + ", " + LyricDbHelper.COLUMN_CONTENT + ") VALUES ('delete', ?, ?, ?)",
+		new Object[]{id, title, content});
+	}
+	
+	/**
+	* Unindexes the rows among those matching selection whose body is not stored
+	* inline; call in the transaction that deletes them.
+	*/
+	static void unindexOutOfLine(SQLiteDatabase db, String selection, String[] selectionArgs) {
+		Cursor cursor = db.query(LyricDbHelper.TABLE_LYRICS,
+		LyricDbHelper.storedContentColumns(LyricDbHelper.COLUMN_TITLE),
+		"(" + selection + ") AND NOT (" + LyricDbHelper.INLINE_CONTENT + ")",
+		selectionArgs, null, null, null);
+		try {
+			while (cursor.moveToNext()) {
+				unindexRow(db, cursor.getLong(0), cursor.getString(4), LyricDbHelper.readStoredContent(db, cursor));
+			}
+			} finally {
+			cursor.close();
+		}
+	}
+	
+	/**
+	* Indexes every existing lyric in id order, a bounded batch per statement, so
+	* upgrading a large library never materialises the whole table at once.
+	* Reads the plain content column only, so it runs before any body is compressed.
+	*/
+	public static void rebuild(SQLiteDatabase db) {
+		db.execSQL("DELETE FROM " + TABLE_LYRICS_FTS);
+		
+		long lastId = 0;
+		while (true) {
+			long batchEnd = -1;
+			Cursor cursor = db.rawQuery(
+			"SELECT MAX(" + LyricDbHelper.COLUMN_ID + ") FROM (SELECT " + LyricDbHelper.COLUMN_ID +
+			" FROM " + LyricDbHelper.TABLE_LYRICS + " WHERE " + LyricDbHelper.COLUMN_ID + " > ?" +
+			" ORDER BY " + LyricDbHelper.COLUMN_ID + " LIMIT " + REBUILD_BATCH_SIZE + ")",
+			new String[]{String.valueOf(lastId)});
+			try {
+				if (cursor.moveToFirst() && !cursor.isNull(0)) {
+					batchEnd = cursor.getLong(0);
+				}
+				} finally {
+				cursor.close();
+			}
+			if (batchEnd < 0) break;
+			
+			db.execSQL("INSERT INTO " + TABLE_LYRICS_FTS + "(docid, " +
+			LyricDbHelper.COLUMN_TITLE + ", " + LyricDbHelper.COLUMN_CONTENT + ")" +
+			" SELECT " + LyricDbHelper.COLUMN_ID + ", " + LyricDbHelper.COLUMN_TITLE + ", " + LyricDbHelper.COLUMN_CONTENT +
+			" FROM " + LyricDbHelper.TABLE_LYRICS +
+			" WHERE " + LyricDbHelper.COLUMN_ID + " > ? AND " + LyricDbHelper.COLUMN_ID + " <= ?",
+			new Object[]{lastId, batchEnd});
+			lastId = batchEnd;
+		}
+	}
+	
+	// snippet() reads the body from the lyrics table, where a compressed or
+	// chunked one is empty; those rows show their stored preview instead
+	static String sqlSnippets(String ids) {
+		String lyrics = LyricDbHelper.TABLE_LYRICS;
+		return "SELECT docid, " + lyrics + "." + LyricDbHelper.COLUMN_TITLE + ", snippet(" + TABLE_LYRICS_FTS + ", '" +
+		MATCH_START + "', '" + MATCH_END + "', '…', -1, " + SNIPPET_TOKENS + "), " +
+		"NOT (" + LyricDbHelper.INLINE_CONTENT + "), " + lyrics + "." + LyricDbHelper.COLUMN_PREVIEW +
+		" FROM " + TABLE_LYRICS_FTS +
+		" JOIN " + lyrics + " ON " + lyrics + "." + LyricDbHelper.COLUMN_ID + " = docid" +
+		" WHERE " + TABLE_LYRICS_FTS + " MATCH ? AND docid IN (" + ids + ")";
+	}
+	
+	/**
+	* Ranked full-text search. Matching rows are scored from their matchinfo()
+	* statistics without reading any content; snippets are only built for the
+	* requested page.
+	*/
+	public static List<Result> search(SQLiteDatabase db, String query, int limit, int offset) {
+		String match = toMatchExpression(query);
+		if (match == null || limit <= 0) {
+			return new ArrayList<>();
+		}
+		offset = Math.max(0, offset);
+		int wanted = offset + limit;
+		
+		// Keep only the best (offset + limit) candidates; the head is the weakest one
+		PriorityQueue<double[]> best = new PriorityQueue<>(wanted, (a, b) -> {
+			int byScore = Double.compare(a[1], b[1]);
+			return byScore != 0 ? byScore : Double.compare(b[0], a[0]);
+		});
+		
+		Cursor cursor = db.rawQuery(SQL_SEARCH, new String[]{match});
+		try {
+			while (cursor.moveToNext()) {
+				double score = score(cursor.getBlob(1));
+				best.add(new double[]{cursor.getLong(0), score});
+				if (best.size() > wanted) {
+					best.poll();
+				}
+			}
+			} finally {
+			cursor.close();
+		}
+		
+		List<double[]> ranked = new ArrayList<>(best);
+		Collections.sort(ranked, (a, b) -> {
+			int byScore = Double.compare(b[1], a[1]);
+			return byScore != 0 ? byScore : Double.compare(a[0], b[0]);
+		});
+		if (offset >= ranked.size()) {
+			return new ArrayList<>();
+		}
+		List<double[]> page = ranked.subList(offset, Math.min(ranked.size(), wanted));
+		
+		StringBuilder ids = new StringBuilder();
+		for (double[] entry : page) {
+			if (ids.length() > 0) ids.append(',');
+			ids.append((long) entry[0]);
+		}
+		
+		Map<Long, Result> byId = new HashMap<>();
+		cursor = db.rawQuery(sqlSnippets(ids.toString()), new String[]{match});
+		try {
+			while (cursor.moveToNext()) {
+				long id = cursor.getLong(0);
+				if (cursor.getInt(3) != 0) {
+					byId.put(id, new Result((int) id, cursor.getString(1), 0, cursor.getString(4), new int[0]));
+					} else {
+					byId.put(id, buildResult((int) id, cursor.getString(1), cursor.getString(2)));
+				}
+			}
+			} finally {
+			cursor.close();
+		}
+		
+		List<Result> results = new ArrayList<>(page.size());
+		for (double[] entry : page) {
+			Result result = byId.get((long) entry[0]);
+			if (result != null) {
+				results.add(new Result(result.id, result.title, entry[1], result.snippet, result.matchOffsets));
+			}
+		}
+		return results;
+	}
+	
+	/**
+	* Turns free text into a safe FTS expression: every word becomes a prefix term,
+	* punctuation is dropped and words are lowercased so AND/OR/NOT match literally.
+	*/
+	static String toMatchExpression(String query) {
+		if (query == null) return null;
+		
+		StringBuilder match = new StringBuilder();
+		StringBuilder term = new StringBuilder();
+		for (int i = 0; i <= query.length(); i++) {
+			char c = i < query.length() ? query.charAt(i) : ' ';
+			if (Character.isLetterOrDigit(c)) {
+				term.append(Character.toLowerCase(c));
+				} else if (term.length() > 0) {
+				if (match.length() > 0) match.append(' ');
+				match.append(term).append('*');
+				term.setLength(0);
+			}
+		}
+		return match.length() > 0 ? match.toString() : null;
+	}
+	
+	// matchinfo 'pcx': phrase count, column count, then 3 ints per phrase/column pair
+	private static double score(byte[] matchinfo) {
+		ByteBuffer buffer = ByteBuffer.wrap(matchinfo).order(ByteOrder.nativeOrder());
+		int phrases = buffer.getInt(0);
+		int columns = buffer.getInt(4);
+		double score = 0;
+		for (int p = 0; p < phrases; p++) {
+			for (int c = 0; c < columns; c++) {
+				int base = 8 + 12 * (p * columns + c);
+				int hitsThisRow = buffer.getInt(base);
+				int hitsAllRows = buffer.getInt(base + 4);
+				if (hitsThisRow > 0 && hitsAllRows > 0) {
+					double weight = c == 0 ? TITLE_WEIGHT : CONTENT_WEIGHT;
+					score += weight * hitsThisRow / hitsAllRows;
+				}
+			}
+		}
+		return score;
+	}
+	
+	private static Result buildResult(int id, String title, String rawSnippet) {
+		if (rawSnippet == null) rawSnippet = "";
+		StringBuilder snippet = new StringBuilder(rawSnippet.length());
+		List<Integer> offsets = new ArrayList<>();
+		for (int i = 0; i < rawSnippet.length(); i++) {
+			char c = rawSnippet.charAt(i);
+			if (c == MATCH_START || c == MATCH_END) {
+				offsets.add(snippet.length());
+				} else {
+				snippet.append(c);
+			}
+		}
+		int[] matchOffsets = new int[offsets.size() & ~1];
+		for (int i = 0; i < matchOffsets.length; i++) {
+			matchOffsets[i] = offsets.get(i);
+		}
+		return new Result(id, title, 0, snippet.toString(), matchOffsets);
+	}
+}
\ No newline at end of file
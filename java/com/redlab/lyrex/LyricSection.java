@@ -0,0 +1,220 @@
+package com.redlab.lyrex;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+* One section of a lyric: a header line such as "[Chorus]" or "Verse 2:" and
+* the lines after it, up to the next header.
+*
+* findHeaders keeps only the SectionMarkers matches that head a line, so a
+* section name used as an ordinary word ("a hook in my heart") is neither a
+* section nor highlighted. parse builds the list from those markers, so the
+* content is walked once more to count lines and is never tokenised again. A marker
+* heads a section only when it opens its line, after nothing but spaces and
+* brackets, and is either bracketed or followed by nothing but a number or
+* punctuation. A count such as "x2" or "(2x)" on the header line is the
+* section's repeat. Text before the first header, if any, is a section of
+* KIND_UNMARKED with an empty label.
+*/
+public final class LyricSection {
+	static final int KIND_UNMARKED = -1;
+	
+	private final int kind;
+	private final String label;
+	private final int repeat;
+	private final int startOffset;
+	private final int endOffset;
+	private final int startLine;
+	private final int endLine;
+	
+	private LyricSection(int kind, String label, int repeat, int startOffset, int endOffset, int startLine,
+	int endLine) {
+		this.kind = kind;
+		this.label = label;
+		this.repeat = repeat;
+		this.startOffset = startOffset;
+		this.endOffset = endOffset;
+		this.startLine = startLine;
+		this.endLine = endLine;
+	}
+	
+	// One of the SectionMarkers.KIND_ constants, or KIND_UNMARKED
+	public int getKind() { return kind; }
+	// Header line without its brackets or colon, e.g. "Verse 2"
+	public String getLabel() { return label; }
+	// Times the section is sung, 1 unless the header gives a count
+	public int getRepeat() { return repeat; }
+	// Offsets and line numbers are start-inclusive and end-exclusive
+	public int getStartOffset() { return startOffset; }
+	public int getEndOffset() { return endOffset; }
+	public int getStartLine() { return startLine; }
+	public int getEndLine() { return endLine; }
+	
+	/**
+	* Section type name as stored in the lyrics table, or null for unmarked text.
+	*/
+	public String getTypeName() {
+		return (kind == KIND_UNMARKED) ? null : SectionMarkers.keyword(kind);
+	}
+	
+	/**
+	* @param spans markers in content, as returned by findHeaders
+	* @return the sections in order, covering the whole content; unmodifiable
+	*/
+	static List<LyricSection> parse(String content, int[] spans) {
+		if (content == null || content.isEmpty()) return Collections.emptyList();
+		
+		List<LyricSection> sections = new ArrayList<>();
+		int line = 0;
+		// Where line counting has reached, always at the start of line
+		int scanned = 0;
+		int lastHeaderLine = -1;
+		int sectionKind = KIND_UNMARKED;
+		String sectionLabel = "";
+		int sectionRepeat = 1;
+		int sectionStart = 0;
+		int sectionLine = 0;
+		for (int i = 0; i < spans.length; i += 3) {
+			int lineStart = lineStart(content, spans[i]);
+			for (; scanned < lineStart; scanned++) {
+				if (content.charAt(scanned) == '\n') line++;
+			}
+			if (line == lastHeaderLine) continue;
+			
+			int lineEnd = lineEnd(content, spans[i + 1]);
+			if (!isHeader(content, lineStart, spans[i], spans[i + 1], lineEnd)) continue;
+			
+			if (lineStart > sectionStart && (sectionKind != KIND_UNMARKED || !isBlank(content, sectionStart, lineStart))) {
+				sections.add(new LyricSection(sectionKind, sectionLabel, sectionRepeat, sectionStart, lineStart,
+				sectionLine, line));
+			}
+			lastHeaderLine = line;
+			sectionKind = spans[i + 2];
+			sectionLabel = label(content, lineStart, lineEnd);
+			sectionRepeat = repeat(content, spans[i + 1], lineEnd);
+			sectionStart = lineStart;
+			sectionLine = line;
+		}
+		for (; scanned < content.length(); scanned++) {
+			if (content.charAt(scanned) == '\n') line++;
+		}
+		if (sectionKind != KIND_UNMARKED || !isBlank(content, sectionStart, content.length())) {
+			sections.add(new LyricSection(sectionKind, sectionLabel, sectionRepeat, sectionStart, content.length(),
+			sectionLine, line + 1));
+		}
+		return Collections.unmodifiableList(sections);
+	}
+	
+	// Offset where the line holding offset starts
+	static int lineStart(CharSequence text, int offset) {
+		while (offset > 0 && text.charAt(offset - 1) != '\n') {
+			offset--;
+		}
+		return offset;
+	}
+	
+	// Offset of the line break ending the line holding offset, or the text's length
+	static int lineEnd(CharSequence text, int offset) {
+		while (offset < text.length() && text.charAt(offset) != '\n') {
+			offset++;
+		}
+		return offset;
+	}
+	
+	/**
+	* The section markers within from..to of text that head their line, at most
+	* one per line, as {start, end, kind} triples.
+	*/
+	static int[] findHeaders(CharSequence text, int from, int to) {
+		int[] spans = SectionMarkers.find(text, from, to);
+		int count = 0;
+		int lastLineStart = -1;
+		for (int i = 0; i < spans.length; i += 3) {
+			int lineStart = lineStart(text, spans[i]);
+			if (lineStart == lastLineStart) continue;
+			if (!isHeader(text, lineStart, spans[i], spans[i + 1], lineEnd(text, spans[i + 1]))) continue;
+			
+			lastLineStart = lineStart;
+			System.arraycopy(spans, i, spans, count * 3, 3);
+			count++;
+		}
+		return (count * 3 == spans.length) ? spans : Arrays.copyOf(spans, count * 3);
+	}
+	
+	static int[] findHeaders(CharSequence text) {
+		if (text == null) return new int[0];
+		return findHeaders(text, 0, text.length());
+	}
+	
+	// Bracketed, ending in a colon or alone on its line, bar a count such as "2" or "x2"
+	private static boolean isHeader(CharSequence content, int lineStart, int start, int end, int lineEnd) {
+		boolean bracketed = false;
+		for (int i = lineStart; i < start; i++) {
+			char c = content.charAt(i);
+			if (c == '[' || c == '(') {
+				bracketed = true;
+				} else if (!Character.isWhitespace(c)) {
+				return false;
+			}
+		}
+		if (bracketed) return true;
+		
+		// "Chorus", "Verse 2:", "Chorus x2" but not "Chorus of voices"
+		for (int i = end; i < lineEnd; i++) {
+			char c = content.charAt(i);
+			if (Character.isLetter(c) && !(c == 'x' || c == 'X')) return false;
+		}
+		return true;
+	}
+	
+	// A number written with x or × on either side, as in "x2", "2x" or "×3"
+	private static int repeat(String content, int from, int to) {
+		for (int i = from; i < to; i++) {
+			if (!Character.isDigit(content.charAt(i))) continue;
+			
+			int digitsEnd = i;
+			while (digitsEnd < to && Character.isDigit(content.charAt(digitsEnd))) {
+				digitsEnd++;
+			}
+			if (isTimes(content, i - 1, from, to) || isTimes(content, digitsEnd, from, to)) {
+				try {
+					return Math.max(1, Integer.parseInt(content.substring(i, digitsEnd)));
+					} catch (NumberFormatException e) {
+					return 1;
+				}
+			}
+			i = digitsEnd;
+		}
+		return 1;
+	}
+	
+	private static boolean isTimes(String content, int index, int from, int to) {
+		if (index < from || index >= to) return false;
+		char c = content.charAt(index);
+		return c == 'x' || c == 'X' || c == '×';
+	}
+	
+	private static String label(String content, int lineStart, int lineEnd) {
+		int start = lineStart;
+		int end = lineEnd;
+		while (start < end && (Character.isWhitespace(content.charAt(start)) || content.charAt(start) == '['
+		|| content.charAt(start) == '(')) {
+			start++;
+		}
+		while (end > start && (Character.isWhitespace(content.charAt(end - 1)) || content.charAt(end - 1) == ']'
+		|| content.charAt(end - 1) == ')' || content.charAt(end - 1) == ':')) {
+			end--;
+		}
+		return content.substring(start, end);
+	}
+	
+	private static boolean isBlank(String content, int start, int end) {
+		for (int i = start; i < end; i++) {
+			if (!Character.isWhitespace(content.charAt(i))) return false;
+		}
+		return true;
+	}
+}
\ No newline at end of file
@@ -0,0 +1,35 @@
+package com.redlab.lyrex;
+
+/**
+* Lightweight row for list screens: everything a list item shows, without the
+* lyric body. Use LyricDbHelper.getLyricById when the full content is needed.
+*/
+public class LyricSummary {
+	private final int id;
+	private final String title;
+	private final String preview;
+	private final long timestamp;
+	private final String sectionType;
+	private final int wordCount;
+	private final int lineCount;
+	
+	public LyricSummary(int id, String title, String preview, long timestamp, String sectionType,
+	int wordCount, int lineCount) {
+		this.id = id;
+		this.title = title;
+		this.preview = preview;
+		this.timestamp = timestamp;
+		this.sectionType = (sectionType != null) ? sectionType : "verse";
+		this.wordCount = wordCount;
+		this.lineCount = lineCount;
+	}
+	
+	// Getters
+	public int getId() { return id; }
+	public String getTitle() { return title; }
+	public String getPreview() { return preview; }
+	public long getTimestamp() { return timestamp; }
+	public String getSectionType() { return sectionType; }
+	public int getWordCount() { return wordCount; }
+	public int getLineCount() { return lineCount; }
+}
\ No newline at end of file
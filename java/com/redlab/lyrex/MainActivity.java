@@ -27,6 +27,7 @@ import androidx.annotation.Nullable;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 import com.google.android.material.floatingactionbutton.FloatingActionButton;
+import com.google.android.material.snackbar.Snackbar;
 import com.google.zxing.BarcodeFormat;
 import com.google.zxing.MultiFormatWriter;
 import com.google.zxing.common.BitMatrix;
@@ -96,8 +97,12 @@ class OpenMultipleDocumentsContract extends androidx.activity.result.contract.Ac
 public class MainActivity extends AppCompatActivity {
 	private static final int QR_SCAN_REQUEST_CODE = 1001;
 	private LyricAdapter adapter;
-	private LyricDbHelper dbHelper;
-	private SetlistDbHelper setlistDbHelper;
+	private LyricRepository repository;
+	// Lyrics table generation the list was last brought up to date with
+	private long lyricsGeneration;
+	private final ChangeTracker.Observer lyricsObserver = table -> {
+		if (table.equals(LyricDbHelper.TABLE_LYRICS)) refreshLyrics();
+	};
 	private boolean sortByTitle = true;
 	private boolean isFabMenuOpen = false;
 	private View fabMenu;
@@ -110,8 +115,7 @@ public class MainActivity extends AppCompatActivity {
 		super.onCreate(savedInstanceState);
 		setContentView(R.layout.activity_main);
 		
-		dbHelper = new LyricDbHelper(this);
-		setlistDbHelper = new SetlistDbHelper(this);
+		repository = LyricRepository.getInstance(this);
 		
 		// Register custom contract
 		pickBackupLauncher = registerForActivityResult(
@@ -140,7 +144,8 @@ public class MainActivity extends AppCompatActivity {
 		RecyclerView recyclerView = findViewById(R.id.recycler_view);
 		recyclerView.setLayoutManager(new LinearLayoutManager(this));
 		
-		adapter = new LyricAdapter(this, new ArrayList<>(), lyric -> showLyricOptions(lyric));
+		adapter = new LyricAdapter(this, lyric -> showLyricOptions(lyric));
+		adapter.setOnListLoadedListener(itemCount -> showEmptyState(itemCount == 0));
 		recyclerView.setAdapter(adapter);
 	}
 	
@@ -178,12 +183,13 @@ public class MainActivity extends AppCompatActivity {
 		});
 		
 		fabMenu.findViewById(R.id.menu_create_setlist).setOnClickListener(v -> {
-			List<Lyric> allLyrics = dbHelper.getAllLyrics("title");
-			if (allLyrics.isEmpty()) {
-				Toast.makeText(this, "Create some lyrics first!", Toast.LENGTH_SHORT).show();
-				} else {
-				startActivity(new Intent(this, SetlistActivity.class));
-			}
+			repository.read(this, (lyrics, setlists) -> lyrics.hasAnyLyrics(), hasLyrics -> {
+				if (!hasLyrics) {
+					Toast.makeText(this, "Create some lyrics first!", Toast.LENGTH_SHORT).show();
+					} else {
+					startActivity(new Intent(this, SetlistActivity.class));
+				}
+			});
 			hideFabMenu();
 		});
 		
@@ -212,9 +218,6 @@ public class MainActivity extends AppCompatActivity {
 		});
 		
 		fabMenu.findViewById(R.id.menu_restore_backup).setOnClickListener(v -> {
-			if (dbHelper != null) {
-				dbHelper.close();
-			}
 			restoreBackup();
 			hideFabMenu();
 		});
@@ -304,29 +307,23 @@ public class MainActivity extends AppCompatActivity {
 				}
 				
 				String setName = lines[0].trim(); // First line is the setlist name
-				List<Lyric> foundLyrics = new ArrayList<>();
-				List<Lyric> allLyrics = dbHelper.getAllLyrics("title");
+				List<String> titles = new ArrayList<>();
 				
 				// Start from index 1 to skip the setlist name
 				for (int i = 1; i < lines.length; i++) {
 					String searchTitle = lines[i].trim();
 					if (searchTitle.isEmpty()) continue;
-					
-					for (Lyric lyric : allLyrics) {
-						if (lyric.getTitle() != null && lyric.getTitle().equalsIgnoreCase(searchTitle)) {
-							foundLyrics.add(lyric);
-							break;
-						}
-					}
+					titles.add(searchTitle);
 				}
 				
-				if (!foundLyrics.isEmpty()) {
-					// Use the actual setlist name from the QR code
-					createSetlistFromTitles(setName, foundLyrics);
-					Toast.makeText(this, "Imported \"" + setName + "\" with " + foundLyrics.size() + " songs", Toast.LENGTH_SHORT).show();
-					} else {
-					Toast.makeText(this, "No matching lyrics found locally", Toast.LENGTH_SHORT).show();
-				}
+				// Use the actual setlist name from the QR code
+				repository.write(this, (lyrics, setlists) -> setlists.createSetlistFromTitles(setName, titles), found -> {
+					if (found > 0) {
+						Toast.makeText(this, "Imported \"" + setName + "\" with " + found + " songs", Toast.LENGTH_SHORT).show();
+						} else {
+						Toast.makeText(this, "No matching lyrics found locally", Toast.LENGTH_SHORT).show();
+					}
+				}, e -> Toast.makeText(this, "Failed to import setlist: " + e.getMessage(), Toast.LENGTH_LONG).show());
 			}
 			} catch (Exception e) {
 			Toast.makeText(this, "Failed to import setlist: " + e.getMessage(), Toast.LENGTH_LONG).show();
@@ -340,8 +337,8 @@ public class MainActivity extends AppCompatActivity {
 		String content = lyricsContent;
 		
 		Lyric newLyric = new Lyric(title, content);
-		dbHelper.insertLyric(newLyric); // ← CORRECT METHOD NAME
-		loadLyrics(); // Refresh the list
+		// The list picks the new row up through the change tracker
+		repository.write(this, (lyrics, setlists) -> lyrics.insertLyric(newLyric), null);
 	}
 	
 	private String extractTitleFromLyrics(String lyrics) {
@@ -352,31 +349,18 @@ public class MainActivity extends AppCompatActivity {
 		return lyrics.length() > 20 ? lyrics.substring(0, 20) + "..." : lyrics;
 	}
 	
-	private void createSetlistFromTitles(String setName, List<Lyric> lyrics) {
-		List<Integer> lyricIds = new ArrayList<>();
-		for (Lyric lyric : lyrics) {
-			lyricIds.add(lyric.getId());
-		}
-		
-		// Use the existing method that takes name and lyric IDs directly
-		setlistDbHelper.createSetlist(setName, lyricIds);
-	}
-	
 	private void restoreBackup() {
 		new AlertDialog.Builder(this)
 		.setTitle("Import Backup")
 		.setMessage("Select backup source to import from")
 		.setNegativeButton("Choose File", (d, w) ->
 		pickBackupLauncher.launch(new String[]{"text/plain", "*/*"}))
-		.setNeutralButton("Cancel", (d, w) -> {
-			dbHelper = new LyricDbHelper(this);
-			loadLyrics();
-		})
+		.setNeutralButton("Cancel", null)
 		.show();
 	}
 	
 	private void autoDetectAndRestore() {
-		new Thread(() -> {
+		repository.runInBackground(this, () -> {
 			List<File> backupFiles = new ArrayList<>();
 			
 			// Check both folders for backup files
@@ -388,35 +372,34 @@ public class MainActivity extends AppCompatActivity {
 				addBackupFilesFromFolder(backupFiles, lyricFolder);
 				addBackupFilesFromFolder(backupFiles, backupFolder);
 			}
-			
-			runOnUiThread(() -> {
-				if (backupFiles.isEmpty()) {
-					Toast.makeText(this, "No backup found in app folders, please choose manually.", Toast.LENGTH_SHORT).show();
-					pickBackupLauncher.launch(new String[]{"text/plain", "*/*"});
-					} else {
-					// Convert Files to URIs using FileProvider
-					List<Uri> uris = new ArrayList<>();
-					for (File file : backupFiles) {
-						try {
-							Uri uri = FileProvider.getUriForFile(
-							this,
-							"com.redlab.lyrex.fileprovider",
-							file
-							);
-							uris.add(uri);
-							} catch (Exception e) {
-							Toast.makeText(this, "Error accessing: " + file.getName(), Toast.LENGTH_SHORT).show();
-						}
-					}
-					
-					if (!uris.isEmpty()) {
-						processBackupFiles(uris);
-						} else {
-						pickBackupLauncher.launch(new String[]{"text/plain", "*/*"});
+			return backupFiles;
+		}, backupFiles -> {
+			if (backupFiles.isEmpty()) {
+				Toast.makeText(this, "No backup found in app folders, please choose manually.", Toast.LENGTH_SHORT).show();
+				pickBackupLauncher.launch(new String[]{"text/plain", "*/*"});
+				} else {
+				// Convert Files to URIs using FileProvider
+				List<Uri> uris = new ArrayList<>();
+				for (File file : backupFiles) {
+					try {
+						Uri uri = FileProvider.getUriForFile(
+						this,
+						"com.redlab.lyrex.fileprovider",
+						file
+						);
+						uris.add(uri);
+						} catch (Exception e) {
+						Toast.makeText(this, "Error accessing: " + file.getName(), Toast.LENGTH_SHORT).show();
 					}
 				}
-			});
-		}).start();
+				
+				if (!uris.isEmpty()) {
+					processBackupFiles(uris);
+					} else {
+					pickBackupLauncher.launch(new String[]{"text/plain", "*/*"});
+				}
+			}
+		}, null);
 	}
 	
 	private void addBackupFilesFromFolder(List<File> backupFiles, File folder) {
@@ -476,7 +459,7 @@ public class MainActivity extends AppCompatActivity {
 	
 	// Now this method accepts a list of URIs
 	private void processBackupFiles(List<Uri> uris) {
-		new Thread(() -> {
+		repository.runInBackground(this, () -> {
 			List<Lyric> allParsedLyrics = new ArrayList<>();
 			
 			for (Uri uri : uris) {
@@ -485,22 +468,21 @@ public class MainActivity extends AppCompatActivity {
 					allParsedLyrics.addAll(parsedLyrics);
 				}
 			}
-			
+			return allParsedLyrics;
+		}, allParsedLyrics -> {
 			if (allParsedLyrics.isEmpty()) {
-				runOnUiThread(() -> Toast.makeText(this, "Could not parse any lyrics from the selected files.", Toast.LENGTH_LONG).show());
+				Toast.makeText(this, "Could not parse any lyrics from the selected files.", Toast.LENGTH_LONG).show();
 				return;
 			}
 			
-			runOnUiThread(() -> {
-				new AlertDialog.Builder(this)
-				.setTitle("Import Lyrics from Backup")
-				.setMessage("Found " + allParsedLyrics.size() + " total lyrics in the selected files.")
-				.setPositiveButton("Import All Songs", (dialog, which) -> restoreLyricsToDb(allParsedLyrics))
-				.setNegativeButton("Select Specific Songs", (dialog, which) -> showLyricSelectionDialog(allParsedLyrics))
-				.setNeutralButton("Cancel", null)
-				.show();
-			});
-		}).start();
+			new AlertDialog.Builder(this)
+			.setTitle("Import Lyrics from Backup")
+			.setMessage("Found " + allParsedLyrics.size() + " total lyrics in the selected files.")
+			.setPositiveButton("Import All Songs", (dialog, which) -> restoreLyricsToDb(allParsedLyrics))
+			.setNegativeButton("Select Specific Songs", (dialog, which) -> showLyricSelectionDialog(allParsedLyrics))
+			.setNeutralButton("Cancel", null)
+			.show();
+		}, null);
 	}
 	
 	private List<Lyric> parseBackupFileInMemory(Uri uri) {
@@ -519,15 +501,13 @@ public class MainActivity extends AppCompatActivity {
 			
 			String backupContent = sb.toString();
 			
-			dbHelper = new LyricDbHelper(this); // Temporary helper to access parsing methods
-			if (dbHelper.isNewFormatBackup(backupContent)) {
-				parsedLyrics = dbHelper.parseNewFormat(backupContent);
-				} else if (dbHelper.isOldFormatBackup(backupContent)) {
-				parsedLyrics = dbHelper.parseOldFormat(backupContent);
+			if (LyricDbHelper.isNewFormatBackup(backupContent)) {
+				parsedLyrics = LyricDbHelper.parseNewFormat(backupContent);
+				} else if (LyricDbHelper.isOldFormatBackup(backupContent)) {
+				parsedLyrics = LyricDbHelper.parseOldFormat(backupContent);
 				} else {
-				parsedLyrics = dbHelper.parseGenericFormat(backupContent);
+				parsedLyrics = LyricDbHelper.parseGenericFormat(backupContent);
 			}
-			dbHelper.close(); // Close the temporary helper
 			return parsedLyrics;
 			
 			} catch (Exception e) {
@@ -567,31 +547,17 @@ public class MainActivity extends AppCompatActivity {
 		.show();
 	}
 	
-	// In MainActivity.java, modify the restoreLyricsToDb method to handle the list of lyrics
 	private void restoreLyricsToDb(List<Lyric> lyricsToRestore) {
-		new Thread(() -> {
-			LyricDbHelper.RestoreResult result = null;
-			try {
-				dbHelper = new LyricDbHelper(this); // Get a fresh connection
-				result = dbHelper.addParsedLyrics(dbHelper.getWritableDatabase(), lyricsToRestore);
-				} catch (Exception e) {
-				e.printStackTrace();
-				// Handle error on UI thread
-				} finally {
-				if (dbHelper != null) dbHelper.close();
-				dbHelper = new LyricDbHelper(this); // Re-initialize
+		repository.write(this,
+		(lyrics, setlists) -> lyrics.addParsedLyrics(lyrics.getWritableDatabase(), lyricsToRestore),
+		result -> {
+			if (result.parsed) {
+				Toast.makeText(this, "Imported " + result.addedCount + " new lyrics.", Toast.LENGTH_LONG).show();
+				} else {
+				Toast.makeText(this, "Import failed: " + result.errorMessage, Toast.LENGTH_LONG).show();
 			}
-			
-			final LyricDbHelper.RestoreResult finalResult = result;
-			runOnUiThread(() -> {
-				if (finalResult != null && finalResult.parsed) {
-					Toast.makeText(this, "Imported " + finalResult.addedCount + " new lyrics.", Toast.LENGTH_LONG).show();
-					loadLyrics();
-					} else {
-					Toast.makeText(this, "Import failed: " + finalResult.errorMessage, Toast.LENGTH_LONG).show();
-				}
-			});
-		}).start();
+		},
+		e -> Toast.makeText(this, "Import failed: " + e.getMessage(), Toast.LENGTH_LONG).show());
 	}
 	
 	private String getFileName(Uri uri) {
@@ -649,18 +615,37 @@ public class MainActivity extends AppCompatActivity {
 	}
 	
 	private void openAudioPlayer() {
-		List<Lyric> lyrics = dbHelper.getAllLyrics("title");
-		if (lyrics.isEmpty()) {
-			Toast.makeText(this, "Create some lyrics to practice with!", Toast.LENGTH_SHORT).show();
-			return;
-		}
-		startActivity(new Intent(this, AudioPlayerActivity.class));
+		repository.read(this, (lyrics, setlists) -> lyrics.hasAnyLyrics(), hasLyrics -> {
+			if (!hasLyrics) {
+				Toast.makeText(this, "Create some lyrics to practice with!", Toast.LENGTH_SHORT).show();
+				return;
+			}
+			startActivity(new Intent(this, AudioPlayerActivity.class));
+		});
 	}
 	
+	// The empty state is updated once the first page arrives
 	private void loadLyrics() {
-		List<Lyric> lyrics = dbHelper.getAllLyrics(sortByTitle ? "title" : "date");
-		adapter.updateData(lyrics);
-		showEmptyState(lyrics.isEmpty());
+		lyricsGeneration = repository.getChangeTracker().getGeneration(LyricDbHelper.TABLE_LYRICS);
+		adapter.setPager(new LyricPager(repository, this, sortByTitle ? "title" : "date"));
+	}
+	
+	/**
+	* Brings the list up to date with writes made since it was last loaded: nothing
+	* when nothing changed, the changed rows alone when they stay in place, and a
+	* reload otherwise.
+	*/
+	private void refreshLyrics() {
+		ChangeTracker.Changes changes = repository.getChangeTracker()
+		.changesSince(LyricDbHelper.TABLE_LYRICS, lyricsGeneration);
+		if (changes.isEmpty()) return;
+		
+		if (changes.isEverything()) {
+			loadLyrics();
+			return;
+		}
+		lyricsGeneration = changes.generation;
+		adapter.applyChanges(changes.getIds(), this::loadLyrics);
 	}
 	
 	private void showEmptyState(boolean show) {
@@ -668,7 +653,7 @@ public class MainActivity extends AppCompatActivity {
 		tvEmptyState.setVisibility(show ? View.VISIBLE : View.GONE);
 	}
 	
-	private void showLyricOptions(Lyric lyric) {
+	private void showLyricOptions(LyricSummary lyric) {
 		CharSequence[] options = {"Edit", "Perform", "Add to Setlist", "Delete", "Share"};
 		
 		new AlertDialog.Builder(this)
@@ -677,7 +662,7 @@ public class MainActivity extends AppCompatActivity {
 		.show();
 	}
 	
-	private void handleLyricOptionSelection(int option, Lyric lyric) {
+	private void handleLyricOptionSelection(int option, LyricSummary lyric) {
 		switch (option) {
 			case 0: editLyric(lyric); break;
 			case 1: performLyric(lyric); break;
@@ -687,9 +672,15 @@ public class MainActivity extends AppCompatActivity {
 		}
 	}
 	
-	private void shareLyricsOption(Lyric lyric) {
-		// This will directly share the lyric passed to the method
-		shareLyricsAsQr(Collections.singletonList(lyric));
+	private void shareLyricsOption(LyricSummary summary) {
+		// The list only holds summaries, so fetch the full lyric for sharing
+		repository.read(this, (lyrics, setlists) -> lyrics.getLyricById(summary.getId()), lyric -> {
+			if (lyric == null) {
+				Toast.makeText(this, "Lyric not found", Toast.LENGTH_SHORT).show();
+				return;
+			}
+			shareLyricsAsQr(Collections.singletonList(lyric));
+		});
 	}
 	
 	private void shareLyricsAsQr(List<Lyric> lyrics) {
@@ -725,50 +716,41 @@ public class MainActivity extends AppCompatActivity {
 	}
 	
 	private void generateQr(String rawData, String plan) {
-		new Thread(() -> {
-			String payload = "";
+		repository.runInBackground(this, () -> {
+			// Use Deflater compression instead of Zstd
+			byte[] compressedBytes = compressWithDeflater(rawData);
+			String base64Payload = Base64.getEncoder().encodeToString(compressedBytes);
+			return plan + "|v1|" + base64Payload;
+		}, payload -> {
+			// Run QR code generation on the main thread
 			try {
-				// Use Deflater compression instead of Zstd
-				byte[] compressedBytes = compressWithDeflater(rawData);
-				String base64Payload = Base64.getEncoder().encodeToString(compressedBytes);
-				payload = plan + "|v1|" + base64Payload;
+				MultiFormatWriter writer = new MultiFormatWriter();
+				BitMatrix bitMatrix = writer.encode(
+				payload, BarcodeFormat.QR_CODE, 800, 800);
 				
-				// Run QR code generation on the main thread
-				final String finalPayload = payload;
-				runOnUiThread(() -> {
-					try {
-						MultiFormatWriter writer = new MultiFormatWriter();
-						BitMatrix bitMatrix = writer.encode(
-						finalPayload, BarcodeFormat.QR_CODE, 800, 800);
-						
-						int width = bitMatrix.getWidth();
-						int height = bitMatrix.getHeight();
-						Bitmap bmp = Bitmap.createBitmap(width, height, Bitmap.Config.RGB_565);
-						
-						for (int x = 0; x < width; x++) {
-							for (int y = 0; y < height; y++) {
-								bmp.setPixel(x, y, bitMatrix.get(x, y) ? Color.BLACK : Color.WHITE);
-							}
-						}
-						
-						ImageView imageView = new ImageView(MainActivity.this);
-						imageView.setImageBitmap(bmp);
-						new AlertDialog.Builder(MainActivity.this)
-						.setTitle("Share QR Code")
-						.setView(imageView)
-						.setPositiveButton("Share", (d, w) -> shareBitmap(bmp))
-						.setNegativeButton("Close", null)
-						.show();
-						
-						} catch (Exception e) {
-						Toast.makeText(MainActivity.this, "QR generation failed: " + e.getMessage(), Toast.LENGTH_SHORT).show();
+				int width = bitMatrix.getWidth();
+				int height = bitMatrix.getHeight();
+				Bitmap bmp = Bitmap.createBitmap(width, height, Bitmap.Config.RGB_565);
+				
+				for (int x = 0; x < width; x++) {
+					for (int y = 0; y < height; y++) {
+						bmp.setPixel(x, y, bitMatrix.get(x, y) ? Color.BLACK : Color.WHITE);
 					}
-				});
+				}
+				
+				ImageView imageView = new ImageView(MainActivity.this);
+				imageView.setImageBitmap(bmp);
+				new AlertDialog.Builder(MainActivity.this)
+				.setTitle("Share QR Code")
+				.setView(imageView)
+				.setPositiveButton("Share", (d, w) -> shareBitmap(bmp))
+				.setNegativeButton("Close", null)
+				.show();
 				
 				} catch (Exception e) {
-				runOnUiThread(() -> Toast.makeText(MainActivity.this, "Compression or encoding failed: " + e.getMessage(), Toast.LENGTH_SHORT).show());
+				Toast.makeText(MainActivity.this, "QR generation failed: " + e.getMessage(), Toast.LENGTH_SHORT).show();
 			}
-		}).start();
+		}, e -> Toast.makeText(MainActivity.this, "Compression or encoding failed: " + e.getMessage(), Toast.LENGTH_SHORT).show());
 	}
 	
 	// Replace Zstd compression with Deflater compression
@@ -844,13 +826,13 @@ public class MainActivity extends AppCompatActivity {
 		}
 	}
 	
-	private void editLyric(Lyric lyric) {
+	private void editLyric(LyricSummary lyric) {
 		Intent intent = new Intent(this, AddEditActivity.class);
 		intent.putExtra("lyric_id", lyric.getId());
 		startActivity(intent);
 	}
 	
-	private void performLyric(Lyric lyric) {
+	private void performLyric(LyricSummary lyric) {
 		Intent intent = new Intent(this, PerformanceModeActivity.class);
 		
 		ArrayList<Integer> lyricIds = new ArrayList<>();
@@ -862,31 +844,35 @@ public class MainActivity extends AppCompatActivity {
 		startActivity(intent);
 	}
 	
-	private void addToSetlist(Lyric lyric) {
-		List<Setlist> setlists = setlistDbHelper.getAllSetlists();
-		
-		if (setlists.isEmpty()) {
-			Toast.makeText(this, "Create a setlist first!", Toast.LENGTH_SHORT).show();
-			return;
-		}
-		
-		showSetlistSelectionDialog(lyric, setlists);
+	private void addToSetlist(LyricSummary lyric) {
+		repository.read(this, (lyrics, setlists) -> setlists.getAllSetlists(), setlists -> {
+			if (setlists.isEmpty()) {
+				Toast.makeText(this, "Create a setlist first!", Toast.LENGTH_SHORT).show();
+				return;
+			}
+			
+			showSetlistSelectionDialog(lyric, setlists);
+		});
 	}
 	
-	private void deleteLyric(Lyric lyric) {
+	private void deleteLyric(LyricSummary lyric) {
 		new AlertDialog.Builder(this)
 		.setTitle("Delete Lyric")
 		.setMessage("Are you sure you want to delete \"" + lyric.getTitle() + "\"?")
 		.setPositiveButton("Delete", (d, w) -> {
-			dbHelper.deleteLyric(lyric.getId());
-			loadLyrics();
-			Toast.makeText(this, "Lyric deleted", Toast.LENGTH_SHORT).show();
+			repository.write(this, (lyrics, setlists) -> {
+				lyrics.deleteLyric(lyric.getId());
+				return null;
+			}, done -> Snackbar.make(findViewById(android.R.id.content), "Lyric deleted", Snackbar.LENGTH_LONG)
+			.setAction("Undo", v -> repository.write(this, (lyrics, setlists) -> lyrics.restoreLyric(lyric.getId()),
+			restored -> {}))
+			.show());
 		})
 		.setNegativeButton("Cancel", null)
 		.show();
 	}
 	
-	private void showSetlistSelectionDialog(Lyric lyric, List<Setlist> setlists) {
+	private void showSetlistSelectionDialog(LyricSummary lyric, List<Setlist> setlists) {
 		CharSequence[] setlistNames = new CharSequence[setlists.size()];
 		for (int i = 0; i < setlists.size(); i++) {
 			setlistNames[i] = setlists.get(i).getName();
@@ -899,26 +885,42 @@ public class MainActivity extends AppCompatActivity {
 		.show();
 	}
 	
-	private void addLyricToSetlist(Lyric lyric, Setlist setlist) {
-		List<Integer> currentLyricIds = setlist.getLyricIds();
-		if (currentLyricIds.contains(lyric.getId())) {
-			Toast.makeText(this, "Song already in setlist", Toast.LENGTH_SHORT).show();
-			return;
-		}
-		currentLyricIds.add(lyric.getId());
-		boolean success = setlistDbHelper.updateSetlistLyrics(setlist.getId(), currentLyricIds);
-		Toast.makeText(this, success ? "Added to " + setlist.getName() : "Failed to add to setlist", Toast.LENGTH_SHORT).show();
+	private void addLyricToSetlist(LyricSummary lyric, Setlist setlist) {
+		// Check and insert on the writer so nothing can slip in between them
+		repository.write(this, (lyrics, setlists) -> {
+			if (setlists.containsLyric(setlist.getId(), lyric.getId())) {
+				return null;
+			}
+			return setlists.addLyricToSetlist(setlist.getId(), lyric.getId());
+		}, success -> {
+			if (success == null) {
+				Toast.makeText(this, "Song already in setlist", Toast.LENGTH_SHORT).show();
+				} else {
+				Toast.makeText(this, success ? "Added to " + setlist.getName() : "Failed to add to setlist", Toast.LENGTH_SHORT).show();
+			}
+		});
 	}
 	
 	@Override
 	protected void onResume() {
 		super.onResume();
-		loadLyrics();
+		// Catch up on anything written while another screen was in front
+		refreshLyrics();
+		repository.getChangeTracker().addObserver(lyricsObserver);
+	}
+	
+	@Override
+	protected void onPause() {
+		super.onPause();
+		repository.getChangeTracker().removeObserver(lyricsObserver);
 	}
 	
 	@Override
 	public boolean onCreateOptionsMenu(Menu menu) {
 		getMenuInflater().inflate(R.menu.main_menu, menu);
+		// Only debug builds record timings
+		menu.findItem(R.id.query_stats_menu).setVisible(QueryStats.isEnabled());
+		menu.findItem(R.id.compress_content_menu).setChecked(repository.isContentCompressionEnabled());
 		return true;
 	}
 	
@@ -932,14 +934,23 @@ public class MainActivity extends AppCompatActivity {
 			Toast.LENGTH_SHORT).show();
 			return true;
 		}
+		if (item.getItemId() == R.id.compress_content_menu) {
+			// Applies to lyrics saved from now on
+			boolean enabled = !item.isChecked();
+			item.setChecked(enabled);
+			repository.setContentCompressionEnabled(enabled);
+			return true;
+		}
+		if (item.getItemId() == R.id.query_stats_menu) {
+			startActivity(new Intent(this, QueryStatsActivity.class));
+			return true;
+		}
 		return super.onOptionsItemSelected(item);
 	}
 	
 	@Override
 	protected void onDestroy() {
 		super.onDestroy();
-		if (dbHelper != null) dbHelper.close();
-		if (setlistDbHelper != null) setlistDbHelper.close();
 		if (fabMenu != null && fabMenu.getParent() != null) {
 			((ViewGroup) fabMenu.getParent()).removeView(fabMenu);
 		}
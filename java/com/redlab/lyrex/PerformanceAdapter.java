@@ -1,35 +1,111 @@
 package com.redlab.lyrex;
 
 import android.content.Context;
-import android.text.SpannableStringBuilder;
+import android.text.TextPaint;
+import android.util.TypedValue;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.TextView;
 import androidx.annotation.NonNull;
+import androidx.appcompat.app.AppCompatActivity;
 import androidx.core.content.ContextCompat;
+import androidx.core.text.PrecomputedTextCompat;
+import androidx.core.widget.TextViewCompat;
 import androidx.recyclerview.widget.RecyclerView;
 import java.util.List;
+import java.util.concurrent.Future;
 
+/**
+* Songs of a performance, with each body transposed, highlighted and measured
+* off the main thread for the current key and font size. Binding only attaches
+* a ready result; until one is ready a row keeps showing its song as it was, so
+* pinch-zooming or changing key never measures a whole song on the main thread.
+*/
 public class PerformanceAdapter extends RecyclerView.Adapter<PerformanceAdapter.ViewHolder> {
+	// Rebinds the same holder when its text is ready, without a change animation
+	private static final Object PAYLOAD_LAYOUT = new Object();
+	
 	private final List<Lyric> lyrics;
 	private float fontSize;
+	// Semitones every song is moved by
+	private int transposition = 0;
 	private final Context context;
+	private final AppCompatActivity activity;
+	private final LyricRepository repository;
+	
+	// By position: highlighted bodies in the current key, kept across sizes, and text measured for layoutParams
+	private final CharSequence[] styledContents;
+	private final PrecomputedTextCompat[] layouts;
+	private final Future<?>[] pending;
+	// Bumped whenever size or key changes, so results of older work are dropped
+	private int layoutGeneration = 0;
+	// Paint and line-breaking settings of the content TextView, known once one is inflated
+	private PrecomputedTextCompat.Params baseParams;
+	private PrecomputedTextCompat.Params layoutParams;
 	
-	public PerformanceAdapter(Context context, List<Lyric> lyrics, float density) {
-		this.context = context;
+	public PerformanceAdapter(AppCompatActivity activity, List<Lyric> lyrics, float density) {
+		this.context = activity;
+		this.activity = activity;
 		this.lyrics = lyrics;
 		this.fontSize = 16f * density; // Scale initial font size by density
-		
-		// Pre-highlight all lyrics
-		for (Lyric lyric : lyrics) {
-			lyric.highlightSections();
-		}
+		repository = LyricRepository.getInstance(activity);
+		styledContents = new CharSequence[lyrics.size()];
+		layouts = new PrecomputedTextCompat[lyrics.size()];
+		pending = new Future<?>[lyrics.size()];
 	}
 	
 	public void setFontSize(float fontSize) {
+		if (fontSize == this.fontSize) return;
 		this.fontSize = fontSize;
-		notifyDataSetChanged(); // Refresh all items when font size changes
+		layoutParams = (baseParams != null) ? paramsFor(fontSize) : null;
+		invalidateLayouts(false);
+	}
+	
+	/**
+	* Moves every song by semitones. Each lyric's chords are parsed once and its
+	* renderings cached per key, so only the rows on screen are re-measured.
+	*/
+	public void setTransposition(int semitones) {
+		if (semitones == transposition) return;
+		transposition = semitones;
+		invalidateLayouts(true);
+	}
+	
+	public int getTransposition() {
+		return transposition;
+	}
+	
+	// Work for the old size or key is dropped; rows keep their old text until the new one is ready
+	private void invalidateLayouts(boolean keyChanged) {
+		layoutGeneration++;
+		for (int i = 0; i < layouts.length; i++) {
+			if (pending[i] != null) {
+				pending[i].cancel(false);
+				pending[i] = null;
+			}
+			layouts[i] = null;
+			if (keyChanged) {
+				styledContents[i] = null;
+			}
+		}
+		notifyItemRangeChanged(0, getItemCount(), PAYLOAD_LAYOUT);
+	}
+	
+	private static float contentSize(float fontSize) {
+		return Math.max(12f, fontSize);
+	}
+	
+	// Same paint as the content TextView once bind sets its size, or setPrecomputedText rejects the text
+	private PrecomputedTextCompat.Params paramsFor(float fontSize) {
+		TextPaint paint = new TextPaint(baseParams.getTextPaint());
+		paint.setTextSize(TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_SP, contentSize(fontSize),
+		context.getResources().getDisplayMetrics()));
+		return new PrecomputedTextCompat.Params.Builder(paint)
+		.setBreakStrategy(baseParams.getBreakStrategy())
+		.setHyphenationFrequency(baseParams.getHyphenationFrequency())
+		.setTextDirection(baseParams.getTextDirection())
+		.build();
 	}
 	
 	@NonNull
@@ -37,13 +113,83 @@ public class PerformanceAdapter extends RecyclerView.Adapter<PerformanceAdapter.
 	public ViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
 		View view = LayoutInflater.from(parent.getContext())
 		.inflate(R.layout.item_performance_lyric, parent, false);
-		return new ViewHolder(view);
+		ViewHolder holder = new ViewHolder(view);
+		if (baseParams == null) {
+			baseParams = TextViewCompat.getTextMetricsParams(holder.tvContent);
+			layoutParams = paramsFor(fontSize);
+		}
+		return holder;
 	}
 	
 	@Override
 	public void onBindViewHolder(@NonNull ViewHolder holder, int position) {
 		Lyric lyric = lyrics.get(position);
-		holder.bind(lyric, fontSize);
+		holder.bind(lyric, fontSize, layouts[position]);
+		precompute(position);
+		// Usually the next song on screen, whether scrolled to or auto-scrolled
+		precompute(position + 1);
+	}
+	
+	private void precompute(int position) {
+		if (position >= lyrics.size() || layouts[position] != null || pending[position] != null) return;
+		
+		Lyric lyric = lyrics.get(position);
+		CharSequence styled = styledContents[position];
+		PrecomputedTextCompat.Params params = layoutParams;
+		int semitones = transposition;
+		int generation = layoutGeneration;
+		pending[position] = repository.runInBackground(activity, () -> {
+			CharSequence text = styled;
+			ChordChart chart = null;
+			if (text == null) {
+				// Work on a copy, as tasks for an old size or key may still be running
+				Lyric copy = new Lyric(lyric);
+				Lyric shown = copy;
+				if (semitones != 0) {
+					chart = copy.getChordChart();
+					String rendering = chart.render(semitones);
+					if (!rendering.equals(copy.getContent())) {
+						shown = new Lyric("", rendering);
+					}
+				}
+				shown.highlightSections();
+				text = (shown.getStyledContent() != null) ? shown.getStyledContent()
+				: (shown.getContent() != null) ? shown.getContent() : "";
+			}
+			return new Measured(text, chart, PrecomputedTextCompat.create(text, params));
+		}, measured -> {
+			// Parsed once per lyric; later keys reuse the chart and its cached renderings
+			if (measured.chart != null) {
+				lyric.adoptChordChart(measured.chart);
+			}
+			if (generation != layoutGeneration) {
+				if (semitones == transposition && styledContents[position] == null) {
+					styledContents[position] = measured.styled;
+				}
+				return;
+			}
+			styledContents[position] = measured.styled;
+			pending[position] = null;
+			layouts[position] = measured.layout;
+			notifyItemChanged(position, PAYLOAD_LAYOUT);
+		}, error -> {
+			if (generation == layoutGeneration) {
+				pending[position] = null;
+			}
+		});
+	}
+	
+	private static class Measured {
+		final CharSequence styled;
+		// Parsed by this task, or null if it needed no chords
+		final ChordChart chart;
+		final PrecomputedTextCompat layout;
+		
+		Measured(CharSequence styled, ChordChart chart, PrecomputedTextCompat layout) {
+			this.styled = styled;
+			this.chart = chart;
+			this.layout = layout;
+		}
 	}
 	
 	private void applySectionBackground(View itemView, String sectionType) {
@@ -93,6 +239,8 @@ public class PerformanceAdapter extends RecyclerView.Adapter<PerformanceAdapter.
 		private final TextView tvTitle;
 		private final TextView tvContent;
 		private final TextView tvSectionBadge;
+		// Song whose body tvContent shows, possibly at an older size
+		private Lyric shownLyric;
 		
 		public ViewHolder(@NonNull View itemView) {
 			super(itemView);
@@ -101,28 +249,31 @@ public class PerformanceAdapter extends RecyclerView.Adapter<PerformanceAdapter.
 			tvSectionBadge = itemView.findViewById(R.id.tv_section_badge);
 		}
 		
-		public void bind(Lyric lyric, float fontSize) {
+		/**
+		* @param layout the body measured for fontSize, or null while it is not ready
+		*/
+		public void bind(Lyric lyric, float fontSize, PrecomputedTextCompat layout) {
 			if (lyric != null) {
 				// Always hide the section badge (if that's what you want)
 				tvSectionBadge.setVisibility(View.GONE);
 				
 				tvTitle.setText(lyric.getTitle());
 				
-				// Use highlighted content if available, otherwise use regular content
-				SpannableStringBuilder styledContent = lyric.getStyledContent();
-				if (styledContent != null) {
-					tvContent.setText(styledContent);
-					} else {
-					tvContent.setText(lyric.getContent());
-				}
-				
 				// Apply font size - ensure minimum readable size
 				float titleSize = Math.max(14f, fontSize + 4f);
-				float contentSize = Math.max(12f, fontSize);
-				
 				tvTitle.setTextSize(titleSize);
-				tvContent.setTextSize(contentSize);
 				tvSectionBadge.setTextSize(Math.max(10f, fontSize - 2f));
+				
+				if (layout != null) {
+					// Size first, so the view's paint matches the one the text was measured with
+					tvContent.setTextSize(TypedValue.COMPLEX_UNIT_PX, layout.getParams().getTextPaint().getTextSize());
+					TextViewCompat.setPrecomputedText(tvContent, layout);
+					shownLyric = lyric;
+					} else if (shownLyric != lyric) {
+					// A recycled row must not show the previous song meanwhile
+					tvContent.setText("");
+					shownLyric = null;
+				}
 			}
 		}
 	}
@@ -23,7 +23,7 @@ import java.util.Timer;
 import java.util.TimerTask;
 
 public class PerformanceModeActivity extends AppCompatActivity {
-	private LyricDbHelper lyricDbHelper;
+	private LyricRepository repository;
 	private List<Lyric> performanceLyrics;
 	private RecyclerView recyclerView;
 	private PerformanceAdapter adapter;
@@ -43,7 +43,7 @@ public class PerformanceModeActivity extends AppCompatActivity {
 		super.onCreate(savedInstanceState);
 		setContentView(R.layout.activity_performance_mode);
 		
-		lyricDbHelper = new LyricDbHelper(this);
+		repository = LyricRepository.getInstance(this);
 		recyclerView = findViewById(R.id.performance_recycler_view);
 		tvSetlistName = findViewById(R.id.tv_performance_title);
 		tvEmptyState = findViewById(R.id.tv_empty_state);
@@ -102,6 +102,12 @@ public class PerformanceModeActivity extends AppCompatActivity {
 			} else if (id == R.id.menu_scroll_toggle) {
 			toggleAutoScroll();
 			return true;
+			} else if (id == R.id.menu_transpose_up) {
+			transpose(1);
+			return true;
+			} else if (id == R.id.menu_transpose_down) {
+			transpose(-1);
+			return true;
 		}
 		
 		return super.onOptionsItemSelected(item);
@@ -172,6 +178,20 @@ public class PerformanceModeActivity extends AppCompatActivity {
 		dialog.setCanceledOnTouchOutside(true);
 	}
 	
+	// Moves the whole setlist; songs are re-rendered off the main thread as they come on screen
+	private void transpose(int semitones) {
+		if (adapter == null) return;
+		
+		// Twelve semitones up or down is the same key, so the shift wraps within -6..+5;
+		// ChordChart keys its renderings by the shift modulo 12
+		int transposition = Math.floorMod(adapter.getTransposition() + semitones + 6, 12) - 6;
+		adapter.setTransposition(transposition);
+		String key = (transposition == 0) ? "Original key"
+		: "Key: " + (transposition > 0 ? "+" : "") + transposition
+		+ (Math.abs(transposition) == 1 ? " semitone" : " semitones");
+		Toast.makeText(this, key, Toast.LENGTH_SHORT).show();
+	}
+	
 	private void toggleAutoScroll() {
 		if (isAutoScrolling) {
 			stopAutoScroll();
@@ -181,14 +201,11 @@ public class PerformanceModeActivity extends AppCompatActivity {
 	}
 	
 	private void loadPerformanceLyrics(ArrayList<Integer> lyricIds) {
-		performanceLyrics = new ArrayList<>();
-		
-		for (Integer id : lyricIds) {
-			Lyric lyric = lyricDbHelper.getLyricById(id);
-			if (lyric != null) {
-				performanceLyrics.add(lyric);
-			}
-		}
+		repository.read(this, (lyrics, setlists) -> lyrics.getLyricsByIds(lyricIds), this::showPerformanceLyrics);
+	}
+	
+	private void showPerformanceLyrics(List<Lyric> lyrics) {
+		performanceLyrics = lyrics;
 		
 		if (performanceLyrics.isEmpty()) {
 			showEmptyState("No lyrics found");
@@ -238,7 +255,6 @@ public class PerformanceModeActivity extends AppCompatActivity {
 	private void updateFontSize() {
 		if (adapter != null) {
 			adapter.setFontSize(fontSize);
-			adapter.notifyDataSetChanged();
 		}
 	}
 	
@@ -269,8 +285,5 @@ public class PerformanceModeActivity extends AppCompatActivity {
 	protected void onDestroy() {
 		super.onDestroy();
 		stopAutoScroll();
-		if (lyricDbHelper != null) {
-			lyricDbHelper.close();
-		}
 	}
 }
\ No newline at end of file
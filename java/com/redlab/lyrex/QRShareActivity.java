@@ -5,7 +5,6 @@ import android.os.Bundle;
 import android.widget.ImageView;
 import android.widget.Toast;
 import androidx.appcompat.app.AppCompatActivity;
-import java.util.ArrayList;
 import java.util.List;
 
 public class QRShareActivity extends AppCompatActivity {
@@ -27,17 +26,13 @@ public class QRShareActivity extends AppCompatActivity {
 			return;
 		}
 		
-		// Get the actual Lyric objects from the database using the EXISTING method
-		LyricDbHelper dbHelper = new LyricDbHelper(this);
-		List<Lyric> lyrics = new ArrayList<>();
-		for (Integer id : lyricIds) {
-			Lyric lyric = dbHelper.getLyricById(id); // Use the existing method
-			if (lyric != null) {
-				lyrics.add(lyric);
-			}
-		}
-		dbHelper.close();
-		
+		// Get the actual Lyric objects off the main thread
+		LyricRepository.getInstance(this).read(this,
+		(lyricDb, setlistDb) -> lyricDb.getLyricsByIds(lyricIds),
+		lyrics -> showQrCode(qrImageView, lyrics));
+	}
+	
+	private void showQrCode(ImageView qrImageView, List<Lyric> lyrics) {
 		if (lyrics.isEmpty()) {
 			Toast.makeText(this, "No valid lyrics found", Toast.LENGTH_SHORT).show();
 			finish();
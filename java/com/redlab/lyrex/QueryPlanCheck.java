@@ -0,0 +1,180 @@
+package com.redlab.lyrex;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteQueryBuilder;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+* Check that every DAO query is still served by an index.
+*
+* Runs EXPLAIN QUERY PLAN for each query the helpers issue and reports any
+* step that scans a table without an index or sorts through a temporary
+* B-tree. QueryPlanCheckTest fails on a non-empty report; on debuggable
+* builds LyricDbHelper also runs it once per open and logs what it finds.
+* Queries that read every row by design may scan, but must not sort.
+*/
+final class QueryPlanCheck {
+	private static final String TAG = "QueryPlanCheck";
+	
+	private QueryPlanCheck() {}
+	
+	private static class Query {
+		final String name;
+		final String sql;
+		final String[] args;
+		boolean readsAllRows;
+		
+		Query(String name, String sql, String... args) {
+			this.name = name;
+			this.sql = sql;
+			this.args = args;
+		}
+		
+		Query readingAllRows() {
+			readsAllRows = true;
+			return this;
+		}
+	}
+	
+	/**
+	* @return one line per offending plan step; empty when every query is indexed
+	*/
+	static List<String> run(SQLiteDatabase db) {
+		List<String> problems = new ArrayList<>();
+		for (Query query : queries()) {
+			try {
+				for (String step : explain(db, query)) {
+					if ((!query.readsAllRows && isFullScan(step)) || step.contains("TEMP B-TREE")) {
+						problems.add(query.name + ": " + step);
+					}
+				}
+				} catch (Exception e) {
+				problems.add(query.name + ": could not explain (" + e.getMessage() + ")");
+			}
+		}
+		for (String problem : problems) {
+			Log.w(TAG, problem);
+		}
+		return problems;
+	}
+	
+	private static List<Query> queries() {
+		String lyrics = LyricDbHelper.TABLE_LYRICS;
+		String id = LyricDbHelper.COLUMN_ID;
+		String live = LyricDbHelper.LIVE;
+		String items = SetlistDbHelper.TABLE_SETLIST_ITEMS;
+		List<Query> queries = new ArrayList<>();
+		
+		for (String sortOrder : new String[]{"title", "date"}) {
+			String orderBy = LyricDbHelper.summaryOrderBy(sortOrder);
+			boolean byTitle = sortOrder.equals("title");
+			queries.add(new Query("getAllLyrics(" + sortOrder + ")",
+			select(lyrics, live, orderBy, null)));
+			queries.add(new Query("getLyricSummaryPage(" + sortOrder + ", first)",
+			select(lyrics, live, orderBy, "50")));
+			queries.add(new Query("getLyricSummaryPage(" + sortOrder + ", after)",
+			select(lyrics, live + " AND (" + LyricDbHelper.keysetSelection(byTitle) + ")", orderBy, "50"),
+			"a", "a", "1"));
+		}
+		queries.add(new Query("getLyricById",
+		select(lyrics, id + " = ? AND " + live, null, null), "1"));
+		queries.add(new Query("getLyricsByIds",
+		select(lyrics, id + " IN (?, ?) AND " + live, null, null), "1", "2"));
+		queries.add(new Query("getLyricSummariesByIds",
+		select(lyrics, live + " AND (" + id + " IN (?, ?))", null, null), "1", "2"));
+		queries.add(new Query("updateLyric",
+		select(lyrics, id + " = ?", null, null), "1"));
+		queries.add(new Query("setDeletedAt",
+		"UPDATE " + lyrics + " SET " + LyricDbHelper.COLUMN_DELETED_AT + " = ? WHERE " + id + " = ? AND " + live,
+		"1", "1"));
+		queries.add(new Query("purgeLyric",
+		"DELETE FROM " + lyrics + " WHERE " + id + " = ? AND " + LyricDbHelper.COLUMN_DELETED_AT + " IS NOT NULL",
+		"1"));
+		queries.add(new Query("getAllLyricIds", select(lyrics, live, null, null)).readingAllRows());
+		queries.add(new Query("countLyrics", "SELECT count(*) FROM " + lyrics + " WHERE " + live).readingAllRows());
+		queries.add(new Query("hasAnyLyrics", select(lyrics, live, null, "1")).readingAllRows());
+		queries.add(new Query("replace library",
+		"UPDATE " + lyrics + " SET " + LyricDbHelper.COLUMN_DELETED_AT + " = ? WHERE " + live, "1")
+		.readingAllRows());
+		queries.add(new Query("backfill derived columns",
+		select(lyrics, LyricDbHelper.BACKFILL_SELECTION, null,
+		String.valueOf(LyricDbHelper.BACKFILL_BATCH_SIZE))).readingAllRows());
+		queries.add(new Query("chunkOversizedRows",
+		select(lyrics, "length(" + LyricDbHelper.COLUMN_CONTENT + ") >= " + LyricChunks.CHUNK_THRESHOLD_CHARS,
+		null, null)).readingAllRows());
+		queries.add(new Query("moveSetlistItemsToNewRows", LyricDbHelper.SQL_MOVE_SETLIST_ITEMS, "1"));
+		queries.add(new Query("searchLyrics", LyricSearchIndex.SQL_SEARCH, "chorus"));
+		queries.add(new Query("searchLyrics snippets", LyricSearchIndex.sqlSnippets("1, 2"), "chorus"));
+		queries.add(new Query("getLyricsBySection",
+		select(lyrics, LyricDbHelper.COLUMN_SECTION_TYPE + " = ? AND " + live,
+		LyricDbHelper.COLUMN_TIMESTAMP + " DESC, " + id + " DESC", null), "verse"));
+		queries.add(new Query("loadContentHashes",
+		"SELECT " + LyricDbHelper.COLUMN_CONTENT_HASH + " FROM " + lyrics +
+		" WHERE " + LyricDbHelper.COLUMN_CONTENT_HASH + " IS NOT NULL AND " + live));
+		queries.add(new Query("getTrashedLyrics",
+		select(lyrics, LyricDbHelper.COLUMN_DELETED_AT + " IS NOT NULL",
+		LyricDbHelper.COLUMN_DELETED_AT + " DESC", null)));
+		queries.add(new Query("purge expired lyrics",
+		DatabaseMaintenance.expiredSelect(lyrics, LyricDbHelper.COLUMN_ID, LyricDbHelper.COLUMN_DELETED_AT),
+		"1"));
+		
+		queries.add(new Query("getAllSetlists", SetlistDbHelper.SQL_ALL_SETLISTS));
+		queries.add(new Query("getSetlistById", SetlistDbHelper.SQL_SETLIST_WITH_ITEMS, "1"));
+		queries.add(new Query("getTrashedSetlists", SetlistDbHelper.SQL_TRASHED_SETLISTS));
+		queries.add(new Query("containsLyric", SetlistDbHelper.SQL_CONTAINS_LYRIC, "1", "1"));
+		queries.add(new Query("createSetlistFromTitles", SetlistDbHelper.sqlLyricsByTitleKeys(2), "a", "b"));
+		queries.add(new Query("lyricExists", SetlistDbHelper.SQL_LYRIC_EXISTS, "1"));
+		queries.add(new Query("addLyricToSetlist", SetlistDbHelper.SQL_APPEND_ITEM, "1", "1", "1"));
+		queries.add(new Query("touchSetlist",
+		"UPDATE " + SetlistDbHelper.TABLE_SETLISTS + " SET " + SetlistDbHelper.COLUMN_TIMESTAMP + " = ?" +
+		" WHERE " + SetlistDbHelper.COLUMN_ID + " = ?", "1", "1"));
+		queries.add(new Query("removeLyricFromSetlist",
+		"DELETE FROM " + items + " WHERE " + SetlistDbHelper.COLUMN_SETLIST_ID + " = ? AND " +
+		SetlistDbHelper.COLUMN_LYRIC_ID + " = ?", "1", "1"));
+		queries.add(new Query("updateSetlistLyrics",
+		"DELETE FROM " + items + " WHERE " + SetlistDbHelper.COLUMN_SETLIST_ID + " = ?", "1"));
+		queries.add(new Query("setlists of a lyric",
+		"SELECT DISTINCT " + SetlistDbHelper.COLUMN_SETLIST_ID + " FROM " + items +
+		" WHERE " + SetlistDbHelper.COLUMN_LYRIC_ID + " = ?", "1"));
+		queries.add(new Query("getRevisions", LyricRevisions.SQL_LIST_REVISIONS, "1"));
+		queries.add(new Query("getRevisionContent", LyricRevisions.SQL_REVISION_RANGE, "1", "0", "5"));
+		queries.add(new Query("recordRevision", LyricRevisions.SQL_LATEST_REVISION, "1"));
+		queries.add(new Query("readChunk", LyricChunks.SQL_READ_CHUNK, "1", "0"));
+		queries.add(new Query("deleteChunks",
+		"DELETE FROM " + LyricChunks.TABLE_LYRIC_CHUNKS + " WHERE " + LyricChunks.COLUMN_LYRIC_ID + " = ?", "1"));
+		// The lookup ON DELETE CASCADE runs for every deleted lyric
+		queries.add(new Query("deleteLyric cascade",
+		"SELECT 1 FROM " + items + " WHERE " + SetlistDbHelper.COLUMN_LYRIC_ID + " = ?", "1"));
+		return queries;
+	}
+	
+	private static String select(String table, String where, String orderBy, String limit) {
+		return SQLiteQueryBuilder.buildQueryString(false, table, null, where, null, null, orderBy, limit);
+	}
+	
+	private static List<String> explain(SQLiteDatabase db, Query query) {
+		List<String> steps = new ArrayList<>();
+		Cursor cursor = db.rawQuery("EXPLAIN QUERY PLAN " + query.sql, query.args);
+		try {
+			int detail = cursor.getColumnIndexOrThrow("detail");
+			while (cursor.moveToNext()) {
+				steps.add(cursor.getString(detail));
+			}
+			} finally {
+			cursor.close();
+		}
+		return steps;
+	}
+	
+	// "SCAN TABLE lyrics" on older SQLite, "SCAN lyrics" on newer; an index or
+	// rowid walk shows up as "... USING ...", and an FTS lookup as a virtual
+	// table index other than 0
+	private static boolean isFullScan(String step) {
+		if (step.contains(" VIRTUAL TABLE INDEX ")) return step.contains(" VIRTUAL TABLE INDEX 0:");
+		return step.startsWith("SCAN") && !step.contains(" USING ");
+	}
+}
\ No newline at end of file
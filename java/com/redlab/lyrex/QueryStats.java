@@ -0,0 +1,199 @@
+package com.redlab.lyrex;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+* Latency histograms for data-layer operations, off until setEnabled(true).
+*
+* Each Operation keeps a log-linear histogram of microseconds: every power of
+* two is split into SUB_BUCKETS buckets, so percentiles read from it are within
+* 12.5% of the true value. Recording is a clock read and a few atomic adds, with
+* no locks or allocation, against queries that take tens of microseconds at the
+* least. While disabled, start() is one volatile read and end() returns at once.
+*/
+public final class QueryStats {
+	// 2^3 buckets per power of two
+	private static final int SUB_BUCKET_BITS = 3;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	// Durations from 2^MAX_EXPONENT microseconds (about 19 hours) share the last bucket
+	private static final int MAX_EXPONENT = 36;
+	private static final int BUCKET_COUNT = (MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKETS;
+	
+	// Returned by start() while disabled; end() ignores it
+	static final long NOT_TIMING = Long.MIN_VALUE;
+	
+	private static volatile boolean enabled = false;
+	private static final List<Operation> operations = new CopyOnWriteArrayList<>();
+	
+	private QueryStats() {}
+	
+	public static void setEnabled(boolean enabled) {
+		QueryStats.enabled = enabled;
+	}
+	
+	public static boolean isEnabled() {
+		return enabled;
+	}
+	
+	/**
+	* Registers an operation; call once per operation, from a static final field.
+	*/
+	static Operation operation(String name) {
+		Operation operation = new Operation(name);
+		operations.add(operation);
+		return operation;
+	}
+	
+	static long start() {
+		return enabled ? System.nanoTime() : NOT_TIMING;
+	}
+	
+	public static class Operation {
+		private final String name;
+		private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+		private final LongAdder rows = new LongAdder();
+		private final AtomicLong maxMicros = new AtomicLong();
+		
+		private Operation(String name) {
+			this.name = name;
+		}
+		
+		/**
+		* Records a call begun at start, which returned or changed rows rows.
+		*/
+		void end(long start, long rows) {
+			if (start == NOT_TIMING) return;
+			
+			long micros = (System.nanoTime() - start) / 1000;
+			buckets.incrementAndGet(bucketIndex(micros));
+			this.rows.add(rows);
+			long max = maxMicros.get();
+			while (micros > max && !maxMicros.compareAndSet(max, micros)) {
+				max = maxMicros.get();
+			}
+		}
+		
+		// Concurrent calls may land on either side of a reset
+		private void reset() {
+			for (int i = 0; i < BUCKET_COUNT; i++) {
+				buckets.set(i, 0);
+			}
+			rows.reset();
+			maxMicros.set(0);
+		}
+		
+		private Snapshot snapshot() {
+			long[] counts = new long[BUCKET_COUNT];
+			long total = 0;
+			for (int i = 0; i < BUCKET_COUNT; i++) {
+				counts[i] = buckets.get(i);
+				total += counts[i];
+			}
+			// A bucket's upper bound can overshoot the largest value actually seen
+			long max = maxMicros.get();
+			return new Snapshot(name, total,
+			Math.min(max, percentile(counts, total, 0.50)),
+			Math.min(max, percentile(counts, total, 0.95)),
+			Math.min(max, percentile(counts, total, 0.99)),
+			max,
+			rows.sum());
+		}
+	}
+	
+	public static class Snapshot {
+		public final String name;
+		public final long count;
+		// Microseconds, as the upper bound of the bucket holding the percentile
+		public final long p50Micros;
+		public final long p95Micros;
+		public final long p99Micros;
+		public final long maxMicros;
+		public final long rows;
+		
+		Snapshot(String name, long count, long p50Micros, long p95Micros, long p99Micros, long maxMicros,
+		long rows) {
+			this.name = name;
+			this.count = count;
+			this.p50Micros = p50Micros;
+			this.p95Micros = p95Micros;
+			this.p99Micros = p99Micros;
+			this.maxMicros = maxMicros;
+			this.rows = rows;
+		}
+	}
+	
+	static int bucketIndex(long micros) {
+		if (micros < SUB_BUCKETS) return (int) Math.max(0, micros);
+		
+		int exponent = 63 - Long.numberOfLeadingZeros(micros);
+		if (exponent > MAX_EXPONENT) return BUCKET_COUNT - 1;
+		int sub = (int) (micros >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+		return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + sub;
+	}
+	
+	// Largest value that falls in a bucket
+	static long bucketUpperBound(int index) {
+		if (index < SUB_BUCKETS) return index;
+		
+		int exponent = index / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+		int sub = index % SUB_BUCKETS;
+		long width = 1L << (exponent - SUB_BUCKET_BITS);
+		return ((SUB_BUCKETS + sub) * width) + width - 1;
+	}
+	
+	private static long percentile(long[] counts, long total, double fraction) {
+		if (total == 0) return 0;
+		
+		long rank = (long) Math.ceil(total * fraction);
+		long seen = 0;
+		for (int i = 0; i < counts.length; i++) {
+			seen += counts[i];
+			if (seen >= rank) return bucketUpperBound(i);
+		}
+		return bucketUpperBound(counts.length - 1);
+	}
+	
+	/**
+	* Operations that have been called since the last reset, in registration order.
+	*/
+	public static List<Snapshot> snapshot() {
+		List<Snapshot> snapshots = new ArrayList<>();
+		for (Operation operation : operations) {
+			Snapshot snapshot = operation.snapshot();
+			if (snapshot.count > 0) {
+				snapshots.add(snapshot);
+			}
+		}
+		return snapshots;
+	}
+	
+	public static void reset() {
+		for (Operation operation : operations) {
+			operation.reset();
+		}
+	}
+	
+	/**
+	* Plain-text table of snapshot(), in milliseconds.
+	*/
+	public static String report() {
+		StringBuilder report = new StringBuilder();
+		report.append(String.format(Locale.ROOT, "%-26s %7s %8s %8s %8s %8s %9s%n",
+		"operation", "count", "p50 ms", "p95 ms", "p99 ms", "max ms", "rows"));
+		for (Snapshot s : snapshot()) {
+			report.append(String.format(Locale.ROOT, "%-26s %7d %8.2f %8.2f %8.2f %8.2f %9d%n",
+			s.name, s.count, s.p50Micros / 1000.0, s.p95Micros / 1000.0, s.p99Micros / 1000.0,
+			s.maxMicros / 1000.0, s.rows));
+		}
+		if (!enabled) {
+			report.append("(recording is off)\n");
+		}
+		return report.toString();
+	}
+}
\ No newline at end of file
@@ -0,0 +1,56 @@
+package com.redlab.lyrex;
+
+import android.content.Intent;
+import android.os.Bundle;
+import android.widget.TextView;
+import androidx.appcompat.app.AppCompatActivity;
+import java.io.FileDescriptor;
+import java.io.PrintWriter;
+
+/**
+* Debug screen for QueryStats. The same report is printed by
+* "adb shell dumpsys activity com.redlab.lyrex/.QueryStatsActivity" while the
+* screen is open.
+*/
+public class QueryStatsActivity extends AppCompatActivity {
+	private TextView tvReport;
+	
+	@Override
+	protected void onCreate(Bundle savedInstanceState) {
+		super.onCreate(savedInstanceState);
+		setContentView(R.layout.activity_query_stats);
+		
+		tvReport = findViewById(R.id.tv_report);
+		findViewById(R.id.btn_refresh).setOnClickListener(v -> showReport());
+		findViewById(R.id.btn_reset).setOnClickListener(v -> {
+			QueryStats.reset();
+			showReport();
+		});
+		findViewById(R.id.btn_share_report).setOnClickListener(v -> {
+			Intent share = new Intent(Intent.ACTION_SEND);
+			share.setType("text/plain");
+			share.putExtra(Intent.EXTRA_SUBJECT, "Lyrex query stats");
+			share.putExtra(Intent.EXTRA_TEXT, QueryStats.report());
+			startActivity(Intent.createChooser(share, "Share report"));
+		});
+	}
+	
+	@Override
+	protected void onResume() {
+		super.onResume();
+		showReport();
+	}
+	
+	private void showReport() {
+		tvReport.setText(QueryStats.report());
+	}
+	
+	@Override
+	public void dump(String prefix, FileDescriptor fd, PrintWriter writer, String[] args) {
+		super.dump(prefix, fd, writer, args);
+		writer.println(prefix + "Query stats:");
+		for (String line : QueryStats.report().split("\n")) {
+			writer.println(prefix + "  " + line);
+		}
+	}
+}
\ No newline at end of file
@@ -0,0 +1,329 @@
+package com.redlab.lyrex;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+
+/**
+* Finds section names (verse, chorus, bridge and their localised forms) in
+* lyric text in one pass.
+*
+* The names in GRAMMAR are compiled once into an Aho-Corasick automaton with
+* every transition filled in, so scanning costs one table lookup per character
+* however many names there are. The alphabet is the set of characters the
+* names use, so non-ASCII names such as "refrão" need no special casing.
+* Matching ignores case and requires a non-word character, or the end of the
+* text, on both sides. Where names overlap, as chorus does inside pre-chorus,
+* the longest one wins. Which matches head a section, and so are stored and
+* highlighted, is left to LyricSection.findHeaders.
+*
+* Results are packed as {start, end, kind} triples. encode and decode turn them
+* into the blob LyricDbHelper stores with each row. Bump VERSION whenever
+* matching changes: blobs of another version are rescanned when read, and a
+* database upgrade that clears the stored keys has the backfill replace them.
+*/
+final class SectionMarkers {
+	static final int KIND_VERSE = 0;
+	static final int KIND_PRE_CHORUS = 1;
+	static final int KIND_CHORUS = 2;
+	static final int KIND_BRIDGE = 3;
+	static final int KIND_REFRAIN = 4;
+	static final int KIND_INTRO = 5;
+	static final int KIND_OUTRO = 6;
+	static final int KIND_HOOK = 7;
+	static final int KIND_TAG = 8;
+	
+	// Indexed by kind; these are also the section_type values
+	private static final String[] KIND_NAMES = {
+		"verse", "pre-chorus", "chorus", "bridge", "refrain", "intro", "outro", "hook", "tag"
+	};
+	
+	// Name in lower case, then the kind it marks; add names here and nothing else changes
+	private static final String[][] GRAMMAR = {
+		{"verse", "verse"},
+		{"verso", "verse"},        // es, it, pt
+		{"estrofa", "verse"},      // es
+		{"strofa", "verse"},       // it
+		{"strophe", "verse"},      // de, fr
+		{"couplet", "verse"},      // fr
+		{"pre-chorus", "pre-chorus"},
+		{"prechorus", "pre-chorus"},
+		{"pre-coro", "pre-chorus"},
+		{"pré-refrão", "pre-chorus"},
+		{"chorus", "chorus"},
+		{"coro", "chorus"},        // es, it
+		{"estribillo", "chorus"},  // es
+		{"refrão", "chorus"},      // pt
+		{"ritornello", "chorus"},  // it
+		{"bridge", "bridge"},
+		{"puente", "bridge"},      // es
+		{"ponte", "bridge"},       // it, pt
+		{"brücke", "bridge"},      // de
+		{"refrain", "refrain"},    // en, fr, de
+		{"refrein", "refrain"},    // nl
+		{"intro", "intro"},
+		{"introducción", "intro"}, // es
+		{"introdução", "intro"},   // pt
+		{"outro", "outro"},
+		{"coda", "outro"},
+		{"hook", "hook"},
+		{"tag", "tag"}
+	};
+	
+	static final int VERSION = 3;
+	
+	// Symbol 0 stands for every character no name uses
+	private static final int OTHER = 0;
+	private static final int[] EMPTY = new int[0];
+	
+	private static final SectionMarkers DEFAULT = compile(GRAMMAR);
+	
+	// Symbols of ASCII characters by code, then of the other name characters by extraChars
+	private final int[] asciiSymbols = new int[128];
+	private final char[] extraChars;
+	private final int[] extraSymbols;
+	private final int[] nameLengths;
+	private final int[] nameKinds;
+	
+	private final int[][] next;
+	// Name ending at each state, or -1
+	private final int[] nameAt;
+	// Nearest state down the failure chain that ends a name, or -1
+	private final int[] shorterMatch;
+	
+	private SectionMarkers(String[] names, int[] kinds) {
+		// Alphabet: each distinct lower-case character in the names
+		StringBuilder extra = new StringBuilder();
+		int symbols = 1;
+		for (String name : names) {
+			for (int i = 0; i < name.length(); i++) {
+				char c = name.charAt(i);
+				if (c < 128) {
+					if (asciiSymbols[c] == OTHER) {
+						asciiSymbols[c] = symbols++;
+					}
+					} else if (extra.indexOf(String.valueOf(c)) < 0) {
+					extra.append(c);
+				}
+			}
+		}
+		for (char c = 'A'; c <= 'Z'; c++) {
+			asciiSymbols[c] = asciiSymbols[Character.toLowerCase(c)];
+		}
+		extraChars = extra.toString().toCharArray();
+		Arrays.sort(extraChars);
+		extraSymbols = new int[extraChars.length];
+		for (int i = 0; i < extraChars.length; i++) {
+			extraSymbols[i] = symbols++;
+		}
+		int alphabet = symbols;
+		
+		nameLengths = new int[names.length];
+		nameKinds = kinds.clone();
+		int maxStates = 1;
+		for (String name : names) {
+			maxStates += name.length();
+		}
+		int[][] trie = new int[maxStates][alphabet];
+		int[] ends = new int[maxStates];
+		Arrays.fill(ends, -1);
+		int states = 1;
+		for (int n = 0; n < names.length; n++) {
+			nameLengths[n] = names[n].length();
+			int state = 0;
+			for (int i = 0; i < names[n].length(); i++) {
+				int symbol = symbol(names[n].charAt(i));
+				if (trie[state][symbol] == 0) {
+					trie[state][symbol] = states++;
+				}
+				state = trie[state][symbol];
+			}
+			ends[state] = n;
+		}
+		
+		// Breadth-first, so each failure target is complete before it is used
+		int[] fail = new int[states];
+		int[] shorter = new int[states];
+		shorter[0] = -1;
+		int[] queue = new int[states];
+		int head = 0;
+		int tail = 0;
+		for (int symbol = 0; symbol < alphabet; symbol++) {
+			int child = trie[0][symbol];
+			if (child != 0) {
+				fail[child] = 0;
+				shorter[child] = -1;
+				queue[tail++] = child;
+			}
+		}
+		while (head < tail) {
+			int state = queue[head++];
+			for (int symbol = 0; symbol < alphabet; symbol++) {
+				int child = trie[state][symbol];
+				if (child == 0) {
+					trie[state][symbol] = trie[fail[state]][symbol];
+					continue;
+				}
+				int target = trie[fail[state]][symbol];
+				fail[child] = target;
+				shorter[child] = (ends[target] >= 0) ? target : shorter[target];
+				queue[tail++] = child;
+			}
+		}
+		
+		next = Arrays.copyOf(trie, states);
+		nameAt = Arrays.copyOf(ends, states);
+		shorterMatch = shorter;
+	}
+	
+	/**
+	* Builds an automaton for a grammar of {name, kind name} pairs, names in
+	* lower case.
+	* @throws IllegalArgumentException for an unknown kind name
+	*/
+	static SectionMarkers compile(String[][] grammar) {
+		String[] names = new String[grammar.length];
+		int[] kinds = new int[grammar.length];
+		for (int i = 0; i < grammar.length; i++) {
+			names[i] = grammar[i][0];
+			kinds[i] = Arrays.asList(KIND_NAMES).indexOf(grammar[i][1]);
+			if (kinds[i] < 0) {
+				throw new IllegalArgumentException("Unknown section kind: " + grammar[i][1]);
+			}
+		}
+		return new SectionMarkers(names, kinds);
+	}
+	
+	// Lower-case name of a kind, as stored in the section_type column
+	static String keyword(int kind) {
+		return KIND_NAMES[kind];
+	}
+	
+	private int symbol(char c) {
+		if (c < 128) return asciiSymbols[c];
+		if (extraChars.length == 0) return OTHER;
+		int index = Arrays.binarySearch(extraChars, Character.toLowerCase(c));
+		return (index >= 0) ? extraSymbols[index] : OTHER;
+	}
+	
+	private static boolean isWordChar(char c) {
+		return Character.isLetterOrDigit(c) || c == '_';
+	}
+	
+	/**
+	* @return {start, end, kind} for each marker, in order and never overlapping
+	*/
+	static int[] find(CharSequence text) {
+		if (text == null) return EMPTY;
+		return DEFAULT.scan(text, 0, text.length());
+	}
+	
+	/**
+	* Markers lying within from..to of text, with absolute offsets. Boundaries
+	* are checked against the whole text, so a range cut at line breaks finds
+	* exactly what a full scan finds there.
+	*/
+	static int[] find(CharSequence text, int from, int to) {
+		return DEFAULT.scan(text, from, to);
+	}
+	
+	int[] scan(CharSequence text, int from, int to) {
+		int[] spans = EMPTY;
+		int count = 0;
+		int length = text.length();
+		int state = 0;
+		for (int i = from; i < to; i++) {
+			state = next[state][symbol(text.charAt(i))];
+			int end = i + 1;
+			if (end < length && isWordChar(text.charAt(end))) continue;
+			
+			// Longest name ending here with a boundary before it
+			for (int s = (nameAt[state] >= 0) ? state : shorterMatch[state]; s > 0; s = shorterMatch[s]) {
+				int name = nameAt[s];
+				int start = end - nameLengths[name];
+				if (start < from) continue;
+				if (start > 0 && isWordChar(text.charAt(start - 1))) continue;
+				
+				// Names only overlap by sharing an end, so this never drops a marker
+				if (count > 0 && start < spans[(count - 1) * 3 + 1]) break;
+				if ((count + 1) * 3 > spans.length) {
+					spans = Arrays.copyOf(spans, Math.max(12, spans.length * 2));
+				}
+				spans[count * 3] = start;
+				spans[count * 3 + 1] = end;
+				spans[count * 3 + 2] = nameKinds[name];
+				count++;
+				break;
+			}
+		}
+		return (spans.length == count * 3) ? spans : Arrays.copyOf(spans, count * 3);
+	}
+	
+	/**
+	* Stored form of find's or LyricSection.findHeaders' result: a VERSION byte,
+	* then per marker the gap from the previous marker's end, the length and the
+	* kind, as unsigned varints.
+	*/
+	static byte[] encode(int[] spans) {
+		ByteArrayOutputStream out = new ByteArrayOutputStream(1 + spans.length * 2);
+		out.write(VERSION);
+		int previousEnd = 0;
+		for (int i = 0; i < spans.length; i += 3) {
+			writeVarint(out, spans[i] - previousEnd);
+			writeVarint(out, spans[i + 1] - spans[i]);
+			writeVarint(out, spans[i + 2]);
+			previousEnd = spans[i + 1];
+		}
+		return out.toByteArray();
+	}
+	
+	/**
+	* @return the spans, or null if the blob is missing, from another VERSION or
+	* does not fit a text of contentLength characters
+	*/
+	static int[] decode(byte[] blob, int contentLength) {
+		if (blob == null || blob.length == 0 || blob[0] != VERSION) return null;
+		
+		int[] spans = new int[12];
+		int count = 0;
+		int[] position = {1};
+		int previousEnd = 0;
+		while (position[0] < blob.length) {
+			int gap = readVarint(blob, position);
+			int length = readVarint(blob, position);
+			int kind = readVarint(blob, position);
+			if (gap < 0 || length < 0 || kind < 0 || kind >= KIND_NAMES.length) return null;
+			int start = previousEnd + gap;
+			int end = start + length;
+			if (end > contentLength) return null;
+			if ((count + 1) * 3 > spans.length) {
+				spans = Arrays.copyOf(spans, spans.length * 2);
+			}
+			spans[count * 3] = start;
+			spans[count * 3 + 1] = end;
+			spans[count * 3 + 2] = kind;
+			count++;
+			previousEnd = end;
+		}
+		return Arrays.copyOf(spans, count * 3);
+	}
+	
+	private static void writeVarint(ByteArrayOutputStream out, int value) {
+		while ((value & ~0x7F) != 0) {
+			out.write((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		out.write(value);
+	}
+	
+	// Reads at position[0] and advances it; a truncated varint reads as -1
+	private static int readVarint(byte[] blob, int[] position) {
+		int value = 0;
+		for (int shift = 0; shift < 32; shift += 7) {
+			if (position[0] >= blob.length) return -1;
+			byte b = blob[position[0]++];
+			value |= (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) return value;
+		}
+		return -1;
+	}
+}
\ No newline at end of file
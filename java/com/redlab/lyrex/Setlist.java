@@ -6,35 +6,39 @@ import java.util.List;
 public class Setlist {
 	private int id;
 	private String name;
-	private String lyricIdsJson;
+	private List<Integer> lyricIds;
+	private int songCount;
 	private long timestamp;
 	
-	public Setlist(int id, String name, String lyricIdsJson, long timestamp) {
+	// Full setlist with its songs in order
+	public Setlist(int id, String name, List<Integer> lyricIds, long timestamp) {
 		this.id = id;
 		this.name = name;
-		this.lyricIdsJson = lyricIdsJson;
+		this.lyricIds = (lyricIds != null) ? lyricIds : new ArrayList<>();
+		this.songCount = this.lyricIds.size();
 		this.timestamp = timestamp;
 	}
 	
-	// Simple manual JSON parsing instead of Gson
+	// List entry: only the song count is known, the songs themselves are not loaded
+	public Setlist(int id, String name, int songCount, long timestamp) {
+		this.id = id;
+		this.name = name;
+		this.lyricIds = null;
+		this.songCount = songCount;
+		this.timestamp = timestamp;
+	}
+	
+	/**
+	* Song ids in setlist order. Empty for list entries, which are loaded without
+	* their songs; use SetlistDbHelper.getSetlistById for those.
+	*/
 	public List<Integer> getLyricIds() {
-		List<Integer> ids = new ArrayList<>();
-		if (lyricIdsJson != null && lyricIdsJson.startsWith("[") && lyricIdsJson.endsWith("]")) {
-			String[] parts = lyricIdsJson.replace("[", "").replace("]", "").split(",");
-			for (String part : parts) {
-				try {
-					ids.add(Integer.parseInt(part.trim()));
-					} catch (NumberFormatException e) {
-					e.printStackTrace();
-				}
-			}
-		}
-		return ids;
+		return (lyricIds != null) ? new ArrayList<>(lyricIds) : new ArrayList<>();
 	}
 	
 	// Getters
 	public int getId() { return id; }
 	public String getName() { return name; }
-	public String getLyricIdsJson() { return lyricIdsJson; }
+	public int getSongCount() { return songCount; }
 	public long getTimestamp() { return timestamp; }
 }
\ No newline at end of file
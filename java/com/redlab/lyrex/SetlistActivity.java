@@ -14,10 +14,9 @@ import java.util.ArrayList;
 import java.util.List;
 
 public class SetlistActivity extends AppCompatActivity {
-	private SetlistDbHelper setlistDbHelper;
-	private LyricDbHelper lyricDbHelper;
+	private LyricRepository repository;
 	private ListView setlistListView;
-	private List<Lyric> allLyrics = new ArrayList<>();
+	private List<LyricSummary> allLyrics = new ArrayList<>();
 	private List<Integer> selectedLyricIds = new ArrayList<>();
 	
 	@Override
@@ -25,8 +24,7 @@ public class SetlistActivity extends AppCompatActivity {
 		super.onCreate(savedInstanceState);
 		setContentView(R.layout.activity_setlist);
 		
-		setlistDbHelper = new SetlistDbHelper(this);
-		lyricDbHelper = new LyricDbHelper(this);
+		repository = LyricRepository.getInstance(this);
 		
 		Button btnCreateSetlist = findViewById(R.id.btnCreateSetlist);
 		ExtendedFloatingActionButton fabShareQR = findViewById(R.id.fabShareQR);
@@ -34,8 +32,10 @@ public class SetlistActivity extends AppCompatActivity {
 		setlistListView = findViewById(R.id.setlistListView);
 		
 		// Load all lyrics for selection
-		allLyrics = lyricDbHelper.getAllLyrics("title");
-		setupListView();
+		repository.read(this, (lyrics, setlists) -> lyrics.getAllLyricSummaries("title"), lyrics -> {
+			allLyrics = lyrics;
+			setupListView();
+		});
 		
 		btnCreateSetlist.setOnClickListener(v -> {
 			String setName = etSetlistName.getText().toString().trim();
@@ -50,9 +50,11 @@ public class SetlistActivity extends AppCompatActivity {
 				return;
 			}
 			
-			setlistDbHelper.createSetlist(setName, selectedLyricIds);
-			Toast.makeText(this, "Setlist created successfully", Toast.LENGTH_SHORT).show();
-			finish();
+			List<Integer> lyricIds = new ArrayList<>(selectedLyricIds);
+			repository.write(this, (lyrics, setlists) -> setlists.createSetlist(setName, lyricIds), id -> {
+				Toast.makeText(this, "Setlist created successfully", Toast.LENGTH_SHORT).show();
+				finish();
+			}, e -> Toast.makeText(this, "Failed to create setlist", Toast.LENGTH_SHORT).show());
 		});
 		
 		fabShareQR.setOnClickListener(v -> {
@@ -75,7 +77,7 @@ public class SetlistActivity extends AppCompatActivity {
 	
 	private void setupListView() {
 		List<String> lyricTitles = new ArrayList<>();
-		for (Lyric lyric : allLyrics) {
+		for (LyricSummary lyric : allLyrics) {
 			lyricTitles.add(lyric.getTitle());
 		}
 		
@@ -97,15 +99,4 @@ public class SetlistActivity extends AppCompatActivity {
 			}
 		});
 	}
-	
-	@Override
-	protected void onDestroy() {
-		super.onDestroy();
-		if (setlistDbHelper != null) {
-			setlistDbHelper.close();
-		}
-		if (lyricDbHelper != null) {
-			lyricDbHelper.close();
-		}
-	}
 }
\ No newline at end of file
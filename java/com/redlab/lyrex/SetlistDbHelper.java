@@ -3,113 +3,484 @@ package com.redlab.lyrex;
 import android.content.ContentValues;
 import android.content.Context;
 import android.database.Cursor;
+import android.database.DatabaseUtils;
 import android.database.sqlite.SQLiteDatabase;
-import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
+import android.util.Log;
+import java.io.File;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 
-public class SetlistDbHelper extends SQLiteOpenHelper {
-	private static final String DATABASE_NAME = "setlists.db";
-	private static final int DATABASE_VERSION = 1;
+/**
+* Setlist storage. Setlists live in the same database as the lyrics (owned by
+* LyricDbHelper), so setlist items reference lyrics by foreign key and
+* cross-entity changes can commit in one transaction.
+*/
+public class SetlistDbHelper {
+	private static final String TAG = "SetlistDbHelper";
+	
+	// Setlists used to have their own database file; imported once and then deleted
+	static final String LEGACY_DATABASE_NAME = "setlists.db";
 	
 	public static final String TABLE_SETLISTS = "setlists";
 	public static final String COLUMN_ID = "_id";
 	public static final String COLUMN_NAME = "name";
-	public static final String COLUMN_LYRIC_IDS = "lyric_ids";
 	public static final String COLUMN_TIMESTAMP = "timestamp";
+	// When the setlist was moved to the trash; NULL for live rows
+	public static final String COLUMN_DELETED_AT = "deleted_at";
+	
+	// Setlist membership, one row per song in order
+	public static final String TABLE_SETLIST_ITEMS = "setlist_items";
+	public static final String COLUMN_SETLIST_ID = "setlist_id";
+	public static final String COLUMN_POSITION = "position";
+	public static final String COLUMN_LYRIC_ID = "lyric_id";
+	
+	// Version 1 of the legacy file kept membership as a JSON array string on the setlist row
+	private static final String LEGACY_COLUMN_LYRIC_IDS = "lyric_ids";
+	
+	// Latency of the public operations, recorded while QueryStats is enabled
+	private static final QueryStats.Operation OP_CREATE = QueryStats.operation("createSetlist");
+	private static final QueryStats.Operation OP_CREATE_FROM_TITLES = QueryStats.operation("createSetlistFromTitles");
+	private static final QueryStats.Operation OP_GET_ALL = QueryStats.operation("getAllSetlists");
+	private static final QueryStats.Operation OP_GET_BY_ID = QueryStats.operation("getSetlistById");
+	private static final QueryStats.Operation OP_CONTAINS = QueryStats.operation("containsLyric");
+	private static final QueryStats.Operation OP_ADD_LYRIC = QueryStats.operation("addLyricToSetlist");
+	private static final QueryStats.Operation OP_REMOVE_LYRIC = QueryStats.operation("removeLyricFromSetlist");
+	private static final QueryStats.Operation OP_RENAME = QueryStats.operation("renameSetlist");
+	private static final QueryStats.Operation OP_UPDATE_LYRICS = QueryStats.operation("updateSetlistLyrics");
+	private static final QueryStats.Operation OP_TRASH = QueryStats.operation("deleteSetlist");
+	private static final QueryStats.Operation OP_RESTORE = QueryStats.operation("restoreSetlist");
+	private static final QueryStats.Operation OP_GET_TRASHED = QueryStats.operation("getTrashedSetlists");
 	
-	public SetlistDbHelper(Context context) {
-		super(context, DATABASE_NAME, null, DATABASE_VERSION);
+	private static SetlistDbHelper instance;
+	
+	private final LyricDbHelper lyricDbHelper;
+	
+	public static synchronized SetlistDbHelper getInstance(Context context) {
+		if (instance == null) {
+			instance = new SetlistDbHelper(LyricDbHelper.getInstance(context));
+		}
+		return instance;
 	}
 	
-	@Override
-	public void onCreate(SQLiteDatabase db) {
-		String CREATE_TABLE = "CREATE TABLE " + TABLE_SETLISTS + " (" +
+	private SetlistDbHelper(LyricDbHelper lyricDbHelper) {
+		this.lyricDbHelper = lyricDbHelper;
+	}
+	
+	private SQLiteDatabase getReadableDatabase() {
+		return lyricDbHelper.getReadableDatabase();
+	}
+	
+	private SQLiteDatabase getWritableDatabase() {
+		return lyricDbHelper.getWritableDatabase();
+	}
+	
+	/**
+	* Creates the setlist tables. Called by LyricDbHelper when it creates or
+	* upgrades the shared database.
+	*/
+	static void createTables(SQLiteDatabase db) {
+		db.execSQL("CREATE TABLE " + TABLE_SETLISTS + " (" +
 		COLUMN_ID + " INTEGER PRIMARY KEY AUTOINCREMENT, " +
 		COLUMN_NAME + " TEXT NOT NULL, " +
-		COLUMN_LYRIC_IDS + " TEXT, " +
-		COLUMN_TIMESTAMP + " INTEGER);";
-		db.execSQL(CREATE_TABLE);
+		COLUMN_TIMESTAMP + " INTEGER, " +
+		COLUMN_DELETED_AT + " INTEGER);");
+		db.execSQL("CREATE TABLE " + TABLE_SETLIST_ITEMS + " (" +
+		COLUMN_SETLIST_ID + " INTEGER NOT NULL REFERENCES " + TABLE_SETLISTS + "(" + COLUMN_ID + ") ON DELETE CASCADE, " +
+		COLUMN_POSITION + " INTEGER NOT NULL, " +
+		COLUMN_LYRIC_ID + " INTEGER NOT NULL REFERENCES " + LyricDbHelper.TABLE_LYRICS +
+		"(" + LyricDbHelper.COLUMN_ID + ") ON DELETE CASCADE, " +
+		"PRIMARY KEY (" + COLUMN_SETLIST_ID + ", " + COLUMN_POSITION + "));");
+		db.execSQL("CREATE INDEX idx_setlist_items_lyric ON " + TABLE_SETLIST_ITEMS +
+		"(" + COLUMN_LYRIC_ID + ", " + COLUMN_SETLIST_ID + ")");
+	}
+	
+	static void createIndexes(SQLiteDatabase db) {
+		db.execSQL("CREATE INDEX IF NOT EXISTS idx_setlists_timestamp ON " + TABLE_SETLISTS +
+		"(" + COLUMN_TIMESTAMP + ")");
 	}
 	
-	@Override
-	public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
-		db.execSQL("DROP TABLE IF EXISTS " + TABLE_SETLISTS);
-		onCreate(db);
+	static void addTrashColumn(SQLiteDatabase db) {
+		db.execSQL("ALTER TABLE " + TABLE_SETLISTS + " ADD COLUMN " + COLUMN_DELETED_AT + " INTEGER");
+	}
+	
+	// Partial, like the lyrics one: only trashed rows, never chosen for live queries
+	static void createTrashIndex(SQLiteDatabase db) {
+		db.execSQL("CREATE INDEX IF NOT EXISTS idx_setlists_deleted_at ON " + TABLE_SETLISTS +
+		"(" + COLUMN_DELETED_AT + ") WHERE " + COLUMN_DELETED_AT + " IS NOT NULL");
+	}
+	
+	/**
+	* Copies setlists out of the legacy setlists.db into the shared database,
+	* dropping ids of lyrics that no longer exist. Handles both the JSON and the
+	* setlist_items layouts of the old file. Setlists get new ids, so a retried
+	* import cannot collide with setlists made in the meantime. Run it inside a
+	* transaction and commit only if it returns true.
+	* @return true if the legacy file was read completely and can be deleted
+	*/
+	static boolean importLegacyDatabase(SQLiteDatabase db, File legacyFile) {
+		if (!legacyFile.exists()) return false;
+		
+		SQLiteDatabase legacy = null;
+		try {
+			legacy = SQLiteDatabase.openDatabase(legacyFile.getPath(), null, SQLiteDatabase.OPEN_READONLY);
+			
+			// Setlist id -> song ids in order, read fully before anything is written
+			Map<Long, List<Integer>> members = new LinkedHashMap<>();
+			List<ContentValues> setlists = new ArrayList<>();
+			boolean hasItemsTable = DatabaseUtils.longForQuery(legacy,
+			"SELECT COUNT(*) FROM sqlite_master WHERE type = 'table' AND name = ?",
+			new String[]{TABLE_SETLIST_ITEMS}) > 0;
+			
+			Cursor cursor = legacy.rawQuery("SELECT * FROM " + TABLE_SETLISTS + " ORDER BY " + COLUMN_ID, null);
+			try {
+				int jsonColumn = cursor.getColumnIndex(LEGACY_COLUMN_LYRIC_IDS);
+				while (cursor.moveToNext()) {
+					long id = cursor.getLong(cursor.getColumnIndexOrThrow(COLUMN_ID));
+					ContentValues values = new ContentValues();
+					values.put(COLUMN_ID, id);
+					values.put(COLUMN_NAME, cursor.getString(cursor.getColumnIndexOrThrow(COLUMN_NAME)));
+					values.put(COLUMN_TIMESTAMP, cursor.getLong(cursor.getColumnIndexOrThrow(COLUMN_TIMESTAMP)));
+					setlists.add(values);
+					members.put(id, (!hasItemsTable && jsonColumn >= 0)
+					? parseLegacyLyricIds(cursor.getString(jsonColumn))
+					: new ArrayList<>());
+				}
+				} finally {
+				cursor.close();
+			}
+			
+			if (hasItemsTable) {
+				cursor = legacy.rawQuery("SELECT " + COLUMN_SETLIST_ID + ", " + COLUMN_LYRIC_ID +
+				" FROM " + TABLE_SETLIST_ITEMS + " ORDER BY " + COLUMN_SETLIST_ID + ", " + COLUMN_POSITION, null);
+				try {
+					while (cursor.moveToNext()) {
+						List<Integer> ids = members.get(cursor.getLong(0));
+						if (ids != null) ids.add(cursor.getInt(1));
+					}
+					} finally {
+					cursor.close();
+				}
+			}
+			
+			SQLiteStatement lyricExists = db.compileStatement(SQL_LYRIC_EXISTS);
+			try {
+				for (ContentValues values : setlists) {
+					List<Integer> legacyMembers = members.get(values.getAsLong(COLUMN_ID));
+					values.remove(COLUMN_ID);
+					long id = db.insertOrThrow(TABLE_SETLISTS, null, values);
+					List<Integer> kept = new ArrayList<>();
+					for (Integer lyricId : legacyMembers) {
+						lyricExists.bindLong(1, lyricId);
+						if (lyricExists.simpleQueryForLong() > 0) {
+							kept.add(lyricId);
+						}
+					}
+					insertItems(db, id, kept);
+				}
+				} finally {
+				lyricExists.close();
+			}
+			return true;
+			} catch (Exception e) {
+			// Leave the old file in place so nothing is lost
+			Log.e(TAG, "Could not import legacy setlists; will retry on next start", e);
+			return false;
+			} finally {
+			if (legacy != null) legacy.close();
+		}
+	}
+	
+	static List<Integer> parseLegacyLyricIds(String lyricIdsJson) {
+		List<Integer> ids = new ArrayList<>();
+		if (lyricIdsJson != null && lyricIdsJson.startsWith("[") && lyricIdsJson.endsWith("]")) {
+			String[] parts = lyricIdsJson.replace("[", "").replace("]", "").split(",");
+			for (String part : parts) {
+				if (part.trim().isEmpty()) continue;
+				try {
+					ids.add(Integer.parseInt(part.trim()));
+					} catch (NumberFormatException e) {
+					Log.w(TAG, "Skipping malformed lyric id: " + part);
+				}
+			}
+		}
+		return ids;
+	}
+	
+	private static void insertItems(SQLiteDatabase db, long setlistId, List<Integer> lyricIds) {
+		for (int i = 0; i < lyricIds.size(); i++) {
+			ContentValues item = new ContentValues();
+			item.put(COLUMN_SETLIST_ID, setlistId);
+			item.put(COLUMN_POSITION, i);
+			item.put(COLUMN_LYRIC_ID, lyricIds.get(i));
+			db.insertOrThrow(TABLE_SETLIST_ITEMS, null, item);
+		}
 	}
 	
 	public long createSetlist(String name, List<Integer> lyricIds) {
+		long started = QueryStats.start();
 		SQLiteDatabase db = this.getWritableDatabase();
 		ContentValues values = new ContentValues();
 		values.put(COLUMN_NAME, name);
+		values.put(COLUMN_TIMESTAMP, System.currentTimeMillis());
 		
-		// Manual JSON creation
-		StringBuilder jsonBuilder = new StringBuilder("[");
-		for (int i = 0; i < lyricIds.size(); i++) {
-			jsonBuilder.append(lyricIds.get(i));
-			if (i < lyricIds.size() - 1) {
-				jsonBuilder.append(",");
+		long id;
+		db.beginTransaction();
+		try {
+			id = db.insert(TABLE_SETLISTS, null, values);
+			if (id != -1) {
+				insertItems(db, id, lyricIds);
 			}
+			db.setTransactionSuccessful();
+			} finally {
+			db.endTransaction();
 		}
-		jsonBuilder.append("]");
-		values.put(COLUMN_LYRIC_IDS, jsonBuilder.toString());
-		
+		if (id != -1) {
+			recordSetlist(id);
+		}
+		OP_CREATE.end(started, (id != -1) ? 1 + lyricIds.size() : 0);
+		return id;
+	}
+	
+	/**
+	* Creates a setlist from song titles, matched case-insensitively against the
+	* library. Lookup and inserts share one transaction, so the setlist is either
+	* stored with all of its matches or not at all.
+	* @return the number of titles matched; 0 means no setlist was created
+	*/
+	public int createSetlistFromTitles(String name, List<String> titles) {
+		long started = QueryStats.start();
+		SQLiteDatabase db = this.getWritableDatabase();
+		ContentValues values = new ContentValues();
+		values.put(COLUMN_NAME, name);
 		values.put(COLUMN_TIMESTAMP, System.currentTimeMillis());
 		
-		long id = db.insert(TABLE_SETLISTS, null, values);
-		db.close();
-		return id;
+		long id;
+		int matched;
+		db.beginTransaction();
+		try {
+			// Keys are folded in Java rather than by SQL, whose NOCASE only knows ASCII ("ÉTÉ")
+			List<String> keys = new ArrayList<>();
+			for (String title : titles) {
+				keys.add(LyricDbHelper.titleKey(title));
+			}
+			Map<String, Integer> found = findByTitleKeys(db, keys);
+			List<Integer> lyricIds = new ArrayList<>();
+			for (String title : titles) {
+				Integer lyricId = found.get(LyricDbHelper.titleKey(title));
+				// Null if there is no local song with this title
+				if (lyricId != null) {
+					lyricIds.add(lyricId);
+				}
+			}
+			if (lyricIds.isEmpty()) {
+				OP_CREATE_FROM_TITLES.end(started, 0);
+				return 0;
+			}
+			
+			id = db.insertOrThrow(TABLE_SETLISTS, null, values);
+			insertItems(db, id, lyricIds);
+			db.setTransactionSuccessful();
+			matched = lyricIds.size();
+			} finally {
+			db.endTransaction();
+		}
+		recordSetlist(id);
+		OP_CREATE_FROM_TITLES.end(started, matched);
+		return matched;
+	}
+	
+	static String sqlLyricsByTitleKeys(int count) {
+		StringBuilder placeholders = new StringBuilder();
+		for (int i = 0; i < count; i++) {
+			placeholders.append(i == 0 ? "?" : ", ?");
+		}
+		return "SELECT " + LyricDbHelper.COLUMN_TITLE_KEY + ", " + LyricDbHelper.COLUMN_ID +
+		" FROM " + LyricDbHelper.TABLE_LYRICS + " WHERE " + LyricDbHelper.COLUMN_TITLE_KEY +
+		" IN (" + placeholders + ") AND " + LyricDbHelper.LIVE;
+	}
+	
+	// Title key -> id of the oldest live song with it, looked up through the title key index
+	private static Map<String, Integer> findByTitleKeys(SQLiteDatabase db, List<String> keys) {
+		List<String> distinct = new ArrayList<>(new LinkedHashSet<>(keys));
+		Map<String, Integer> found = new HashMap<>();
+		for (int start = 0; start < distinct.size(); start += LyricDbHelper.ID_BATCH_SIZE) {
+			List<String> batch = distinct.subList(start, Math.min(distinct.size(), start + LyricDbHelper.ID_BATCH_SIZE));
+			Cursor cursor = db.rawQuery(sqlLyricsByTitleKeys(batch.size()), batch.toArray(new String[0]));
+			try {
+				while (cursor.moveToNext()) {
+					Integer oldest = found.get(cursor.getString(0));
+					if (oldest == null || cursor.getInt(1) < oldest) {
+						found.put(cursor.getString(0), cursor.getInt(1));
+					}
+				}
+				} finally {
+				cursor.close();
+			}
+		}
+		return found;
 	}
 	
+	// Counted per setlist through the items primary key, so the outer query can
+	// walk the timestamp index without grouping. Songs in the trash are not counted.
+	static final String SQL_ALL_SETLISTS =
+	"SELECT s." + COLUMN_ID + ", s." + COLUMN_NAME + ", s." + COLUMN_TIMESTAMP +
+	", (SELECT COUNT(*) FROM " + TABLE_SETLIST_ITEMS + " i JOIN " + LyricDbHelper.TABLE_LYRICS + " l" +
+	" ON l." + LyricDbHelper.COLUMN_ID + " = i." + COLUMN_LYRIC_ID +
+	" WHERE i." + COLUMN_SETLIST_ID + " = s." + COLUMN_ID + " AND l." + LyricDbHelper.LIVE + ")" +
+	" FROM " + TABLE_SETLISTS + " s" +
+	" WHERE s." + COLUMN_DELETED_AT + " IS NULL" +
+	" ORDER BY s." + COLUMN_TIMESTAMP + " DESC";
+	
+	// Items of trashed songs come back with a non-null deleted_at and are skipped
+	static final String SQL_SETLIST_WITH_ITEMS =
+	"SELECT s." + COLUMN_ID + ", s." + COLUMN_NAME + ", s." + COLUMN_TIMESTAMP + ", i." + COLUMN_LYRIC_ID +
+	", l." + LyricDbHelper.COLUMN_DELETED_AT +
+	" FROM " + TABLE_SETLISTS + " s LEFT JOIN " + TABLE_SETLIST_ITEMS + " i" +
+	" ON i." + COLUMN_SETLIST_ID + " = s." + COLUMN_ID +
+	" LEFT JOIN " + LyricDbHelper.TABLE_LYRICS + " l ON l." + LyricDbHelper.COLUMN_ID + " = i." + COLUMN_LYRIC_ID +
+	" WHERE s." + COLUMN_ID + " = ? AND s." + COLUMN_DELETED_AT + " IS NULL" +
+	" ORDER BY i." + COLUMN_POSITION;
+	
+	static final String SQL_TRASHED_SETLISTS =
+	"SELECT " + COLUMN_ID + ", " + COLUMN_NAME + ", " + COLUMN_TIMESTAMP +
+	" FROM " + TABLE_SETLISTS +
+	" WHERE " + COLUMN_DELETED_AT + " IS NOT NULL" +
+	" ORDER BY " + COLUMN_DELETED_AT + " DESC";
+	
+	static final String SQL_CONTAINS_LYRIC =
+	"SELECT EXISTS(SELECT 1 FROM " + TABLE_SETLIST_ITEMS +
+	" WHERE " + COLUMN_LYRIC_ID + " = ? AND " + COLUMN_SETLIST_ID + " = ?)";
+	
+	// The next position comes from the items primary key, not a count
+	static final String SQL_APPEND_ITEM =
+	"INSERT INTO " + TABLE_SETLIST_ITEMS +
+	" (" + COLUMN_SETLIST_ID + ", " + COLUMN_POSITION + ", " + COLUMN_LYRIC_ID + ")" +
+	" SELECT ?, COALESCE(MAX(" + COLUMN_POSITION + ") + 1, 0), ? FROM " + TABLE_SETLIST_ITEMS +
+	" WHERE " + COLUMN_SETLIST_ID + " = ?";
+	
+	static final String SQL_LYRIC_EXISTS =
+	"SELECT COUNT(*) FROM " + LyricDbHelper.TABLE_LYRICS + " WHERE " + LyricDbHelper.COLUMN_ID + " = ?";
+	
+	/**
+	* All setlists, newest first, with song counts from an aggregate over
+	* setlist_items. Songs themselves are not loaded.
+	*/
 	public List<Setlist> getAllSetlists() {
+		long started = QueryStats.start();
 		List<Setlist> setlists = new ArrayList<>();
 		SQLiteDatabase db = this.getReadableDatabase();
 		
-		Cursor cursor = db.query(TABLE_SETLISTS, null, null, null, null, null, COLUMN_TIMESTAMP + " DESC");
+		Cursor cursor = db.rawQuery(SQL_ALL_SETLISTS, null);
 		
 		if (cursor != null) {
 			while (cursor.moveToNext()) {
-				Setlist setlist = new Setlist(
-				cursor.getInt(cursor.getColumnIndexOrThrow(COLUMN_ID)),
-				cursor.getString(cursor.getColumnIndexOrThrow(COLUMN_NAME)),
-				cursor.getString(cursor.getColumnIndexOrThrow(COLUMN_LYRIC_IDS)),
-				cursor.getLong(cursor.getColumnIndexOrThrow(COLUMN_TIMESTAMP))
-				);
-				setlists.add(setlist);
+				setlists.add(new Setlist(
+				cursor.getInt(0),
+				cursor.getString(1),
+				cursor.getInt(3),
+				cursor.getLong(2)
+				));
 			}
 			cursor.close();
 		}
-		db.close();
+		OP_GET_ALL.end(started, setlists.size());
 		return setlists;
 	}
 	
+	/**
+	* Loads a setlist and its songs in order with one joined query.
+	*/
 	public Setlist getSetlistById(int setlistId) {
+		long started = QueryStats.start();
 		SQLiteDatabase db = this.getReadableDatabase();
 		Setlist setlist = null;
 		
-		Cursor cursor = db.query(
-		TABLE_SETLISTS,
-		null,
-		COLUMN_ID + " = ?",
-		new String[]{String.valueOf(setlistId)},
-		null, null, null
-		);
+		Cursor cursor = db.rawQuery(SQL_SETLIST_WITH_ITEMS, new String[]{String.valueOf(setlistId)});
 		
-		if (cursor != null && cursor.moveToFirst()) {
-			setlist = new Setlist(
-			cursor.getInt(cursor.getColumnIndexOrThrow(COLUMN_ID)),
-			cursor.getString(cursor.getColumnIndexOrThrow(COLUMN_NAME)),
-			cursor.getString(cursor.getColumnIndexOrThrow(COLUMN_LYRIC_IDS)),
-			cursor.getLong(cursor.getColumnIndexOrThrow(COLUMN_TIMESTAMP))
-			);
+		if (cursor != null) {
+			List<Integer> lyricIds = new ArrayList<>();
+			String name = null;
+			long timestamp = 0;
+			while (cursor.moveToNext()) {
+				name = cursor.getString(1);
+				timestamp = cursor.getLong(2);
+				if (!cursor.isNull(3) && cursor.isNull(4)) {
+					lyricIds.add(cursor.getInt(3));
+				}
+			}
+			if (name != null) {
+				setlist = new Setlist(setlistId, name, lyricIds, timestamp);
+			}
 			cursor.close();
 		}
-		db.close();
+		OP_GET_BY_ID.end(started, (setlist != null) ? 1 + setlist.getLyricIds().size() : 0);
 		return setlist;
 	}
 	
+	public boolean containsLyric(int setlistId, int lyricId) {
+		long started = QueryStats.start();
+		boolean contains = DatabaseUtils.longForQuery(getReadableDatabase(), SQL_CONTAINS_LYRIC,
+		new String[]{String.valueOf(lyricId), String.valueOf(setlistId)}) != 0;
+		OP_CONTAINS.end(started, 1);
+		return contains;
+	}
+	
+	/**
+	* Appends one song to the end of a setlist, touching a single item row.
+	*/
+	public boolean addLyricToSetlist(int setlistId, int lyricId) {
+		long started = QueryStats.start();
+		SQLiteDatabase db = this.getWritableDatabase();
+		db.beginTransaction();
+		try {
+			db.execSQL(SQL_APPEND_ITEM, new Object[]{setlistId, lyricId, setlistId});
+			touchSetlist(db, setlistId);
+			db.setTransactionSuccessful();
+			} catch (Exception e) {
+			Log.e(TAG, "Failed to add lyric " + lyricId + " to setlist " + setlistId, e);
+			OP_ADD_LYRIC.end(started, 0);
+			return false;
+			} finally {
+			db.endTransaction();
+		}
+		recordSetlist(setlistId);
+		OP_ADD_LYRIC.end(started, 1);
+		return true;
+	}
+	
+	public boolean removeLyricFromSetlist(int setlistId, int lyricId) {
+		long started = QueryStats.start();
+		SQLiteDatabase db = this.getWritableDatabase();
+		int rowsAffected;
+		db.beginTransaction();
+		try {
+			rowsAffected = db.delete(TABLE_SETLIST_ITEMS,
+			COLUMN_SETLIST_ID + " = ? AND " + COLUMN_LYRIC_ID + " = ?",
+			new String[]{String.valueOf(setlistId), String.valueOf(lyricId)});
+			touchSetlist(db, setlistId);
+			db.setTransactionSuccessful();
+			} finally {
+			db.endTransaction();
+		}
+		recordSetlist(setlistId);
+		OP_REMOVE_LYRIC.end(started, rowsAffected);
+		return rowsAffected > 0;
+	}
+	
+	private static void touchSetlist(SQLiteDatabase db, int setlistId) {
+		ContentValues values = new ContentValues();
+		values.put(COLUMN_TIMESTAMP, System.currentTimeMillis());
+		db.update(TABLE_SETLISTS, values, COLUMN_ID + " = ?", new String[]{String.valueOf(setlistId)});
+	}
+	
 	// Add this method to SetlistDbHelper.java
 	public boolean renameSetlist(int setlistId, String newName) {
+		long started = QueryStats.start();
 		SQLiteDatabase db = this.getWritableDatabase();
 		ContentValues values = new ContentValues();
 		values.put(COLUMN_NAME, newName);
@@ -122,46 +493,85 @@ public class SetlistDbHelper extends SQLiteOpenHelper {
 		new String[]{String.valueOf(setlistId)}
 		);
 		
-		db.close();
+		if (rowsAffected > 0) {
+			recordSetlist(setlistId);
+		}
+		OP_RENAME.end(started, rowsAffected);
 		return rowsAffected > 0;
 	}
 	
-	// ADD THIS METHOD TO FIX THE ERROR:
+	/**
+	* Replaces the whole song order of a setlist. Prefer addLyricToSetlist or
+	* removeLyricFromSetlist for single-song changes.
+	*/
 	public boolean updateSetlistLyrics(int setlistId, List<Integer> lyricIds) {
+		long started = QueryStats.start();
 		SQLiteDatabase db = this.getWritableDatabase();
-		ContentValues values = new ContentValues();
-		
-		// Convert list of IDs to JSON array string
-		StringBuilder jsonBuilder = new StringBuilder("[");
-		for (int i = 0; i < lyricIds.size(); i++) {
-			jsonBuilder.append(lyricIds.get(i));
-			if (i < lyricIds.size() - 1) {
-				jsonBuilder.append(",");
+		db.beginTransaction();
+		try {
+			db.delete(TABLE_SETLIST_ITEMS, COLUMN_SETLIST_ID + " = ?", new String[]{String.valueOf(setlistId)});
+			insertItems(db, setlistId, lyricIds);
+			touchSetlist(db, setlistId);
+			db.setTransactionSuccessful();
+			} finally {
+			db.endTransaction();
+		}
+		recordSetlist(setlistId);
+		OP_UPDATE_LYRICS.end(started, lyricIds.size());
+		return true;
+	}
+	
+	/**
+	* Moves a setlist to the trash with its songs still in it. DatabaseMaintenance
+	* deletes it for good, items included, once the retention period has passed.
+	*/
+	public void deleteSetlist(int id) {
+		long started = QueryStats.start();
+		boolean trashed = setDeletedAt(id, System.currentTimeMillis());
+		OP_TRASH.end(started, trashed ? 1 : 0);
+	}
+	
+	/**
+	* @return false if the setlist was not in the trash
+	*/
+	public boolean restoreSetlist(int id) {
+		long started = QueryStats.start();
+		boolean restored = setDeletedAt(id, null);
+		OP_RESTORE.end(started, restored ? 1 : 0);
+		return restored;
+	}
+	
+	/**
+	* Trashed setlists, most recently deleted first, without song counts.
+	*/
+	public List<Setlist> getTrashedSetlists() {
+		long started = QueryStats.start();
+		List<Setlist> setlists = new ArrayList<>();
+		Cursor cursor = getReadableDatabase().rawQuery(SQL_TRASHED_SETLISTS, null);
+		try {
+			while (cursor.moveToNext()) {
+				setlists.add(new Setlist(cursor.getInt(0), cursor.getString(1), 0, cursor.getLong(2)));
 			}
+			} finally {
+			cursor.close();
+		}
+		OP_GET_TRASHED.end(started, setlists.size());
+		return setlists;
+	}
+	
+	private boolean setDeletedAt(int id, Long deletedAt) {
+		ContentValues values = new ContentValues();
+		values.put(COLUMN_DELETED_AT, deletedAt);
+		int rowsAffected = getWritableDatabase().update(TABLE_SETLISTS, values,
+		COLUMN_ID + " = ? AND " + COLUMN_DELETED_AT + (deletedAt != null ? " IS NULL" : " IS NOT NULL"),
+		new String[]{String.valueOf(id)});
+		if (rowsAffected > 0) {
+			recordSetlist(id);
 		}
-		jsonBuilder.append("]");
-		
-		values.put(COLUMN_LYRIC_IDS, jsonBuilder.toString());
-		values.put(COLUMN_TIMESTAMP, System.currentTimeMillis());
-		
-		int rowsAffected = db.update(
-		TABLE_SETLISTS,
-		values,
-		COLUMN_ID + " = ?",
-		new String[]{String.valueOf(setlistId)}
-		);
-		
-		db.close();
 		return rowsAffected > 0;
 	}
 	
-	public void deleteSetlist(int id) {
-		SQLiteDatabase db = this.getWritableDatabase();
-		db.delete(
-		TABLE_SETLISTS,
-		COLUMN_ID + " = ?",
-		new String[]{String.valueOf(id)}
-		);
-		db.close();
+	private void recordSetlist(long setlistId) {
+		lyricDbHelper.getChangeTracker().recordRow(TABLE_SETLISTS, setlistId);
 	}
 }
\ No newline at end of file
@@ -13,13 +13,15 @@ import android.widget.TextView;
 import android.widget.Toast;
 import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
+import com.google.android.material.snackbar.Snackbar;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 
 public class SetlistManagerActivity extends AppCompatActivity {
-	private SetlistDbHelper setlistDbHelper;
+	private LyricRepository repository;
 	private ListView setlistListView;
 	private TextView tvEmptyState;
 	private Button btnDelete;
@@ -27,13 +29,15 @@ public class SetlistManagerActivity extends AppCompatActivity {
 	private ArrayAdapter<String> adapter;
 	private Set<Integer> selectedPositions = new HashSet<>();
 	private boolean isSelectionMode = false;
+	// Setlists table generation the list was loaded at
+	private long setlistsGeneration;
 	
 	@Override
 	protected void onCreate(Bundle savedInstanceState) {
 		super.onCreate(savedInstanceState);
 		setContentView(R.layout.activity_setlist_manager);
 		
-		setlistDbHelper = new SetlistDbHelper(this);
+		repository = LyricRepository.getInstance(this);
 		setlistListView = findViewById(R.id.lv_setlists);
 		tvEmptyState = findViewById(R.id.tv_empty_state);
 		btnDelete = findViewById(R.id.btn_delete);
@@ -59,7 +63,12 @@ public class SetlistManagerActivity extends AppCompatActivity {
 	}
 	
 	private void loadSetlists() {
-		currentSetlists = setlistDbHelper.getAllSetlists();
+		setlistsGeneration = repository.getChangeTracker().getGeneration(SetlistDbHelper.TABLE_SETLISTS);
+		repository.read(this, (lyrics, setlists) -> setlists.getAllSetlists(), this::showSetlists);
+	}
+	
+	private void showSetlists(List<Setlist> setlists) {
+		currentSetlists = setlists;
 		
 		if (currentSetlists == null || currentSetlists.isEmpty()) {
 			tvEmptyState.setVisibility(View.VISIBLE);
@@ -78,7 +87,7 @@ public class SetlistManagerActivity extends AppCompatActivity {
 		String[] setlistNames = new String[currentSetlists.size()];
 		for (int i = 0; i < currentSetlists.size(); i++) {
 			Setlist setlist = currentSetlists.get(i);
-			int songCount = setlist.getLyricIds().size();
+			int songCount = setlist.getSongCount();
 			String prefix = selectedPositions.contains(i) ? "✓ " : "";
 			setlistNames[i] = prefix + setlist.getName() + " (" + songCount + " songs)";
 		}
@@ -152,29 +161,33 @@ public class SetlistManagerActivity extends AppCompatActivity {
 	}
 	
 	private void renameSetlist(Setlist setlist, String newName) {
-		boolean success = setlistDbHelper.renameSetlist(setlist.getId(), newName);
-		
-		if (success) {
-			Toast.makeText(this, "Setlist renamed to \"" + newName + "\"", Toast.LENGTH_SHORT).show();
-			loadSetlists(); // Refresh the list
-			} else {
-			Toast.makeText(this, "Failed to rename setlist", Toast.LENGTH_SHORT).show();
-		}
+		repository.write(this, (lyrics, setlists) -> setlists.renameSetlist(setlist.getId(), newName), success -> {
+			if (success) {
+				Toast.makeText(this, "Setlist renamed to \"" + newName + "\"", Toast.LENGTH_SHORT).show();
+				loadSetlists(); // Refresh the list
+				} else {
+				Toast.makeText(this, "Failed to rename setlist", Toast.LENGTH_SHORT).show();
+			}
+		});
 	}
 	
 	private void showSingleDeleteConfirmation(Setlist setlist) {
 		new AlertDialog.Builder(this)
 		.setTitle("Confirm Delete")
-		.setMessage("Delete \"" + setlist.getName() + "\"?\n\nThis action cannot be undone.")
+		.setMessage("Delete \"" + setlist.getName() + "\"?")
 		.setPositiveButton("Delete", (dialog, which) -> deleteSingleSetlist(setlist))
 		.setNegativeButton("Cancel", null)
 		.show();
 	}
 	
 	private void deleteSingleSetlist(Setlist setlist) {
-		setlistDbHelper.deleteSetlist(setlist.getId());
-		Toast.makeText(this, "Setlist deleted", Toast.LENGTH_SHORT).show();
-		loadSetlists(); // Refresh the list
+		repository.write(this, (lyrics, setlists) -> {
+			setlists.deleteSetlist(setlist.getId());
+			return null;
+		}, done -> {
+			showUndo("Setlist deleted", Collections.singletonList(setlist.getId()));
+			loadSetlists(); // Refresh the list
+		});
 	}
 	
 	private void enterSelectionMode() {
@@ -217,7 +230,7 @@ public class SetlistManagerActivity extends AppCompatActivity {
 		
 		new AlertDialog.Builder(this)
 		.setTitle("Confirm Delete")
-		.setMessage(message + "\n\nThis action cannot be undone.")
+		.setMessage(message)
 		.setPositiveButton("Delete", (dialog, which) -> deleteSelectedSetlists())
 		.setNegativeButton("Cancel", null)
 		.show();
@@ -228,22 +241,39 @@ public class SetlistManagerActivity extends AppCompatActivity {
 		// Sort in descending order to delete from end to beginning
 		positionsToDelete.sort((a, b) -> b.compareTo(a));
 		
-		int deletedCount = 0;
+		List<Integer> idsToDelete = new ArrayList<>();
 		for (int position : positionsToDelete) {
 			if (position < currentSetlists.size()) {
-				Setlist setlistToDelete = currentSetlists.get(position);
-				setlistDbHelper.deleteSetlist(setlistToDelete.getId());
-				deletedCount++;
+				idsToDelete.add(currentSetlists.get(position).getId());
 			}
 		}
 		
-		String message = deletedCount == 1 ?
-		"Setlist deleted" :
-		deletedCount + " setlists deleted";
-		Toast.makeText(this, message, Toast.LENGTH_SHORT).show();
+		repository.write(this, (lyrics, setlists) -> {
+			for (int id : idsToDelete) {
+				setlists.deleteSetlist(id);
+			}
+			return idsToDelete.size();
+		}, deletedCount -> {
+			String message = deletedCount == 1 ?
+			"Setlist deleted" :
+			deletedCount + " setlists deleted";
+			showUndo(message, idsToDelete);
+			loadSetlists(); // Refresh the list
+		});
 		
 		exitSelectionMode();
-		loadSetlists(); // Refresh the list
+	}
+	
+	// Deleted setlists sit in the trash until maintenance purges them, so undo just restores them
+	private void showUndo(String message, List<Integer> ids) {
+		Snackbar.make(findViewById(android.R.id.content), message, Snackbar.LENGTH_LONG)
+		.setAction("Undo", v -> repository.write(this, (lyrics, setlists) -> {
+			for (int id : ids) {
+				setlists.restoreSetlist(id);
+			}
+			return null;
+		}, done -> loadSetlists()))
+		.show();
 	}
 	
 	private void openSetlist(Setlist setlist) {
@@ -264,6 +294,9 @@ public class SetlistManagerActivity extends AppCompatActivity {
 	@Override
 	protected void onResume() {
 		super.onResume();
-		loadSetlists(); // Refresh when returning from other activities
+		// Refresh only if a setlist was written while another screen was in front
+		if (!repository.getChangeTracker().changesSince(SetlistDbHelper.TABLE_SETLISTS, setlistsGeneration).isEmpty()) {
+			loadSetlists();
+		}
 	}
 }
\ No newline at end of file
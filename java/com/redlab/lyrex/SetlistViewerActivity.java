@@ -10,13 +10,19 @@ import android.widget.TextView;
 import android.widget.Toast;
 import androidx.appcompat.app.AppCompatActivity;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 public class SetlistViewerActivity extends AppCompatActivity {
 	private Setlist currentSetlist;
 	private List<Lyric> setlistLyrics;
-	private LyricDbHelper lyricDbHelper;
-	private SetlistDbHelper setlistDbHelper;
+	private LyricRepository repository;
+	// Table generations the screen was loaded at, to refresh only what changed on resume
+	private long lyricsGeneration;
+	private long setlistsGeneration;
 	
 	// Corrected variable names to match XML
 	private TextView tvSetlistName;
@@ -28,8 +34,7 @@ public class SetlistViewerActivity extends AppCompatActivity {
 		super.onCreate(savedInstanceState);
 		setContentView(R.layout.activity_setlist_viewer);
 		
-		lyricDbHelper = new LyricDbHelper(this);
-		setlistDbHelper = new SetlistDbHelper(this);
+		repository = LyricRepository.getInstance(this);
 		
 		// Corrected findViewById calls
 		tvSetlistName = findViewById(R.id.tv_setlist_name);
@@ -72,22 +77,25 @@ public class SetlistViewerActivity extends AppCompatActivity {
 	}
 	
 	private void loadSetlistById(int setlistId) {
-		currentSetlist = setlistDbHelper.getSetlistById(setlistId);
+		rememberGenerations();
+		// Filled on the reader thread together with the setlist, read back in the callback
+		List<Lyric> loadedLyrics = new ArrayList<>();
+		repository.read(this, (lyrics, setlists) -> {
+			Setlist setlist = setlists.getSetlistById(setlistId);
+			if (setlist != null) {
+				loadedLyrics.addAll(lyrics.getLyricsByIds(setlist.getLyricIds()));
+			}
+			return setlist;
+		}, setlist -> showSetlist(setlist, loadedLyrics));
+	}
+	
+	private void showSetlist(Setlist setlist, List<Lyric> lyrics) {
+		currentSetlist = setlist;
 		
 		if (currentSetlist != null) {
 			tvSetlistName.setText(currentSetlist.getName());
 			
-			setlistLyrics = new ArrayList<>();
-			List<Integer> lyricIds = currentSetlist.getLyricIds();
-			
-			if (lyricIds != null && !lyricIds.isEmpty()) {
-				for (Integer id : lyricIds) {
-					Lyric lyric = lyricDbHelper.getLyricById(id);
-					if (lyric != null) {
-						setlistLyrics.add(lyric);
-					}
-				}
-			}
+			setlistLyrics = lyrics;
 			
 			// Update song count if you have that TextView
 			TextView tvSongCount = findViewById(R.id.tv_song_count);
@@ -104,14 +112,12 @@ public class SetlistViewerActivity extends AppCompatActivity {
 	
 	private void loadLyricsFromIds(List<Integer> lyricIds, String setName) {
 		tvSetlistName.setText(setName != null ? setName : "Imported Setlist");
-		
-		setlistLyrics = new ArrayList<>();
-		for (Integer id : lyricIds) {
-			Lyric lyric = lyricDbHelper.getLyricById(id);
-			if (lyric != null) {
-				setlistLyrics.add(lyric);
-			}
-		}
+		rememberGenerations();
+		repository.read(this, (lyrics, setlists) -> lyrics.getLyricsByIds(lyricIds), this::showLyrics);
+	}
+	
+	private void showLyrics(List<Lyric> lyrics) {
+		setlistLyrics = lyrics;
 		
 		// Update song count
 		TextView tvSongCount = findViewById(R.id.tv_song_count);
@@ -194,27 +200,60 @@ public class SetlistViewerActivity extends AppCompatActivity {
 		return ids;
 	}
 	
+	private void rememberGenerations() {
+		ChangeTracker tracker = repository.getChangeTracker();
+		lyricsGeneration = tracker.getGeneration(LyricDbHelper.TABLE_LYRICS);
+		setlistsGeneration = tracker.getGeneration(SetlistDbHelper.TABLE_SETLISTS);
+	}
+	
 	@Override
 	protected void onResume() {
 		super.onResume();
-		// Refresh data if lyrics were edited
+		if (setlistLyrics == null) return; // Still loading
+		
+		ChangeTracker tracker = repository.getChangeTracker();
 		if (currentSetlist != null) {
-			// Reload the setlist to get any updates
-			loadSetlistById(currentSetlist.getId());
-			} else if (setlistLyrics != null && !setlistLyrics.isEmpty()) {
-			// For direct lyric IDs, just refresh the list
-			setupListView();
+			ChangeTracker.Changes setlistChanges =
+			tracker.changesSince(SetlistDbHelper.TABLE_SETLISTS, setlistsGeneration);
+			if (setlistChanges.isEverything() || setlistChanges.getIds().contains(currentSetlist.getId())) {
+				// Songs were added, removed or reordered
+				loadSetlistById(currentSetlist.getId());
+				return;
+			}
+			setlistsGeneration = setlistChanges.generation;
+		}
+		
+		ChangeTracker.Changes lyricChanges = tracker.changesSince(LyricDbHelper.TABLE_LYRICS, lyricsGeneration);
+		if (lyricChanges.isEmpty()) return;
+		
+		lyricsGeneration = lyricChanges.generation;
+		List<Integer> changedIds = new ArrayList<>();
+		for (Lyric lyric : setlistLyrics) {
+			if (lyricChanges.isEverything() || lyricChanges.getIds().contains(lyric.getId())) {
+				changedIds.add(lyric.getId());
+			}
+		}
+		if (!changedIds.isEmpty()) {
+			repository.read(this, (lyrics, setlists) -> lyrics.getLyricsByIds(changedIds),
+			fresh -> replaceLyrics(changedIds, fresh));
 		}
 	}
 	
-	@Override
-	protected void onDestroy() {
-		super.onDestroy();
-		if (lyricDbHelper != null) {
-			lyricDbHelper.close();
+	// Swaps in edited songs and drops deleted ones, keeping the setlist order
+	private void replaceLyrics(List<Integer> changedIds, List<Lyric> fresh) {
+		Map<Integer, Lyric> byId = new HashMap<>();
+		for (Lyric lyric : fresh) {
+			byId.put(lyric.getId(), lyric);
 		}
-		if (setlistDbHelper != null) {
-			setlistDbHelper.close();
+		Set<Integer> changed = new HashSet<>(changedIds);
+		List<Lyric> updated = new ArrayList<>();
+		for (Lyric lyric : setlistLyrics) {
+			if (!changed.contains(lyric.getId())) {
+				updated.add(lyric);
+				} else if (byId.containsKey(lyric.getId())) {
+				updated.add(byId.get(lyric.getId()));
+			}
 		}
+		showLyrics(updated);
 	}
 }
\ No newline at end of file
@@ -0,0 +1,43 @@
+package com.redlab.lyrex;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class ChordChartTest {
+	@Test
+	public void flatKeysAreSpelledWithFlats() {
+		// C up one is Db major, which is written in flats
+		assertEquals("[Db]love [Gb]me", ChordChart.parse("[C]love [F]me").render(1));
+	}
+	
+	@Test
+	public void sharpKeysAreSpelledWithSharps() {
+		// Am is in C; up two is D major, which is written in sharps
+		assertEquals("[Bm]go [F#]on", ChordChart.parse("[Am]go [E]on").render(2));
+		assertEquals("[Bm]go [F#]on", ChordChart.parse("[Am]go [E]on").render(-10));
+	}
+	
+	@Test
+	public void slashChordsMoveTheirBass() {
+		assertEquals("[D/F#]down [Em7/D]we go", ChordChart.parse("[C/E]down [Dm7/C]we go").render(2));
+	}
+	
+	@Test
+	public void chordLinesKeepChordsOverTheirSyllables() {
+		String text = "C     G  Am\nhello there you\n";
+		assertEquals("Db    Ab Bbm\nhello there you\n", ChordChart.parse(text).render(1));
+		assertEquals("D     A  Bm\nhello there you\n", ChordChart.parse(text).render(2));
+	}
+	
+	@Test
+	public void loneShortWordsAreLyrics() {
+		String text = "A\nE\nAm\nDo you\n";
+		assertEquals(text, ChordChart.parse(text).render(3));
+	}
+	
+	@Test
+	public void loneChordWithBarMarkIsAChordLine() {
+		assertEquals("| D |\nla\n", ChordChart.parse("| C |\nla\n").render(2));
+	}
+}
\ No newline at end of file
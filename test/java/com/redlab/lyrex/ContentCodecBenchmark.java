@@ -0,0 +1,37 @@
+package com.redlab.lyrex;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+* Space saved by ContentCodec on generated songs of several sizes, with the
+* time to encode and decode each. Reports only; run its main method by hand.
+*/
+public final class ContentCodecBenchmark {
+	private static final int ROUNDS = 20;
+	
+	private ContentCodecBenchmark() {}
+	
+	public static void main(String[] args) {
+		for (int kilobytes : new int[]{4, 16, 64, 256}) {
+			String song = SectionMarkersBenchmark.song(kilobytes * 1024);
+			int raw = song.getBytes(StandardCharsets.UTF_8).length;
+			byte[] blob = ContentCodec.encode(song);
+			
+			long encode = Long.MAX_VALUE;
+			long decode = Long.MAX_VALUE;
+			for (int round = 0; round < ROUNDS; round++) {
+				long start = System.nanoTime();
+				ContentCodec.encode(song);
+				encode = Math.min(encode, System.nanoTime() - start);
+				
+				start = System.nanoTime();
+				if (!ContentCodec.decode(blob).equals(song)) {
+					throw new AssertionError("Round trip failed at " + kilobytes + " KB");
+				}
+				decode = Math.min(decode, System.nanoTime() - start);
+			}
+			System.out.println(kilobytes + " KB song: " + raw + " bytes stored as " + blob.length +
+			" (" + (100 * blob.length / raw) + "%), encode " + encode / 1000 + " us, decode " + decode / 1000 + " us");
+		}
+	}
+}
\ No newline at end of file
@@ -0,0 +1,87 @@
+package com.redlab.lyrex;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.Test;
+
+public class ContentCodecTest {
+	private static String repeat(String line, int chars) {
+		StringBuilder text = new StringBuilder();
+		while (text.length() < chars) {
+			text.append(line);
+		}
+		return text.toString();
+	}
+	
+	private static void assertRejected(byte[] blob) {
+		try {
+			ContentCodec.decode(blob);
+			fail("decoded " + blob.length + " bytes");
+			} catch (IllegalStateException expected) {
+		}
+	}
+	
+	@Test
+	public void longLyricsRoundTrip() {
+		String song = SectionMarkersBenchmark.song(64 * 1024);
+		byte[] blob = ContentCodec.encode(song);
+		assertEquals(song, ContentCodec.decode(blob));
+		assertTrue(blob.length < song.length() / 2);
+	}
+	
+	@Test
+	public void blobsStartWithTheFormatMarker() {
+		byte[] blob = ContentCodec.encode(repeat("la la la\n", ContentCodec.COMPRESSION_THRESHOLD_CHARS));
+		assertEquals(1, blob[0]);
+		
+		blob[0] = 2;
+		assertRejected(blob);
+	}
+	
+	@Test
+	public void emptyAndShortContentStaysPlain() {
+		assertNull(ContentCodec.encode(null));
+		assertNull(ContentCodec.encode(""));
+		assertNull(ContentCodec.encode(repeat("a", ContentCodec.COMPRESSION_THRESHOLD_CHARS - 1)));
+		assertRejected(new byte[0]);
+	}
+	
+	@Test
+	public void nonAsciiRoundTrips() {
+		// Accents, a BMP symbol and a supplementary character
+		String song = repeat("Canción de amor ☕ corazón 𝄞\n", 2 * ContentCodec.COMPRESSION_THRESHOLD_CHARS);
+		assertEquals(song, ContentCodec.decode(ContentCodec.encode(song)));
+	}
+	
+	@Test
+	public void incompressibleContentStaysPlain() {
+		// Seven random bits per UTF-8 byte cannot shrink to the kept ratio
+		Random random = new Random(3);
+		StringBuilder noise = new StringBuilder();
+		while (noise.length() < 2 * ContentCodec.COMPRESSION_THRESHOLD_CHARS) {
+			noise.append((char) random.nextInt(128));
+		}
+		assertNull(ContentCodec.encode(noise.toString()));
+	}
+	
+	@Test
+	public void truncatedBlobsAreRejected() {
+		byte[] blob = ContentCodec.encode(SectionMarkersBenchmark.song(16 * 1024));
+		for (int length : new int[]{1, 2, blob.length / 2, blob.length - 1}) {
+			assertRejected(Arrays.copyOf(blob, length));
+		}
+	}
+	
+	@Test
+	public void corruptBlobsAreRejected() {
+		byte[] blob = ContentCodec.encode(SectionMarkersBenchmark.song(16 * 1024));
+		byte[] corrupt = Arrays.copyOf(blob, blob.length);
+		Arrays.fill(corrupt, 1, 9, (byte) 0xFF);
+		assertRejected(corrupt);
+	}
+}
\ No newline at end of file
@@ -0,0 +1,74 @@
+package com.redlab.lyrex;
+
+import static org.junit.Assert.assertEquals;
+
+import android.text.SpanWatcher;
+import android.text.Spannable;
+import android.text.SpannableStringBuilder;
+import android.text.Spanned;
+import android.text.style.CharacterStyle;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+@RunWith(RobolectricTestRunner.class)
+public class EditorHighlighterTest {
+	// Counts the highlight spans added and removed from the moment it is attached
+	private static final class SpanCounter implements SpanWatcher {
+		int added;
+		int removed;
+		
+		@Override
+		public void onSpanAdded(Spannable text, Object what, int start, int end) {
+			if (what instanceof CharacterStyle) added++;
+		}
+		
+		@Override
+		public void onSpanRemoved(Spannable text, Object what, int start, int end) {
+			if (what instanceof CharacterStyle) removed++;
+		}
+		
+		@Override
+		public void onSpanChanged(Spannable text, Object what, int oldStart, int oldEnd, int newStart, int newEnd) {}
+	}
+	
+	private SpannableStringBuilder text;
+	private SpanCounter counter;
+	private int markers;
+	
+	@Before
+	public void setUp() {
+		// About 1000 section headers
+		text = new SpannableStringBuilder(SectionMarkersBenchmark.song(256 * 1024));
+		markers = EditorHighlighter.rescan(text, 0, text.length());
+		text.setSpan(new EditorHighlighter(), 0, text.length(), Spanned.SPAN_INCLUSIVE_INCLUSIVE);
+		counter = new SpanCounter();
+		text.setSpan(counter, 0, text.length(), Spanned.SPAN_INCLUSIVE_INCLUSIVE);
+	}
+	
+	@Test
+	public void typingInABodyLineTouchesNoSpans() {
+		int header = text.toString().indexOf("[Verse 1]\n", text.length() / 2);
+		text.insert(header + "[Verse 1]\n".length(), "x");
+		
+		assertEquals(0, counter.added);
+		assertEquals(0, counter.removed);
+		assertEquals(2 * markers, highlightSpans());
+	}
+	
+	@Test
+	public void typingInAHeaderTouchesOnlyItsOwnSpans() {
+		int header = text.toString().indexOf("[Verse 1]\n", text.length() / 2);
+		text.insert(header + "[Verse 1".length(), "2");
+		
+		// One colour and one bold span for the line's single marker
+		assertEquals(2, counter.removed);
+		assertEquals(2, counter.added);
+		assertEquals(2 * markers, highlightSpans());
+	}
+	
+	private int highlightSpans() {
+		return text.getSpans(0, text.length(), CharacterStyle.class).length;
+	}
+}
\ No newline at end of file
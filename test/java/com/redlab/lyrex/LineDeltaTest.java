@@ -0,0 +1,88 @@
+package com.redlab.lyrex;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.util.Random;
+import org.junit.Test;
+
+public class LineDeltaTest {
+	@Test
+	public void appliedDiffRebuildsTheNewText() {
+		String[][] pairs = {
+			{"", ""},
+			{"", "a\nb"},
+			{"a\nb", ""},
+			{"a\nb\nc", "a\nb\nc"},
+			{"a\nb\nc", "a\nx\nc"},
+			{"a\nb\nc", "a\nc"},
+			{"a\nc", "a\nb\nb\nc"},
+			{"a\nb\n", "a\nb"},
+			{"a\nb", "a\nb\n"},
+			{"+a\n=1\n-2", "-2\n+a"}
+		};
+		for (String[] pair : pairs) {
+			assertEquals(pair[1], LineDelta.apply(pair[0], LineDelta.diff(pair[0], pair[1])));
+		}
+	}
+	
+	@Test
+	public void randomEditsRoundTrip() {
+		Random random = new Random(42);
+		String text = "";
+		for (int i = 0; i < 300; i++) {
+			String edited = edit(text, random);
+			assertEquals(edited, LineDelta.apply(text, LineDelta.diff(text, edited)));
+			text = edited;
+		}
+	}
+	
+	@Test
+	public void middleTooLargeForTheTableIsReplacedWhole() {
+		StringBuilder from = new StringBuilder("head");
+		StringBuilder to = new StringBuilder("head");
+		for (int i = 0; i < 1000; i++) {
+			from.append("\nold ").append(i);
+			to.append("\nnew ").append(i);
+		}
+		from.append("\ntail");
+		to.append("\ntail");
+		String delta = LineDelta.diff(from.toString(), to.toString());
+		assertEquals(to.toString(), LineDelta.apply(from.toString(), delta));
+	}
+	
+	@Test
+	public void deltasThatDoNotFitTheBaseAreRejected() {
+		String[] corrupt = {"=5", "=1", "-1\n=3", "?1", "=x", ""};
+		for (String delta : corrupt) {
+			try {
+				LineDelta.apply("a\nb", delta);
+				fail("Accepted " + delta);
+				} catch (IllegalArgumentException expected) {
+				// NumberFormatException included
+			}
+		}
+	}
+	
+	// Inserts, replaces or removes a random line
+	private static String edit(String text, Random random) {
+		String[] lines = text.isEmpty() ? new String[0] : text.split("\n", -1);
+		StringBuilder out = new StringBuilder();
+		int at = random.nextInt(lines.length + 1);
+		int action = random.nextInt(3);
+		for (int i = 0; i <= lines.length; i++) {
+			if (i == at && action != 2) {
+				append(out, "line " + random.nextInt(20));
+			}
+			if (i < lines.length && !(i == at && action > 0)) {
+				append(out, lines[i]);
+			}
+		}
+		return out.toString();
+	}
+	
+	private static void append(StringBuilder out, String line) {
+		if (out.length() > 0) out.append('\n');
+		out.append(line);
+	}
+}
\ No newline at end of file
@@ -0,0 +1,87 @@
+package com.redlab.lyrex;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import android.content.ContentValues;
+import android.database.sqlite.SQLiteDatabase;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+@RunWith(RobolectricTestRunner.class)
+public class LyricRevisionsTest {
+	private static final int LYRIC_ID = 1;
+	
+	private SQLiteDatabase db;
+	private long clock;
+	
+	@Before
+	public void setUp() {
+		db = SQLiteDatabase.create(null);
+		LyricRevisions.create(db);
+	}
+	
+	@After
+	public void tearDown() {
+		db.close();
+	}
+	
+	@Test
+	public void editsAcrossTheChunkThresholdLeaveEveryRevisionRebuildable() {
+		StringBuilder huge = new StringBuilder();
+		while (!LyricChunks.needsChunks(huge.toString())) {
+			huge.append("a very long song line\n");
+		}
+		String[] texts = {"one\ntwo", "one\ntwo\nthree", huge.toString(), "short again", "short again\nand more",
+			"short\nand more"};
+		for (int i = 1; i < texts.length; i++) {
+			edit(texts[i - 1], texts[i]);
+		}
+		
+		// The edits to and from the chunked body are not kept
+		assertEquals(texts[0], LyricRevisions.reconstruct(db, LYRIC_ID, 0));
+		assertEquals(texts[1], LyricRevisions.reconstruct(db, LYRIC_ID, 1));
+		assertEquals(texts[4], LyricRevisions.reconstruct(db, LYRIC_ID, 2));
+		assertEquals(texts[5], LyricRevisions.reconstruct(db, LYRIC_ID, 3));
+		assertNull(LyricRevisions.reconstruct(db, LYRIC_ID, 4));
+	}
+	
+	@Test
+	public void everyRevisionRebuildsAcrossKeyframes() {
+		int edits = 3 * LyricRevisions.KEYFRAME_INTERVAL + 5;
+		String[] texts = new String[edits + 1];
+		texts[0] = "verse one\nchorus";
+		for (int i = 1; i <= edits; i++) {
+			// Alternately add a line and rewrite the first one
+			texts[i] = (i % 2 == 0) ? texts[i - 1] + "\nline " + i : texts[i - 1].replaceFirst("^[^\n]*", "verse " + i);
+			edit(texts[i - 1], texts[i]);
+		}
+		for (int revision = 0; revision <= edits; revision++) {
+			assertEquals("revision " + revision, texts[revision], LyricRevisions.reconstruct(db, LYRIC_ID, revision));
+		}
+	}
+	
+	@Test
+	public void corruptDeltasRebuildAsNull() {
+		edit("a\nb", "a\nc");
+		edit("a\nc", "a\nd");
+		assertEquals("a\nd", LyricRevisions.reconstruct(db, LYRIC_ID, 2));
+		
+		ContentValues corrupt = new ContentValues();
+		corrupt.put(LyricRevisions.COLUMN_DATA, "=9");
+		db.update(LyricRevisions.TABLE_LYRIC_REVISIONS, corrupt, LyricRevisions.COLUMN_REVISION + " = 1", null);
+		assertNull(LyricRevisions.reconstruct(db, LYRIC_ID, 2));
+		corrupt.put(LyricRevisions.COLUMN_DATA, "=x");
+		db.update(LyricRevisions.TABLE_LYRIC_REVISIONS, corrupt, LyricRevisions.COLUMN_REVISION + " = 1", null);
+		assertNull(LyricRevisions.reconstruct(db, LYRIC_ID, 2));
+		// The keyframe before the damage still rebuilds
+		assertEquals("a\nb", LyricRevisions.reconstruct(db, LYRIC_ID, 0));
+	}
+	
+	private void edit(String from, String to) {
+		LyricRevisions.record(db, LYRIC_ID, from, clock++, to, clock++);
+	}
+}
\ No newline at end of file
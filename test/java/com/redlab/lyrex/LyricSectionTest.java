@@ -0,0 +1,38 @@
+package com.redlab.lyrex;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.List;
+import org.junit.Test;
+
+public class LyricSectionTest {
+	@Test
+	public void sectionNamesInLyricLinesAreNotHeaders() {
+		String text = "I got a hook in my heart\nPlay tag with me\nverso la luce";
+		assertArrayEquals(new int[0], LyricSection.findHeaders(text));
+	}
+	
+	@Test
+	public void bracketedColonAndBareHeadersAreFound() {
+		String text = "[Hook]\nla\nCoro:\nla\nTag x2\nla\nbridge over water\n";
+		assertArrayEquals(new int[]{
+			1, 5, SectionMarkers.KIND_HOOK,
+			10, 14, SectionMarkers.KIND_CHORUS,
+			19, 22, SectionMarkers.KIND_TAG
+		}, LyricSection.findHeaders(text));
+	}
+	
+	@Test
+	public void parseSplitsAtHeadersWithRepeats() {
+		String text = "intro words\n[Verse 1]\nline\n[Chorus x2]\nsing\n";
+		List<LyricSection> sections = LyricSection.parse(text, LyricSection.findHeaders(text));
+		assertEquals(3, sections.size());
+		assertEquals(LyricSection.KIND_UNMARKED, sections.get(0).getKind());
+		assertEquals("Verse 1", sections.get(1).getLabel());
+		assertEquals(1, sections.get(1).getStartLine());
+		assertEquals(3, sections.get(1).getEndLine());
+		assertEquals("chorus", sections.get(2).getTypeName());
+		assertEquals(2, sections.get(2).getRepeat());
+	}
+}
\ No newline at end of file
@@ -0,0 +1,33 @@
+package com.redlab.lyrex;
+
+import static org.junit.Assert.assertEquals;
+
+import android.database.sqlite.SQLiteDatabase;
+import java.util.Collections;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+@RunWith(RobolectricTestRunner.class)
+public class QueryPlanCheckTest {
+	private SQLiteDatabase db;
+	
+	@Before
+	public void setUp() {
+		db = SQLiteDatabase.create(null);
+		LyricDbHelper.getInstance(RuntimeEnvironment.getApplication()).onCreate(db);
+	}
+	
+	@After
+	public void tearDown() {
+		db.close();
+	}
+	
+	@Test
+	public void everyQueryIsServedByAnIndex() {
+		assertEquals(Collections.emptyList(), QueryPlanCheck.run(db));
+	}
+}
\ No newline at end of file
@@ -0,0 +1,72 @@
+package com.redlab.lyrex;
+
+import java.util.Random;
+
+/**
+* Rebuild cost of revisions in a 500-edit history, with a keyframe every
+* LyricRevisions.KEYFRAME_INTERVAL revisions as stored against a plain chain of
+* deltas from revision 0. Reports only; run its main method by hand.
+*/
+public final class RevisionHistoryBenchmark {
+	private static final int EDITS = 500;
+	private static final int ROUNDS = 10;
+	
+	private RevisionHistoryBenchmark() {}
+	
+	public static void main(String[] args) {
+		int interval = LyricRevisions.KEYFRAME_INTERVAL;
+		String[] texts = history(EDITS);
+		String[] deltas = new String[EDITS + 1];
+		for (int i = 1; i <= EDITS; i++) {
+			deltas[i] = LineDelta.diff(texts[i - 1], texts[i]);
+		}
+		
+		long keyframed = Long.MAX_VALUE;
+		long chained = Long.MAX_VALUE;
+		for (int round = 0; round < ROUNDS; round++) {
+			long start = System.nanoTime();
+			for (int revision = 0; revision <= EDITS; revision++) {
+				check(texts[revision], rebuild(texts, deltas, revision - revision % interval, revision));
+			}
+			keyframed = Math.min(keyframed, System.nanoTime() - start);
+			
+			start = System.nanoTime();
+			for (int revision = 0; revision <= EDITS; revision++) {
+				check(texts[revision], rebuild(texts, deltas, 0, revision));
+			}
+			chained = Math.min(chained, System.nanoTime() - start);
+		}
+		System.out.println("Rebuilding all " + (EDITS + 1) + " revisions: keyframe every " + interval + ": "
+		+ keyframed / 1_000_000 + " ms, deltas from revision 0: " + chained / 1_000_000 + " ms");
+	}
+	
+	// A song that grows and is reworded one line per edit
+	private static String[] history(int edits) {
+		Random random = new Random(1);
+		String[] texts = new String[edits + 1];
+		StringBuilder song = new StringBuilder("[Verse 1]");
+		for (int i = 0; i < 40; i++) {
+			song.append("\nline ").append(i);
+		}
+		texts[0] = song.toString();
+		for (int i = 1; i <= edits; i++) {
+			String[] lines = texts[i - 1].split("\n", -1);
+			lines[1 + random.nextInt(lines.length - 1)] = "edit " + i;
+			texts[i] = String.join("\n", lines) + ((i % 10 == 0) ? "\nnew line " + i : "");
+		}
+		return texts;
+	}
+	
+	// Keyframes are the full texts at multiples of the interval, as LyricRevisions stores them
+	private static String rebuild(String[] texts, String[] deltas, int keyframe, int revision) {
+		String content = texts[keyframe];
+		for (int i = keyframe + 1; i <= revision; i++) {
+			content = LineDelta.apply(content, deltas[i]);
+		}
+		return content;
+	}
+	
+	private static void check(String expected, String actual) {
+		if (!expected.equals(actual)) throw new IllegalStateException("Rebuilt the wrong text");
+	}
+}
\ No newline at end of file
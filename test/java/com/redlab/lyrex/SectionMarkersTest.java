@@ -0,0 +1,28 @@
+package com.redlab.lyrex;
+
+import static org.junit.Assert.assertArrayEquals;
+
+import org.junit.Test;
+
+public class SectionMarkersTest {
+	@Test
+	public void scannerFindsTheRegexMarkersOnHeaderLines() {
+		String text = "[Verse 1]\nlove\nChorus\nfire\n";
+		assertArrayEquals(new int[]{1, 6, SectionMarkers.KIND_VERSE, 15, 21, SectionMarkers.KIND_CHORUS},
+		SectionMarkers.find(text));
+	}
+	
+	@Test
+	public void largeGrammarFindsEachNameAsAWholeWord() {
+		String[][] grammar = SectionMarkersBenchmark.grammar(200);
+		SectionMarkers markers = SectionMarkers.compile(grammar);
+		for (String[] entry : grammar) {
+			String name = entry[0];
+			// Neither "<name>s" nor "x<name>" is the name on its own
+			String text = name + "s x" + name + " " + name;
+			int start = text.length() - name.length();
+			assertArrayEquals(name, new int[]{start, text.length(), SectionMarkers.KIND_VERSE},
+			markers.scan(text, 0, text.length()));
+		}
+	}
+}
\ No newline at end of file
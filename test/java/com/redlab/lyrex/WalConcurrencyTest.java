@@ -0,0 +1,137 @@
+package com.redlab.lyrex;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import android.database.sqlite.SQLiteDatabase;
+import android.util.Log;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+/**
+* Readers against a writer on the WAL database. One test holds a write
+* transaction open and reads beside it; the other runs a 10,000-row import
+* beside two readers and logs their latency percentiles from QueryStats.
+*/
+@RunWith(RobolectricTestRunner.class)
+public class WalConcurrencyTest {
+	private static final String TAG = "WalConcurrencyTest";
+	private static final int IMPORT_SIZE = 10_000;
+	private static final int READERS = 2;
+	
+	private LyricDbHelper helper;
+	private ExecutorService executor;
+	
+	@Before
+	public void setUp() {
+		helper = LyricDbHelper.getInstance(RuntimeEnvironment.getApplication());
+		executor = Executors.newFixedThreadPool(READERS + 1);
+		QueryStats.reset();
+		QueryStats.setEnabled(true);
+	}
+	
+	@After
+	public void tearDown() {
+		QueryStats.setEnabled(false);
+		executor.shutdownNow();
+		helper.close();
+	}
+	
+	@Test
+	public void readersSeeTheLastCommitWhileAWriteIsOpen() throws Exception {
+		int before = helper.countLyrics();
+		CountDownLatch writing = new CountDownLatch(1);
+		CountDownLatch read = new CountDownLatch(1);
+		Future<?> writer = executor.submit(() -> {
+			SQLiteDatabase db = helper.getWritableDatabase();
+			db.beginTransaction();
+			try {
+				helper.insertLyric(new Lyric("Uncommitted", "la la la"));
+				writing.countDown();
+				// Keep the transaction open until the reader is done
+				assertTrue(read.await(10, TimeUnit.SECONDS));
+				db.setTransactionSuccessful();
+				} finally {
+				db.endTransaction();
+			}
+			return null;
+		});
+		
+		assertTrue(writing.await(10, TimeUnit.SECONDS));
+		Future<Integer> count = executor.submit(() -> helper.countLyrics());
+		// A rollback journal would block this read until the writer commits, which waits on it
+		assertEquals(before, (int) count.get(5, TimeUnit.SECONDS));
+		read.countDown();
+		assertNull(writer.get(10, TimeUnit.SECONDS));
+		assertEquals(before + 1, helper.countLyrics());
+	}
+	
+	@Test
+	public void readersKeepGoingThroughALargeImport() throws Exception {
+		int before = helper.countLyrics();
+		AtomicBoolean importing = new AtomicBoolean(true);
+		List<Future<List<Integer>>> readers = new ArrayList<>();
+		for (int i = 0; i < READERS; i++) {
+			readers.add(executor.submit(() -> {
+				List<Integer> counts = new ArrayList<>();
+				do {
+					helper.getLyricSummaryPage("date", null, 50);
+					counts.add(helper.countLyrics() - before);
+				} while (importing.get());
+				return counts;
+			}));
+		}
+		
+		int inserted;
+		try {
+			inserted = helper.bulkInsert(lyrics(IMPORT_SIZE), null);
+			} finally {
+			importing.set(false);
+		}
+		assertEquals(IMPORT_SIZE, inserted);
+		
+		for (Future<List<Integer>> reader : readers) {
+			List<Integer> counts = reader.get(10, TimeUnit.SECONDS);
+			assertTrue(counts.size() > 0);
+			int previous = 0;
+			for (int count : counts) {
+				// Each read sees a whole number of committed chunks, never fewer than the last
+				assertEquals(0, count % LyricDbHelper.BULK_INSERT_CHUNK_SIZE);
+				assertTrue(count >= previous);
+				previous = count;
+			}
+		}
+		Log.i(TAG, "Reads during a " + IMPORT_SIZE + "-row import:\n" + QueryStats.report());
+	}
+	
+	private static Iterator<Lyric> lyrics(int count) {
+		return new Iterator<Lyric>() {
+			private int next;
+			
+			@Override
+			public boolean hasNext() {
+				return next < count;
+			}
+			
+			@Override
+			public Lyric next() {
+				next++;
+				return new Lyric("Song " + next, "[Verse]\nline one of song " + next + "\nline two\n[Chorus]\nla la la");
+			}
+		};
+	}
+}
\ No newline at end of file